@@ -0,0 +1,89 @@
+package benchmarks;
+
+import game.Direction;
+import game.GameLogic;
+import game.GameState;
+import game.StateDelta;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import network.BinaryCodec;
+import network.Codec;
+import network.MoveAction;
+import network.SerializationCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the codecs clients can choose between, encoding and decoding the
+ * keyframes and deltas a room sends. The size of each update and of an action
+ * are printed during setup as JMH only reports times.
+ *
+ * @author denforjohn
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodecBenchmark {
+
+	@Param({ "binary", "serialization" })
+	public String codecName;
+
+	private Codec codec;
+	private GameState state;
+	private StateDelta delta;
+	private byte[] keyframe;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		codec = codecName.equals("binary") ? new BinaryCodec()
+				: new SerializationCodec();
+		state = new GameState(4, "assets/maps/map.json");
+		for (int i = 0; i < 4; i++) {
+			state.addPlayer(i, "Player" + i, Color.red);
+		}
+		GameLogic logic = new GameLogic(state);
+		state.resetReplication();
+		logic.movePlayer(0, Direction.SOUTH);
+		logic.tickGameState();
+		delta = state.createDelta();
+
+		keyframe = encodeKeyframe();
+		System.out.println(codecName + ": keyframe " + keyframe.length
+				+ " bytes, delta " + encodeDelta().length + " bytes, action "
+				+ codec.encodeAction(new MoveAction(0, Direction.NORTH, 1)).length
+				+ " bytes");
+	}
+
+	@Benchmark
+	public byte[] encodeKeyframe() throws IOException {
+		return codec.encodeUpdate(state);
+	}
+
+	@Benchmark
+	public Object decodeKeyframe() throws IOException {
+		return codec.decodeUpdate(keyframe);
+	}
+
+	@Benchmark
+	public byte[] encodeDelta() throws IOException {
+		return codec.encodeUpdate(delta);
+	}
+}
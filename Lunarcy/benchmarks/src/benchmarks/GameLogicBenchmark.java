@@ -0,0 +1,107 @@
+package benchmarks;
+
+import game.Bag;
+import game.Direction;
+import game.GameLogic;
+import game.GameState;
+import game.Player;
+import game.ShipPart;
+import game.Square;
+import game.WalkableSquare;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the work done by GameLogic every tick and in response to item
+ * actions. Each item benchmark undoes its own change so the state stays the
+ * same between invocations.
+ *
+ * @author Robbie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GameLogicBenchmark {
+	private static final int PLAYER = 0;
+	private static final int BAG = 900;
+	private static final int ITEM = 901;
+
+	@Param({ "assets/maps/map.json", "assets/maps/jacksmap.json" })
+	public String map;
+
+	@Param({ "4" })
+	public int players;
+
+	private GameLogic logic;
+	private Random random;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		GameState state = new GameState(players, map);
+		for (int i = 0; i < players; i++) {
+			state.addPlayer(i, "Player" + i, Color.red);
+		}
+		logic = new GameLogic(state);
+		random = new Random(1);
+
+		// The first player carries a bag and has an item on the ground in
+		// front of them
+		Player player = state.getPlayer(PLAYER);
+		player.giveItem(new Bag(BAG));
+		Square square = state.getSquare(player.getLocation());
+		if (!(square instanceof WalkableSquare)) {
+			throw new IllegalStateException("Player did not spawn on a walkable square");
+		}
+		((WalkableSquare) square).addItem(player.getOrientation(),
+				new ShipPart(ITEM, 1));
+	}
+
+	/**
+	 * A full tick with every player moving, as the server does when all
+	 * players are active
+	 */
+	@Benchmark
+	public GameState tickGameState() {
+		Direction[] directions = Direction.values();
+		for (int i = 1; i < players; i++) {
+			logic.movePlayer(i, directions[random.nextInt(directions.length)]);
+		}
+		logic.tickGameState();
+		return logic.getGameState();
+	}
+
+	@Benchmark
+	public boolean pickUpAndDropItem() {
+		return logic.pickUpItem(PLAYER, ITEM) & logic.dropItem(PLAYER, ITEM);
+	}
+
+	/**
+	 * Picks the item up, puts it into the bag and then drops it back from the
+	 * bag
+	 */
+	@Benchmark
+	public boolean putItemIntoContainer() {
+		return logic.pickUpItem(PLAYER, ITEM)
+				& logic.putItemIntoContainer(PLAYER, BAG, ITEM)
+				& logic.dropItem(PLAYER, ITEM);
+	}
+}
@@ -0,0 +1,134 @@
+package benchmarks;
+
+import game.BlankSquare;
+import game.Direction;
+import game.Location;
+import game.NavigationGrid;
+import game.Square;
+import game.WalkableSquare;
+import game.Wall;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bots.HierarchicalPathfinder;
+import bots.PathEngine;
+
+/**
+ * Benchmarks long paths across boards much larger than any shipped map,
+ * comparing the HierarchicalPathfinder with a PathEngine search of every
+ * square. The board is generated with a fixed seed, outside squares with
+ * some squares blanked out, and paths are searched between a fixed set of
+ * pairs of squares anywhere on it which can reach each other.
+ *
+ * The search after a change adds a wall before one search and puts back what
+ * was there before the next, so the board stays the same but every search
+ * includes rebuilding the clusters around the wall.
+ *
+ * @author evansben1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LargeMapPathfindingBenchmark {
+	private static final int PAIRS = 64;
+
+	@Param({ "100", "500" })
+	public int size;
+
+	// Percentage of squares which are blanked out
+	@Param({ "10", "25" })
+	public int obstacles;
+
+	private Square[][] board;
+	private NavigationGrid grid;
+	private PathEngine engine;
+	private HierarchicalPathfinder pathfinder;
+	private Location[] starts;
+	private Location[] ends;
+	private Random random;
+	private int next;
+
+	// The wall replaced for the search after a change, to put back after
+	private Location changed;
+	private Direction changedSide;
+	private Wall changedWall;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		random = new Random(1);
+		board = new Square[size][size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				board[y][x] = random.nextInt(100) < obstacles ? new BlankSquare()
+						: new WalkableSquare(false, null, null, null, null);
+			}
+		}
+		grid = new NavigationGrid(board);
+		engine = new PathEngine(grid, Integer.MAX_VALUE);
+		pathfinder = new HierarchicalPathfinder(grid);
+
+		starts = new Location[PAIRS];
+		ends = new Location[PAIRS];
+		for (int i = 0; i < PAIRS; i++) {
+			Location start, end;
+			do {
+				start = new Location(random.nextInt(size), random.nextInt(size));
+				end = new Location(random.nextInt(size), random.nextInt(size));
+			} while (engine.findPath(start, end) == null);
+			starts[i] = start;
+			ends[i] = end;
+		}
+		// Build the clusters before measuring
+		pathfinder.findPath(starts[0], ends[0]);
+	}
+
+	@Benchmark
+	public List<Location> findPath() {
+		int i = next++ % PAIRS;
+		return engine.findPath(starts[i], ends[i]);
+	}
+
+	@Benchmark
+	public List<Location> hierarchicalFindPath() {
+		int i = next++ % PAIRS;
+		return pathfinder.findPath(starts[i], ends[i]);
+	}
+
+	@Benchmark
+	public List<Location> hierarchicalFindPathAfterChange() {
+		Location location = changed;
+		if (location == null) {
+			location = new Location(random.nextInt(size), random.nextInt(size));
+			changedSide = Direction.values()[random.nextInt(4)];
+			changedWall = board[location.getY()][location.getX()].getWalls()
+					.get(changedSide);
+			board[location.getY()][location.getX()].addWall(changedSide);
+			changed = location;
+		} else {
+			board[location.getY()][location.getX()].getWalls().put(
+					changedSide, changedWall);
+			changed = null;
+		}
+		grid.update(location);
+		return hierarchicalFindPath();
+	}
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import game.Direction;
+import game.GameState;
+import game.Location;
+import game.Square;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bots.LegacyPathMover;
+import bots.RoamMovement;
+import bots.Rover;
+
+/**
+ * Benchmarks the searches rovers make: the A* search used when tracking a
+ * player, and the search made every rover tick while roaming to look for a
+ * player to track. The search ShortestPathMover used before PathEngine is
+ * benchmarked on the same paths for comparison.
+ *
+ * Paths are searched between a fixed set of pairs of outside squares, no
+ * further apart than a tracking rover will chase, chosen with a fixed seed so
+ * every run searches the same paths.
+ *
+ * @author evansben1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PathfindingBenchmark {
+	private static final int PAIRS = 64;
+
+	@Param({ "assets/maps/map.json", "assets/maps/jacksmap.json" })
+	public String map;
+
+	private GameState state;
+	private Rover rover;
+	private Location[] starts;
+	private Location[] ends;
+	private int next;
+
+	private final LegacyPathMover legacyPathMover = new LegacyPathMover();
+	private final RoamMovement roamMovement = new RoamMovement();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		state = new GameState(4, map);
+		for (int i = 0; i < 4; i++) {
+			state.addPlayer(i, "Player" + i, Color.red);
+		}
+
+		List<Location> outside = new ArrayList<Location>();
+		Square[][] board = state.getBoard();
+		for (int y = 0; y < board.length; y++) {
+			for (int x = 0; x < board[y].length; x++) {
+				if (state.isOutside(new Location(x, y))) {
+					outside.add(new Location(x, y));
+				}
+			}
+		}
+		if (outside.isEmpty()) {
+			throw new IllegalStateException(map + " has no outside squares");
+		}
+
+		// The same limit TrackMovement gives up at
+		int maxDistance = board.length / 2;
+		Random random = new Random(1);
+		starts = new Location[PAIRS];
+		ends = new Location[PAIRS];
+		for (int i = 0; i < PAIRS; i++) {
+			Location start, end;
+			do {
+				start = outside.get(random.nextInt(outside.size()));
+				end = outside.get(random.nextInt(outside.size()));
+			} while (distance(start, end) > maxDistance);
+			starts[i] = start;
+			ends[i] = end;
+		}
+		rover = new Rover(0, starts[0], starts[0], Direction.NORTH);
+	}
+
+	private static int distance(Location a, Location b) {
+		return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+	}
+
+	@Benchmark
+	public List<Location> findPath() {
+		int i = next++ % PAIRS;
+		return state.getPathEngine().findPath(starts[i], ends[i]);
+	}
+
+	@Benchmark
+	public List<Location> legacyFindPath() {
+		int i = next++ % PAIRS;
+		return legacyPathMover.findPath(rover, state, starts[i], ends[i]);
+	}
+
+	@Benchmark
+	public Object viewTarget() {
+		return roamMovement.viewTarget(rover, state);
+	}
+}
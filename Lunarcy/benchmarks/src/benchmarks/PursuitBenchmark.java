@@ -0,0 +1,136 @@
+package benchmarks;
+
+import game.Armour;
+import game.Direction;
+import game.GameLogic;
+import game.GameState;
+import game.Location;
+import game.NavigationGrid;
+import game.Player;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bots.PursuitMode;
+import bots.Rover;
+
+/**
+ * Benchmarks game ticks while many rovers chase one player, for each way of
+ * chasing. Every tick the player steps away from the nearest rover, staying
+ * outside, and wears armour so the rovers never stop chasing them. Rovers
+ * decide their moves either on the ticking thread or in parallel, which only
+ * helps on a machine with several cores, and either all think every rover
+ * tick or share a budget of thinking time.
+ *
+ * @author evansben1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PursuitBenchmark {
+
+	@Param({ "assets/maps/jacksmap.json" })
+	public String map;
+
+	@Param({ "5", "100", "400" })
+	public int rovers;
+
+	@Param({ "TRACK", "INCREMENTAL", "HIERARCHICAL", "FLOW_FIELD" })
+	public PursuitMode mode;
+
+	// Whether rovers decide their moves on the fork-join pool
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	// Microseconds the rovers may spend thinking each rover tick, 0 for no
+	// limit
+	@Param({ "0", "250" })
+	public long budget;
+
+	private GameState state;
+	private GameLogic logic;
+	private Player player;
+	private Random random;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		state = new GameState(1, map, rovers, 1);
+		state.setPursuitMode(mode);
+		state.addPlayer(0, "Player0", Color.red);
+		player = state.getPlayer(0);
+		player.giveItem(new Armour(900));
+		player.setLocation(state.getRoverSpawnPoints().get(0));
+		state.updateLocation(player);
+		logic = new GameLogic(state);
+		logic.setParallelRovers(parallel ? 1 : Integer.MAX_VALUE);
+		logic.getAIScheduler().setBudget(budget);
+		random = new Random(1);
+	}
+
+	@Benchmark
+	public GameState tickGameState() {
+		flee();
+		logic.tickGameState();
+		player.resetOxygen();
+		return state;
+	}
+
+	/**
+	 * Moves the player to whichever neighbouring square outside is furthest
+	 * from the nearest rover, picking at random between equally good squares
+	 */
+	private void flee() {
+		NavigationGrid grid = state.getNavigationGrid();
+		Location location = player.getLocation();
+		Location nearest = null;
+		for (Rover rover : state.getRovers()) {
+			if (nearest == null
+					|| distance(rover.getLocation(), location) < distance(
+							nearest, location)) {
+				nearest = rover.getLocation();
+			}
+		}
+
+		Direction best = null;
+		int bestDistance = -1;
+		int offset = random.nextInt(4);
+		for (int i = 0; i < 4; i++) {
+			Direction direction = Direction.values()[(i + offset) % 4];
+			if (!grid.canMove(player, location, direction)) {
+				continue;
+			}
+			Location next = location.getAdjacent(direction);
+			int cell = grid.getCell(next.getX(), next.getY());
+			int away = nearest == null ? 0 : distance(next, nearest);
+			if (grid.isOutside(cell) && away > bestDistance) {
+				best = direction;
+				bestDistance = away;
+			}
+		}
+		if (best != null) {
+			logic.movePlayer(0, best);
+		}
+	}
+
+	private int distance(Location a, Location b) {
+		return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+	}
+}
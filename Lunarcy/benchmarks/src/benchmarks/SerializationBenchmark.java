@@ -0,0 +1,74 @@
+package benchmarks;
+
+import game.GameState;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Java serialization of a whole GameState, which is how the
+ * SerializationCodec sends keyframes. The serialized size is printed during
+ * setup as JMH only reports times.
+ *
+ * @author denforjohn
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+	@Param({ "assets/maps/map.json", "assets/maps/jacksmap.json" })
+	public String map;
+
+	private GameState state;
+	private byte[] serialized;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		state = new GameState(4, map);
+		for (int i = 0; i < 4; i++) {
+			state.addPlayer(i, "Player" + i, Color.red);
+		}
+		serialized = serialize();
+		System.out.println(map + ": serialized state is " + serialized.length
+				+ " bytes");
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(state);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public Object deserialize() throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				serialized));
+		return in.readObject();
+	}
+}
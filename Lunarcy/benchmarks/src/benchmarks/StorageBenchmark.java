@@ -0,0 +1,93 @@
+package benchmarks;
+
+import game.GameState;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import mapbuilder.GameMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import storage.StateSnapshot;
+import storage.Storage;
+
+/**
+ * Benchmarks loading the shipped maps, as JSON and in the binary map format,
+ * and saving and loading a whole game started on each of them. Saved games
+ * are written to a temporary file which is removed afterwards. captureState
+ * is how long a save made during a game holds up the tick, since the rest of
+ * the save is written in the background.
+ *
+ * @author JTFM
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StorageBenchmark {
+
+	@Param({ "assets/maps/map.json", "assets/maps/jacksmap.json",
+			"assets/maps/testmap.json", "assets/maps/map.lmap",
+			"assets/maps/jacksmap.lmap", "assets/maps/testmap.lmap" })
+	public String map;
+
+	private File mapFile;
+	private File saveFile;
+	private GameState state;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		mapFile = new File(map);
+		state = new GameState(4, map);
+		for (int i = 0; i < 4; i++) {
+			state.addPlayer(i, "Player" + i, Color.red);
+		}
+		saveFile = File.createTempFile("lunarcy-state", ".json");
+		Storage.saveState(state, saveFile.getPath());
+		System.out.println(map + ": saved state is " + saveFile.length()
+				+ " bytes");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		saveFile.delete();
+	}
+
+	@Benchmark
+	public GameMap loadGameMap() {
+		return Storage.loadGameMap(mapFile);
+	}
+
+	@Benchmark
+	public GameState loadState() {
+		return Storage.loadState(saveFile.getPath());
+	}
+
+	@Benchmark
+	public void saveState() {
+		Storage.saveState(state, saveFile.getPath());
+	}
+
+	@Benchmark
+	public StateSnapshot captureState() throws IOException {
+		return StateSnapshot.capture(state);
+	}
+}
@@ -0,0 +1,270 @@
+package bots;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares out a budget of thinking time between the rovers each time they
+ * tick, so a burst of rovers spotting players and planning chases can't make
+ * the tick overrun. Thinking is everything expensive a rover does: looking
+ * for players, planning paths and deciding whether to give up a chase.
+ *
+ * Rovers take turns to think in order, starting each tick from the rover
+ * after the last one which thought, until the next rover's thinking would
+ * take the tick over budget. How long a rover will take is estimated from how
+ * long it took last time. At least one rover thinks every tick, so every
+ * rover gets a turn eventually however small the budget. Rovers which don't
+ * get a turn keep following their last plan.
+ *
+ * The rovers which were allowed to think are always a run of rovers in order,
+ * so a journal can record them cheaply and have them think again when the
+ * game is replayed.
+ *
+ * How many decisions were deferred and how much of the budget was used are
+ * recorded so the server's performance can be monitored.
+ *
+ * @author evansben1
+ *
+ */
+public class AIScheduler {
+	// A budget which lets every rover think every tick
+	public static final long UNLIMITED = 0;
+
+	private long budget;
+
+	// The rover to start from next tick, as an index into the rovers in order
+	private int next;
+
+	// How long rovers which have never thought are expected to take
+	private long averageThink;
+
+	// The run of rovers which last thought, and the run to use next time if
+	// one is being replayed
+	private int lastStart;
+	private int lastCount;
+	private int replayStart = -1;
+	private int replayCount;
+
+	private volatile long ticks;
+	private volatile long thoughts;
+	private volatile long deferred;
+	private volatile long lastDeferred;
+	private volatile long maxDeferred;
+	private volatile long overBudget;
+	private volatile long lastUsed;
+	private volatile long maxUsed;
+	private volatile long totalUsed;
+
+	public AIScheduler() {
+		this(UNLIMITED);
+	}
+
+	/**
+	 * @param budgetMicros
+	 *            How long the rovers may spend thinking each tick in
+	 *            microseconds, UNLIMITED for no limit
+	 */
+	public AIScheduler(long budgetMicros) {
+		setBudget(budgetMicros);
+	}
+
+	/**
+	 * Chooses which rovers may think this tick
+	 *
+	 * @param rovers
+	 *            Every rover, in the order they are applied
+	 * @return Whether each rover may think
+	 */
+	public boolean[] schedule(Rover[] rovers) {
+		boolean[] think = new boolean[rovers.length];
+		int start = 0;
+		int count = rovers.length;
+		if (replayStart >= 0) {
+			start = replayStart;
+			count = Math.min(replayCount, rovers.length);
+			replayStart = -1;
+		} else if (budget > 0 && rovers.length > 0) {
+			start = next % rovers.length;
+			long planned = 0;
+			for (count = 0; count < rovers.length; count++) {
+				Rover rover = rovers[(start + count) % rovers.length];
+				long estimate = rover.getThinkNanos() > 0 ? rover
+						.getThinkNanos() : averageThink;
+				if (count > 0 && planned + estimate > budget) {
+					break;
+				}
+				planned += estimate;
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			think[(start + i) % rovers.length] = true;
+		}
+		if (rovers.length > 0) {
+			next = (start + count) % rovers.length;
+		}
+		lastStart = start;
+		lastCount = count;
+		return think;
+	}
+
+	/**
+	 * Makes the next schedule let exactly the given run of rovers think,
+	 * whatever the budget, so a game can be replayed from a journal
+	 *
+	 * @param start
+	 *            The index of the first rover to think, in order of ID
+	 * @param count
+	 *            How many rovers think
+	 */
+	public void replay(int start, int count) {
+		this.replayStart = start;
+		this.replayCount = count;
+	}
+
+	/**
+	 * @return The index of the first rover which thought when last scheduled
+	 */
+	public int getLastStart() {
+		return lastStart;
+	}
+
+	/**
+	 * @return How many rovers thought when last scheduled
+	 */
+	public int getLastCount() {
+		return lastCount;
+	}
+
+	/**
+	 * Records how long the rovers spent thinking once they have all decided
+	 *
+	 * @param rovers
+	 *            The rovers which were scheduled
+	 * @param think
+	 *            Which of them were allowed to think
+	 */
+	public void record(Rover[] rovers, boolean[] think) {
+		long used = 0;
+		int count = 0;
+		for (int i = 0; i < rovers.length; i++) {
+			if (think[i]) {
+				used += rovers[i].getThinkNanos();
+				count++;
+			}
+		}
+		if (count > 0) {
+			averageThink = used / count;
+		}
+
+		lastUsed = used;
+		maxUsed = Math.max(maxUsed, used);
+		totalUsed += used;
+		lastDeferred = rovers.length - count;
+		maxDeferred = Math.max(maxDeferred, lastDeferred);
+		deferred += lastDeferred;
+		thoughts += count;
+		if (budget > 0 && used > budget) {
+			overBudget++;
+		}
+		ticks++;
+	}
+
+	/**
+	 * @return How long the rovers may spend thinking each tick in
+	 *         microseconds, UNLIMITED for no limit
+	 */
+	public long getBudget() {
+		return TimeUnit.NANOSECONDS.toMicros(budget);
+	}
+
+	/**
+	 * @param budgetMicros
+	 *            How long the rovers may spend thinking each tick in
+	 *            microseconds, UNLIMITED for no limit
+	 */
+	public void setBudget(long budgetMicros) {
+		this.budget = TimeUnit.MICROSECONDS.toNanos(Math.max(0, budgetMicros));
+	}
+
+	/**
+	 * @return The number of times the rovers have been scheduled
+	 */
+	public long getTickCount() {
+		return ticks;
+	}
+
+	/**
+	 * @return The number of times a rover has been allowed to think
+	 */
+	public long getThoughtCount() {
+		return thoughts;
+	}
+
+	/**
+	 * @return The number of times a rover has had to follow its last plan
+	 *         because there wasn't time to think
+	 */
+	public long getDeferredCount() {
+		return deferred;
+	}
+
+	/**
+	 * @return The number of rovers which had to follow their last plan in the
+	 *         last tick
+	 */
+	public long getLastDeferred() {
+		return lastDeferred;
+	}
+
+	/**
+	 * @return The most rovers which have had to follow their last plan in one
+	 *         tick
+	 */
+	public long getMaxDeferred() {
+		return maxDeferred;
+	}
+
+	/**
+	 * @return The number of ticks the rovers spent longer thinking than the
+	 *         budget allowed
+	 */
+	public long getOverBudgetCount() {
+		return overBudget;
+	}
+
+	/**
+	 * @return How long the rovers spent thinking in the last tick, in
+	 *         nanoseconds
+	 */
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * @return The longest the rovers have spent thinking in one tick, in
+	 *         nanoseconds
+	 */
+	public long getMaxUsed() {
+		return maxUsed;
+	}
+
+	/**
+	 * @return The average time the rovers spend thinking each tick, in
+	 *         nanoseconds
+	 */
+	public long getAverageUsed() {
+		long count = ticks;
+		return count == 0 ? 0 : totalUsed / count;
+	}
+
+	/**
+	 * @return A summary of the AI metrics in microseconds, for logging
+	 */
+	public String toString() {
+		return String.format(
+				"ticks %d, budget %dus, thoughts %d, deferred %d (last %d, max %d), used avg %dus max %dus, over budget %d",
+				ticks, getBudget(), thoughts, deferred, lastDeferred,
+				maxDeferred, TimeUnit.NANOSECONDS.toMicros(getAverageUsed()),
+				TimeUnit.NANOSECONDS.toMicros(maxUsed), overBudget);
+	}
+}
@@ -0,0 +1,121 @@
+package bots;
+
+import game.NavigationGrid;
+
+import java.util.Arrays;
+
+/**
+ * How far every outside square is from a target, for rovers, found with a
+ * single breadth first search outward from the target. Any number of rovers
+ * can then chase the same target by each stepping to whichever neighbouring
+ * square is closer, without searching themselves.
+ *
+ * Squares are referred to by their packed index on the NavigationGrid. The
+ * arrays are reused each time the target moves, distances are only valid
+ * where they were stamped by the latest search.
+ *
+ * @author evansben1
+ *
+ */
+public class FlowField {
+	private static final int DIRECTIONS = 4;
+
+	private final NavigationGrid grid;
+	private final int[] distance;
+	private final int[] stamp;
+	private final int[] queue;
+	private int generation;
+	private int targetCell = -1;
+
+	public FlowField(NavigationGrid grid) {
+		this.grid = grid;
+		int cells = grid.getWidth() * grid.getHeight();
+		distance = new int[cells];
+		stamp = new int[cells];
+		queue = new int[cells];
+	}
+
+	/**
+	 * Recomputes the distances to a new target
+	 *
+	 * @param cell
+	 *            The packed index of the target's square
+	 */
+	public void update(int cell) {
+		targetCell = cell;
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		if (cell < 0 || !grid.isOutside(cell)) {
+			return; // rovers can't reach a target that isn't outside
+		}
+
+		int head = 0;
+		int tail = 0;
+		stamp[cell] = generation;
+		distance[cell] = 0;
+		queue[tail++] = cell;
+		while (head < tail) {
+			int current = queue[head++];
+			for (int d = 0; d < DIRECTIONS; d++) {
+				// Look for squares a rover could move from, into this one. The
+				// grid never allows moves off the board, so a square on the
+				// other side of the board can't be mistaken for a neighbour
+				int from = current - grid.getCellOffset(d);
+				if (from < 0 || from >= stamp.length) {
+					continue;
+				}
+				if (stamp[from] == generation || !grid.isOutside(from)
+						|| !grid.canRoverMove(from, d)) {
+					continue;
+				}
+				stamp[from] = generation;
+				distance[from] = distance[current] + 1;
+				queue[tail++] = from;
+			}
+		}
+	}
+
+	/**
+	 * @return The packed index of the square a rover on the cell should move
+	 *         to, the cell itself if it is the target, or -1 if the target
+	 *         can't be reached
+	 */
+	public int nextCell(int cell) {
+		if (cell < 0 || stamp[cell] != generation) {
+			return -1;
+		}
+		if (cell == targetCell) {
+			return cell;
+		}
+		int best = -1;
+		int bestDistance = distance[cell];
+		for (int d = 0; d < DIRECTIONS; d++) {
+			if (!grid.canRoverMove(cell, d)) {
+				continue;
+			}
+			int next = cell + grid.getCellOffset(d);
+			if (stamp[next] == generation && distance[next] < bestDistance) {
+				best = next;
+				bestDistance = distance[next];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return How many moves it takes to reach the target from the cell, -1
+	 *         if it can't be reached
+	 */
+	public int getDistance(int cell) {
+		return cell >= 0 && stamp[cell] == generation ? distance[cell] : -1;
+	}
+
+	/**
+	 * @return The packed index of the target the distances were found to
+	 */
+	public int getTargetCell() {
+		return targetCell;
+	}
+}
@@ -0,0 +1,92 @@
+package bots;
+
+import game.GameState;
+import game.Location;
+import game.NavigationGrid;
+import game.Player;
+
+import java.util.List;
+
+/**
+ * Flow Field Movement: Chase a Player by following the FlowField shared by
+ * every rover chasing them, stepping to whichever neighbouring square is
+ * closest to the player. Gives up under the same conditions as
+ * TrackMovement.
+ *
+ * @author evansben1
+ *
+ */
+
+@SuppressWarnings("serial")
+public class FlowFieldMovement implements PursuitStrategy {
+
+	// The player we are chasing
+	private Player target;
+
+	// The steps down the field from where we last thought
+	private List<Location> path;
+
+	// The distance a player must be from a rover before the rover gives up
+	private final int MAX_DISTANCE;
+
+	public FlowFieldMovement(GameState gamestate, Player target) {
+		this.target = target;
+		this.MAX_DISTANCE = gamestate.getBoard().length / 2;
+	}
+
+	/**
+	 * Gives up if the player is inside, or the player is too far away from you.
+	 */
+	public boolean shouldGiveup(Rover rover, GameState gamestate) {
+		Location location = rover.getLocation();
+		Location targetLocation = target.getLocation();
+		return !gamestate.isOutside(targetLocation)
+				|| target.hasCloak()
+				|| Math.abs(location.getX() - targetLocation.getX())
+						+ Math.abs(location.getY() - targetLocation.getY()) > MAX_DISTANCE;
+	}
+
+	/**
+	 * Steps one square down the flow field towards the target, or stays put if
+	 * already there
+	 *
+	 * @return The next location, or null if the target can't be reached
+	 */
+	public Location nextStep(Rover rover, GameState gamestate) {
+		if (shouldGiveup(rover, gamestate)) {
+			return null;
+		}
+
+		NavigationGrid grid = gamestate.getNavigationGrid();
+		final FlowField field = gamestate.getFlowFields().getField(target);
+		Location location = rover.getLocation();
+		int cell = grid.getCell(location.getX(), location.getY());
+
+		int next = field.nextCell(cell);
+		if (next < 0) {
+			path = null;
+			return null;
+		}
+
+		path = ShortestPathMover.walkPlan(next, grid,
+				new ShortestPathMover.NextCell() {
+					public int nextCell(int cell) {
+						return field.nextCell(cell);
+					}
+				}, MAX_DISTANCE);
+
+		if (next == cell) {
+			return location;
+		}
+		return new Location(next % grid.getWidth(), next / grid.getWidth());
+	}
+
+	/**
+	 * Takes the next step down the field as it was when we last thought, even
+	 * if the target has moved since
+	 */
+	public Location followPlan(Rover rover, GameState gamestate) {
+		return ShortestPathMover.followPath(path, rover, gamestate);
+	}
+
+}
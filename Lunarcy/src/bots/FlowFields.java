@@ -0,0 +1,64 @@
+package bots;
+
+import game.Location;
+import game.NavigationGrid;
+import game.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a FlowField for each player being chased, shared by every rover
+ * chasing them. A field is only recomputed when its target has moved since it
+ * was last asked for, so the cost of chasing a player depends on how often
+ * they move rather than how many rovers are after them.
+ *
+ * Each GameState has its own. Fields are found and recomputed under a lock, so
+ * rovers deciding on several threads can share them, as no target moves
+ * while they decide.
+ *
+ * @author evansben1
+ *
+ */
+public class FlowFields {
+	private final NavigationGrid grid;
+	private final Map<Integer, FlowField> fields = new HashMap<Integer, FlowField>();
+	private long searches;
+
+	public FlowFields(NavigationGrid grid) {
+		this.grid = grid;
+	}
+
+	/**
+	 * @return The distances to where the target is now
+	 */
+	public synchronized FlowField getField(Player target) {
+		FlowField field = fields.get(target.getId());
+		if (field == null) {
+			field = new FlowField(grid);
+			fields.put(target.getId(), field);
+		}
+		Location location = target.getLocation();
+		int cell = grid.getCell(location.getX(), location.getY());
+		if (cell != field.getTargetCell()) {
+			field.update(cell);
+			searches++;
+		}
+		return field;
+	}
+
+	/**
+	 * Should be called when the board changes, as every distance may have
+	 * changed
+	 */
+	public synchronized void clear() {
+		fields.clear();
+	}
+
+	/**
+	 * @return How many times a field has been recomputed
+	 */
+	public synchronized long getSearches() {
+		return searches;
+	}
+}
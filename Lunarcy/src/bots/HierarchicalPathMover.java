@@ -0,0 +1,49 @@
+package bots;
+
+import java.io.Serializable;
+import java.util.List;
+
+import game.GameState;
+import game.Location;
+
+/**
+ * A special instance of MoveStrategy, where the movement is defined by
+ * following a path across the board found with the HierarchicalPathfinder.
+ * You should extend this class rather than ShortestPathMover if the path may
+ * be long, and need not be the very shortest.
+ *
+ * @author evansben1
+ *
+ */
+@SuppressWarnings("serial")
+abstract class HierarchicalPathMover implements MoveStrategy, Serializable {
+
+	/**
+	 * Manhattan distance between start and end, -1 if either values are null
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	protected int estimate(Location start, Location end) {
+		if (start == null || end == null) {
+			return -1;
+		}
+
+		return Math.abs(start.getX() - end.getX())
+				+ Math.abs(start.getY() - end.getY());
+	}
+
+	/**
+	 * Finds a path from start to end through the clusters of the board.
+	 *
+	 * @param start
+	 * @param end
+	 * @return The path, not including start, or null if none could be found
+	 */
+	protected List<Location> findPath(GameState gamestate, Location start,
+			Location end) {
+		return gamestate.getHierarchicalPathfinder().findPath(start, end);
+	}
+
+}
@@ -0,0 +1,677 @@
+package bots;
+
+import game.Location;
+import game.NavigationGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hierarchical path search for rovers, so paths across large maps can be
+ * found without searching every square in between.
+ *
+ * The board is split into square clusters. Wherever a rover can cross from
+ * one cluster into the next, an entrance is placed on each side of the
+ * border, and the distances between the entrances of each cluster are
+ * precomputed. A search links the start and end to the entrances of their
+ * clusters, runs A* over the entrances alone, and then fills in the squares
+ * between them one cluster at a time.
+ *
+ * Paths are the shortest that pass through the chosen entrances, which may be
+ * slightly longer than the true shortest path. When squares change on the
+ * NavigationGrid, only the clusters around them are rebuilt, before the next
+ * search.
+ *
+ * Each GameState has its own. Searches share the clusters and the arrays they
+ * search with, so they are synchronized and rovers deciding on several
+ * threads take turns.
+ *
+ * @author evansben1
+ *
+ */
+public class HierarchicalPathfinder {
+	// How many squares wide and tall each cluster is
+	public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+	// Crossings wider than this get an entrance at each end, not one middle
+	private static final int MAX_ENTRANCE_WIDTH = 6;
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+	private static final int DIRECTIONS = 4;
+	private static final int EAST = 1, SOUTH = 2;
+	private static final int[] DX = { 0, 1, 0, -1 };
+	private static final int[] DY = { -1, 0, 1, 0 };
+
+	private final NavigationGrid grid;
+	private final int width;
+	private final int height;
+	private final int clusterSize;
+	private final int clustersWide;
+	private final int clustersHigh;
+
+	// Entrance pairs on the border to the east and south of each cluster,
+	// the square on this cluster's side followed by the square across from it
+	private final int[][] eastEntrances;
+	private final int[][] southEntrances;
+
+	// The entrance squares in each cluster, and the distances between them
+	// within the cluster, nodes.length squared in from-major order
+	private final int[][] nodes;
+	private final int[][] distances;
+
+	// Which entry of its cluster's nodes each square is, or -1
+	private final int[] nodeIndex;
+
+	private final boolean[] dirty;
+	private boolean anyDirty = true;
+	private int gridVersion;
+
+	// Search over the entrances, only valid where seen matches the generation
+	private final int[] costToHere;
+	private final int[] from;
+	private final int[] seen;
+	private final int[] closed;
+	private int generation;
+	private int[] heapCells = new int[64];
+	private long[] heapKeys = new long[64];
+	private int heapSize;
+	private int lastExpanded;
+
+	// Breadth first search within one cluster, by position in the cluster
+	private final int[] localDistance;
+	private final int[] localFrom;
+	private final int[] localSeen;
+	private final int[] localQueue;
+	private int localGeneration;
+
+	// How far each entrance of the end's cluster is from the end
+	private int[] endLinks = new int[16];
+
+	public HierarchicalPathfinder(NavigationGrid grid) {
+		this(grid, DEFAULT_CLUSTER_SIZE);
+	}
+
+	/**
+	 * @param grid
+	 *            The moves which are possible from each square
+	 * @param clusterSize
+	 *            How many squares wide and tall each cluster is
+	 */
+	public HierarchicalPathfinder(NavigationGrid grid, int clusterSize) {
+		this.grid = grid;
+		this.width = grid.getWidth();
+		this.height = grid.getHeight();
+		this.clusterSize = clusterSize;
+		this.clustersWide = (width + clusterSize - 1) / clusterSize;
+		this.clustersHigh = (height + clusterSize - 1) / clusterSize;
+		this.gridVersion = grid.getVersion();
+
+		int clusters = clustersWide * clustersHigh;
+		eastEntrances = new int[clusters][];
+		southEntrances = new int[clusters][];
+		nodes = new int[clusters][];
+		distances = new int[clusters][];
+		dirty = new boolean[clusters];
+		Arrays.fill(dirty, true);
+
+		int cells = width * height;
+		nodeIndex = new int[cells];
+		Arrays.fill(nodeIndex, -1);
+		costToHere = new int[cells];
+		from = new int[cells];
+		seen = new int[cells];
+		closed = new int[cells];
+
+		int clusterCells = clusterSize * clusterSize;
+		localDistance = new int[clusterCells];
+		localFrom = new int[clusterCells];
+		localSeen = new int[clusterCells];
+		localQueue = new int[clusterCells];
+	}
+
+	/**
+	 * Finds a short path a rover could take from start to end.
+	 *
+	 * @return The locations to step through in order, not including the start,
+	 *         an empty list if start is end, or null if there is no path
+	 */
+	public synchronized List<Location> findPath(Location start,
+			Location end) {
+		if (start == null || end == null) {
+			return null;
+		}
+		int startCell = grid.getCell(start.getX(), start.getY());
+		int endCell = grid.getCell(end.getX(), end.getY());
+		if (startCell < 0 || endCell < 0) {
+			return null;
+		}
+		List<Location> path = new ArrayList<Location>();
+		if (startCell == endCell) {
+			return path;
+		}
+		refresh();
+
+		int startCluster = clusterOf(startCell);
+		int endCluster = clusterOf(endCell);
+		int[] endNodes = nodes[endCluster];
+
+		// Link the end to its cluster's entrances, searching backwards
+		if (endLinks.length < endNodes.length) {
+			endLinks = new int[endNodes.length];
+		}
+		clusterSearch(endCluster, endCell, true);
+		boolean endLinked = false;
+		for (int i = 0; i < endNodes.length; i++) {
+			endLinks[i] = localDistance(endCluster, endNodes[i]);
+			endLinked |= endLinks[i] < INFINITY;
+		}
+
+		// Link the start to its cluster's entrances, and perhaps to the end
+		clusterSearch(startCluster, startCell, false);
+		int best = startCluster == endCluster ? localDistance(startCluster,
+				endCell) : INFINITY;
+		int bestNode = -1;
+
+		nextGeneration();
+		heapSize = 0;
+		lastExpanded = 0;
+		// Without an entrance the end can only be reached within the cluster,
+		// so there is no need to search the rest of the board
+		if (endLinked) {
+			for (int node : nodes[startCluster]) {
+				int cost = localDistance(startCluster, node);
+				if (cost < INFINITY) {
+					relax(node, -1, cost, endCell);
+				}
+			}
+		}
+
+		while (heapSize > 0 && (int) (heapKeys[0] >>> 32) < best) {
+			int node = pop();
+			if (closed[node] == generation) {
+				continue; // a stale entry, the node was reached more cheaply
+			}
+			closed[node] = generation;
+			lastExpanded++;
+			int cluster = clusterOf(node);
+			int index = nodeIndex[node];
+			int cost = costToHere[node];
+
+			if (cluster == endCluster && endLinks[index] < INFINITY
+					&& cost + endLinks[index] < best) {
+				best = cost + endLinks[index];
+				bestNode = node;
+			}
+
+			// Within the cluster, unless the node was reached from within it,
+			// as the distances are already the shortest within the cluster and
+			// going through this node would never be shorter
+			int parent = from[node];
+			if (parent >= 0 && clusterOf(parent) != cluster) {
+				int[] clusterNodes = nodes[cluster];
+				int[] clusterDistances = distances[cluster];
+				int row = index * clusterNodes.length;
+				for (int i = 0; i < clusterNodes.length; i++) {
+					int distance = clusterDistances[row + i];
+					if (i != index && distance < INFINITY) {
+						relax(clusterNodes[i], node, cost + distance, endCell);
+					}
+				}
+			}
+			// Across into the next cluster
+			for (int d = 0; d < DIRECTIONS; d++) {
+				if (grid.canRoverMove(node, d)) {
+					int next = node + grid.getCellOffset(d);
+					if (nodeIndex[next] >= 0 && clusterOf(next) != cluster) {
+						relax(next, node, cost + 1, endCell);
+					}
+				}
+			}
+		}
+
+		if (best >= INFINITY) {
+			return null;
+		}
+		if (bestNode < 0) {
+			appendPath(startCluster, startCell, endCell, path);
+			return path;
+		}
+
+		// Fill in the squares between each entrance on the way
+		List<Integer> route = new ArrayList<Integer>();
+		for (int node = bestNode; node >= 0; node = from[node]) {
+			route.add(node);
+		}
+		appendPath(startCluster, startCell, route.get(route.size() - 1), path);
+		for (int i = route.size() - 1; i > 0; i--) {
+			int a = route.get(i);
+			int b = route.get(i - 1);
+			if (clusterOf(a) == clusterOf(b)) {
+				appendPath(clusterOf(a), a, b, path);
+			} else {
+				path.add(new Location(b % width, b / width));
+			}
+		}
+		appendPath(endCluster, bestNode, endCell, path);
+		return path;
+	}
+
+	/**
+	 * @return How many entrances the last search expanded
+	 */
+	public int getLastExpanded() {
+		return lastExpanded;
+	}
+
+	/**
+	 * @return How many entrances there are on the whole board
+	 */
+	public synchronized int getNodeCount() {
+		refresh();
+		int count = 0;
+		for (int[] clusterNodes : nodes) {
+			count += clusterNodes.length;
+		}
+		return count;
+	}
+
+	public int getClusterSize() {
+		return clusterSize;
+	}
+
+	/* --------Building the clusters-------- */
+
+	/**
+	 * Marks the clusters around any squares which changed since the last
+	 * search, then rebuilds them
+	 */
+	private void refresh() {
+		for (; gridVersion < grid.getVersion(); gridVersion++) {
+			int cell = grid.getChangedCell(gridVersion);
+			if (cell < 0) {
+				// Too much has changed to tell what, so rebuild everything
+				Arrays.fill(dirty, true);
+				anyDirty = true;
+				gridVersion = grid.getVersion();
+				break;
+			}
+			// Moves from the neighbours into the square cross the borders of
+			// its cluster if they aren't within it, so this is enough
+			markDirty(cell % width, cell / width);
+		}
+		if (!anyDirty) {
+			return;
+		}
+
+		// Entrances on every border of a changed cluster, which the cluster
+		// on the other side must be rebuilt for if they changed
+		boolean[] rebuild = new boolean[dirty.length];
+		for (int c = 0; c < dirty.length; c++) {
+			if (!dirty[c]) {
+				continue;
+			}
+			int cx = c % clustersWide;
+			int cy = c / clustersWide;
+			rebuild[c] = true;
+			if (setEntrances(eastEntrances, c, findEntrances(cx, cy, EAST))
+					&& cx + 1 < clustersWide) {
+				rebuild[c + 1] = true;
+			}
+			if (setEntrances(southEntrances, c, findEntrances(cx, cy, SOUTH))
+					&& cy + 1 < clustersHigh) {
+				rebuild[c + clustersWide] = true;
+			}
+			if (cx > 0
+					&& setEntrances(eastEntrances, c - 1,
+							findEntrances(cx - 1, cy, EAST))) {
+				rebuild[c - 1] = true;
+			}
+			if (cy > 0
+					&& setEntrances(southEntrances, c - clustersWide,
+							findEntrances(cx, cy - 1, SOUTH))) {
+				rebuild[c - clustersWide] = true;
+			}
+		}
+		for (int c = 0; c < rebuild.length; c++) {
+			if (rebuild[c]) {
+				buildNodes(c);
+			}
+		}
+		for (int c = 0; c < rebuild.length; c++) {
+			if (rebuild[c]) {
+				buildDistances(c);
+			}
+		}
+		Arrays.fill(dirty, false);
+		anyDirty = false;
+	}
+
+	/**
+	 * @return True if the entrances on the border are different to before
+	 */
+	private boolean setEntrances(int[][] borders, int cluster, int[] entrances) {
+		boolean changed = !Arrays.equals(borders[cluster], entrances);
+		borders[cluster] = entrances;
+		return changed;
+	}
+
+	private void markDirty(int x, int y) {
+		if (x >= 0 && x < width && y >= 0 && y < height) {
+			dirty[(y / clusterSize) * clustersWide + x / clusterSize] = true;
+			anyDirty = true;
+		}
+	}
+
+	/**
+	 * Finds where a rover can cross the east or south border of a cluster.
+	 * Each run of squares which can be crossed gets an entrance in the middle,
+	 * or one at each end if it is wide.
+	 *
+	 * @return Pairs of squares, this cluster's side then the other side
+	 */
+	private int[] findEntrances(int cx, int cy, int direction) {
+		int length;
+		int step;
+		int first;
+		if (direction == EAST) {
+			int x = (cx + 1) * clusterSize - 1;
+			if (x + 1 >= width) {
+				return new int[0];
+			}
+			first = cy * clusterSize * width + x;
+			length = Math.min(clusterSize, height - cy * clusterSize);
+			step = width;
+		} else {
+			int y = (cy + 1) * clusterSize - 1;
+			if (y + 1 >= height) {
+				return new int[0];
+			}
+			first = y * width + cx * clusterSize;
+			length = Math.min(clusterSize, width - cx * clusterSize);
+			step = 1;
+		}
+		int across = grid.getCellOffset(direction);
+		int back = (direction + 2) % DIRECTIONS;
+		// Along the border, towards the next square and back to the last
+		int along = direction == EAST ? SOUTH : EAST;
+		int alongBack = (along + 2) % DIRECTIONS;
+
+		int[] entrances = new int[4];
+		int count = 0;
+		int runStart = -1;
+		for (int i = 0; i <= length; i++) {
+			int cell = first + i * step;
+			boolean open = i < length
+					&& (grid.canRoverMove(cell, direction) || grid
+							.canRoverMove(cell + across, back));
+			// A run is split wherever either side can't move along it, so
+			// every crossing in a run can reach its entrances
+			boolean joined = open && runStart >= 0
+					&& linked(cell - step, along, alongBack)
+					&& linked(cell - step + across, along, alongBack);
+			if (runStart >= 0 && !joined) {
+				int runEnd = i - 1;
+				if (count + 4 > entrances.length) {
+					entrances = Arrays.copyOf(entrances, entrances.length * 2);
+				}
+				if (runEnd - runStart + 1 > MAX_ENTRANCE_WIDTH) {
+					int a = first + runStart * step;
+					int b = first + runEnd * step;
+					entrances[count++] = a;
+					entrances[count++] = a + across;
+					entrances[count++] = b;
+					entrances[count++] = b + across;
+				} else {
+					int middle = first + (runStart + runEnd) / 2 * step;
+					entrances[count++] = middle;
+					entrances[count++] = middle + across;
+				}
+				runStart = -1;
+			}
+			if (open && runStart < 0) {
+				runStart = i;
+			}
+		}
+		return Arrays.copyOf(entrances, count);
+	}
+
+	/**
+	 * @return True if a rover can move from a square to the next one along and
+	 *         back again
+	 */
+	private boolean linked(int cell, int along, int alongBack) {
+		return grid.canRoverMove(cell, along)
+				&& grid.canRoverMove(cell + grid.getCellOffset(along),
+						alongBack);
+	}
+
+	/**
+	 * Collects the entrances on all four borders of a cluster
+	 */
+	private void buildNodes(int cluster) {
+		if (nodes[cluster] != null) {
+			for (int node : nodes[cluster]) {
+				nodeIndex[node] = -1;
+			}
+		}
+		int cx = cluster % clustersWide;
+		int cy = cluster / clustersWide;
+		int[] found = new int[16];
+		int count = 0;
+		int[][] borders = {
+				eastEntrances[cluster],
+				southEntrances[cluster],
+				cx > 0 ? eastEntrances[cluster - 1] : null,
+				cy > 0 ? southEntrances[cluster - clustersWide] : null };
+		for (int b = 0; b < borders.length; b++) {
+			if (borders[b] == null) {
+				continue;
+			}
+			// The first two borders list this cluster's side first
+			for (int i = b < 2 ? 0 : 1; i < borders[b].length; i += 2) {
+				int cell = borders[b][i];
+				if (nodeIndex[cell] < 0) {
+					if (count == found.length) {
+						found = Arrays.copyOf(found, count * 2);
+					}
+					nodeIndex[cell] = count;
+					found[count++] = cell;
+				}
+			}
+		}
+		nodes[cluster] = Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Works out how far each entrance of a cluster is from every other,
+	 * moving only within the cluster
+	 */
+	private void buildDistances(int cluster) {
+		int[] clusterNodes = nodes[cluster];
+		int n = clusterNodes.length;
+		int[] clusterDistances = new int[n * n];
+		for (int i = 0; i < n; i++) {
+			clusterSearch(cluster, clusterNodes[i], false);
+			for (int j = 0; j < n; j++) {
+				clusterDistances[i * n + j] = localDistance(cluster,
+						clusterNodes[j]);
+			}
+		}
+		distances[cluster] = clusterDistances;
+	}
+
+	/* --------Searching within a cluster-------- */
+
+	/**
+	 * Breadth first search from a square to every square of its cluster, or
+	 * backwards to find how far every square is from it
+	 */
+	private void clusterSearch(int cluster, int origin, boolean backwards) {
+		clusterSearch(cluster, origin, -1, backwards);
+	}
+
+	/**
+	 * Breadth first search within a cluster, which stops early once the
+	 * target square is reached
+	 */
+	private void clusterSearch(int cluster, int origin, int target,
+			boolean backwards) {
+		if (++localGeneration == Integer.MAX_VALUE) {
+			Arrays.fill(localSeen, 0);
+			localGeneration = 1;
+		}
+		int x0 = (cluster % clustersWide) * clusterSize;
+		int y0 = (cluster / clustersWide) * clusterSize;
+		int x1 = Math.min(x0 + clusterSize, width);
+		int y1 = Math.min(y0 + clusterSize, height);
+
+		int head = 0;
+		int tail = 0;
+		int local = local(origin, x0, y0);
+		localSeen[local] = localGeneration;
+		localDistance[local] = 0;
+		localFrom[local] = -1;
+		localQueue[tail++] = origin;
+		while (head < tail) {
+			int cell = localQueue[head++];
+			if (cell == target) {
+				return;
+			}
+			int x = cell % width;
+			int y = cell / width;
+			int distance = localDistance[local(cell, x0, y0)] + 1;
+			for (int d = 0; d < DIRECTIONS; d++) {
+				int nx = backwards ? x - DX[d] : x + DX[d];
+				int ny = backwards ? y - DY[d] : y + DY[d];
+				if (nx < x0 || nx >= x1 || ny < y0 || ny >= y1) {
+					continue;
+				}
+				int next = ny * width + nx;
+				if (!grid.canRoverMove(backwards ? next : cell, d)) {
+					continue;
+				}
+				int nextLocal = local(next, x0, y0);
+				if (localSeen[nextLocal] != localGeneration) {
+					localSeen[nextLocal] = localGeneration;
+					localDistance[nextLocal] = distance;
+					localFrom[nextLocal] = cell;
+					localQueue[tail++] = next;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return How far the last cluster search got to a square, or INFINITY
+	 */
+	private int localDistance(int cluster, int cell) {
+		int x0 = (cluster % clustersWide) * clusterSize;
+		int y0 = (cluster / clustersWide) * clusterSize;
+		int local = local(cell, x0, y0);
+		return localSeen[local] == localGeneration ? localDistance[local]
+				: INFINITY;
+	}
+
+	/**
+	 * Adds the squares of the shortest path within a cluster from one square
+	 * to another, not including the first
+	 */
+	private void appendPath(int cluster, int start, int end, List<Location> path) {
+		if (start == end) {
+			return;
+		}
+		clusterSearch(cluster, start, end, false);
+		int x0 = (cluster % clustersWide) * clusterSize;
+		int y0 = (cluster / clustersWide) * clusterSize;
+		int size = path.size();
+		for (int cell = end; cell != start; cell = localFrom[local(cell, x0,
+				y0)]) {
+			path.add(size, new Location(cell % width, cell / width));
+		}
+	}
+
+	private int local(int cell, int x0, int y0) {
+		return (cell / width - y0) * clusterSize + cell % width - x0;
+	}
+
+	private int clusterOf(int cell) {
+		return (cell / width / clusterSize) * clustersWide + cell % width
+				/ clusterSize;
+	}
+
+	/* --------Searching between entrances-------- */
+
+	private void relax(int node, int parent, int cost, int endCell) {
+		if (closed[node] == generation
+				|| (seen[node] == generation && costToHere[node] <= cost)) {
+			return;
+		}
+		seen[node] = generation;
+		costToHere[node] = cost;
+		from[node] = parent;
+		int estimate = Math.abs(node % width - endCell % width)
+				+ Math.abs(node / width - endCell / width);
+		push(node, cost, estimate);
+	}
+
+	private void nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	/**
+	 * Adds a node to the open list, ordered by estimated total cost
+	 */
+	private void push(int cell, int cost, int estimate) {
+		if (heapSize == heapCells.length) {
+			heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		long key = ((long) (cost + estimate) << 32) | (Integer.MAX_VALUE - cost);
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapKeys[parent] <= key) {
+				break;
+			}
+			heapCells[i] = heapCells[parent];
+			heapKeys[i] = heapKeys[parent];
+			i = parent;
+		}
+		heapCells[i] = cell;
+		heapKeys[i] = key;
+	}
+
+	/**
+	 * Removes and returns the node with the lowest key
+	 */
+	private int pop() {
+		int top = heapCells[0];
+		int cell = heapCells[--heapSize];
+		long key = heapKeys[heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				child++;
+			}
+			if (key <= heapKeys[child]) {
+				break;
+			}
+			heapCells[i] = heapCells[child];
+			heapKeys[i] = heapKeys[child];
+			i = child;
+		}
+		heapCells[i] = cell;
+		heapKeys[i] = key;
+		return top;
+	}
+}
@@ -0,0 +1,386 @@
+package bots;
+
+import game.NavigationGrid;
+
+import java.util.Arrays;
+
+/**
+ * A D* Lite search for a rover chasing a target, which keeps its search tree
+ * between ticks and only repairs the parts that changed, rather than
+ * searching from scratch every time the rover or its target moves.
+ *
+ * The search runs backwards from the target, so g is the distance from each
+ * square to the target. The rover moving only changes the heuristic, which is
+ * handled by D* Lite's key modifier. The target moving one square is treated
+ * as the cost of reaching the target changing at the old and new squares,
+ * and a square changing on the NavigationGrid as the cost of the moves out of
+ * it and its neighbours changing, so both are repaired like any other change.
+ * If the target moves further, or too many squares have changed, the search
+ * starts again.
+ *
+ * Squares are referred to by their packed index on the NavigationGrid. A
+ * planner is not thread safe and belongs to a single rover.
+ *
+ * @author evansben1
+ *
+ */
+public class IncrementalPlanner {
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+	private static final int DIRECTIONS = 4;
+
+	private final NavigationGrid grid;
+	private final int width;
+	private int nodeBudget;
+
+	// Per square search state, only valid where stamped with the generation
+	private final int[] g;
+	private final int[] rhs;
+	private final int[] heapIndex; // position in the heap + 1, 0 if not in it
+	private final int[] stamp;
+	private int generation;
+
+	// The open list, a binary heap of squares ordered by key
+	private int[] heapCells = new int[64];
+	private long[] heapKeys = new long[64];
+	private int heapSize;
+
+	private int start = -1;
+	private int goal = -1;
+	private int last;
+	private int keyModifier;
+	private int gridVersion;
+	private int lastExpanded;
+
+	public IncrementalPlanner(NavigationGrid grid) {
+		this(grid, PathEngine.DEFAULT_NODE_BUDGET);
+	}
+
+	/**
+	 * @param grid
+	 *            The moves which are possible from each square
+	 * @param nodeBudget
+	 *            How many squares may be expanded each time a step is planned
+	 */
+	public IncrementalPlanner(NavigationGrid grid, int nodeBudget) {
+		this.grid = grid;
+		this.width = grid.getWidth();
+		this.nodeBudget = nodeBudget;
+		int cells = grid.getWidth() * grid.getHeight();
+		g = new int[cells];
+		rhs = new int[cells];
+		heapIndex = new int[cells];
+		stamp = new int[cells];
+	}
+
+	/**
+	 * Plans the next step from the start towards the goal, reusing as much of
+	 * the previous search as possible
+	 *
+	 * @param startCell
+	 *            The packed index of the rover's square
+	 * @param goalCell
+	 *            The packed index of the target's square
+	 * @return The packed index of the square to step to, the start if it is
+	 *         the goal, or -1 if no path could be found within the budget
+	 */
+	public int nextCell(int startCell, int goalCell) {
+		if (startCell < 0 || goalCell < 0) {
+			return -1;
+		}
+		if (goal < 0 || estimate(goal, goalCell) > 1) {
+			reset(startCell, goalCell);
+		} else {
+			if (startCell != start) {
+				keyModifier += estimate(last, startCell);
+				last = startCell;
+				start = startCell;
+			}
+			if (!applyGridChanges()) {
+				reset(startCell, goalCell);
+			} else if (goalCell != goal) {
+				int oldGoal = goal;
+				goal = goalCell;
+				touch(goalCell);
+				rhs[goalCell] = 0;
+				updateVertex(goalCell);
+				updateRhs(oldGoal);
+			}
+		}
+
+		if (!computeShortestPath() || getG(start) >= INFINITY) {
+			return -1;
+		}
+		return bestNeighbour(start);
+	}
+
+	/**
+	 * Picks the next step from a square using the distances as they were last
+	 * planned, without repairing the search for any changes since, so it is
+	 * cheap but may not be the best step
+	 *
+	 * @param cell
+	 *            The packed index of the rover's square
+	 * @return The packed index of the square to step to, the cell itself if it
+	 *         is the goal, or -1 if the search doesn't know a way from it
+	 */
+	public int followCell(int cell) {
+		if (goal < 0 || cell < 0 || getG(cell) >= INFINITY) {
+			return -1;
+		}
+		return bestNeighbour(cell);
+	}
+
+	private int bestNeighbour(int cell) {
+		if (cell == goal) {
+			return cell;
+		}
+		int best = -1;
+		int bestCost = INFINITY;
+		for (int d = 0; d < DIRECTIONS; d++) {
+			if (grid.canRoverMove(cell, d)) {
+				int next = cell + grid.getCellOffset(d);
+				int cost = 1 + getG(next);
+				if (cost < bestCost) {
+					best = next;
+					bestCost = cost;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return How far the start was from the goal when last planned, if a path
+	 *         was found
+	 */
+	public int getDistance() {
+		return start < 0 ? -1 : getG(start);
+	}
+
+	/**
+	 * @return How many squares were expanded when last planned
+	 */
+	public int getLastExpanded() {
+		return lastExpanded;
+	}
+
+	public NavigationGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Throws away the previous search and starts a new one
+	 */
+	private void reset(int startCell, int goalCell) {
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		heapSize = 0;
+		keyModifier = 0;
+		start = startCell;
+		last = startCell;
+		goal = goalCell;
+		gridVersion = grid.getVersion();
+		touch(goalCell);
+		rhs[goalCell] = 0;
+		updateVertex(goalCell);
+	}
+
+	/**
+	 * Repairs the squares around every square which changed on the grid
+	 *
+	 * @return False if too many changed to be remembered
+	 */
+	private boolean applyGridChanges() {
+		for (; gridVersion < grid.getVersion(); gridVersion++) {
+			int cell = grid.getChangedCell(gridVersion);
+			if (cell < 0) {
+				return false;
+			}
+			updateRhs(cell);
+			for (int d = 0; d < DIRECTIONS; d++) {
+				int neighbour = cell - grid.getCellOffset(d);
+				if (neighbour >= 0 && neighbour < g.length) {
+					updateRhs(neighbour);
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean computeShortestPath() {
+		lastExpanded = 0;
+		while (heapSize > 0
+				&& (heapKeys[0] < key(start) || getRhs(start) != getG(start))) {
+			if (++lastExpanded > nodeBudget) {
+				return false;
+			}
+			int u = heapCells[0];
+			long oldKey = heapKeys[0];
+			long newKey = key(u);
+			if (oldKey < newKey) {
+				siftDown(0, u, newKey);
+			} else if (g[u] > rhs[u]) {
+				// Overconsistent, its distance has improved
+				g[u] = rhs[u];
+				remove(u);
+				for (int d = 0; d < DIRECTIONS; d++) {
+					int p = u - grid.getCellOffset(d);
+					if (p >= 0 && p < g.length && grid.canRoverMove(p, d)
+							&& p != goal) {
+						touch(p);
+						if (g[u] + 1 < rhs[p]) {
+							rhs[p] = g[u] + 1;
+							updateVertex(p);
+						}
+					}
+				}
+			} else {
+				// Underconsistent, everything which went through it must be
+				// recomputed
+				int oldG = g[u];
+				g[u] = INFINITY;
+				for (int d = 0; d < DIRECTIONS; d++) {
+					int p = u - grid.getCellOffset(d);
+					if (p >= 0 && p < g.length && grid.canRoverMove(p, d)
+							&& getRhs(p) == oldG + 1) {
+						updateRhs(p);
+					}
+				}
+				updateRhs(u);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Recomputes the best distance to the goal through a square's neighbours
+	 */
+	private void updateRhs(int cell) {
+		touch(cell);
+		if (cell != goal) {
+			int best = INFINITY;
+			for (int d = 0; d < DIRECTIONS; d++) {
+				if (grid.canRoverMove(cell, d)) {
+					best = Math.min(best, 1 + getG(cell + grid.getCellOffset(d)));
+				}
+			}
+			rhs[cell] = best;
+		}
+		updateVertex(cell);
+	}
+
+	/**
+	 * Puts an inconsistent square on the open list with its current key, or
+	 * takes a consistent one off
+	 */
+	private void updateVertex(int cell) {
+		boolean inHeap = heapIndex[cell] != 0;
+		if (g[cell] != rhs[cell]) {
+			if (inHeap) {
+				int i = heapIndex[cell] - 1;
+				long key = key(cell);
+				if (key < heapKeys[i]) {
+					siftUp(i, cell, key);
+				} else {
+					siftDown(i, cell, key);
+				}
+			} else {
+				push(cell);
+			}
+		} else if (inHeap) {
+			remove(cell);
+		}
+	}
+
+	private long key(int cell) {
+		int min = Math.min(getG(cell), getRhs(cell));
+		return ((long) (min + estimate(start, cell) + keyModifier) << 32) | min;
+	}
+
+	private int estimate(int a, int b) {
+		return Math.abs(a % width - b % width) + Math.abs(a / width - b / width);
+	}
+
+	private int getG(int cell) {
+		return stamp[cell] == generation ? g[cell] : INFINITY;
+	}
+
+	private int getRhs(int cell) {
+		return stamp[cell] == generation ? rhs[cell] : INFINITY;
+	}
+
+	/**
+	 * Makes sure a square has state for this generation
+	 */
+	private void touch(int cell) {
+		if (stamp[cell] != generation) {
+			stamp[cell] = generation;
+			g[cell] = INFINITY;
+			rhs[cell] = INFINITY;
+			heapIndex[cell] = 0;
+		}
+	}
+
+	/* --------Indexed binary heap-------- */
+
+	private void push(int cell) {
+		if (heapSize == heapCells.length) {
+			heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		siftUp(heapSize++, cell, key(cell));
+	}
+
+	private void remove(int cell) {
+		int i = heapIndex[cell] - 1;
+		heapIndex[cell] = 0;
+		int lastCell = heapCells[--heapSize];
+		long lastKey = heapKeys[heapSize];
+		if (i == heapSize) {
+			return;
+		}
+		if (lastKey < heapKeys[i]) {
+			siftUp(i, lastCell, lastKey);
+		} else {
+			siftDown(i, lastCell, lastKey);
+		}
+	}
+
+	private void siftUp(int i, int cell, long key) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapKeys[parent] <= key) {
+				break;
+			}
+			place(i, heapCells[parent], heapKeys[parent]);
+			i = parent;
+		}
+		place(i, cell, key);
+	}
+
+	private void siftDown(int i, int cell, long key) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				child++;
+			}
+			if (key <= heapKeys[child]) {
+				break;
+			}
+			place(i, heapCells[child], heapKeys[child]);
+			i = child;
+		}
+		place(i, cell, key);
+	}
+
+	private void place(int i, int cell, long key) {
+		heapCells[i] = cell;
+		heapKeys[i] = key;
+		heapIndex[cell] = i + 1;
+	}
+}
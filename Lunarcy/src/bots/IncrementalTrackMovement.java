@@ -0,0 +1,96 @@
+package bots;
+
+import game.GameState;
+import game.Location;
+import game.NavigationGrid;
+import game.Player;
+
+import java.util.List;
+
+/**
+ * Incremental Track Movement: Follow a Player around the map like
+ * TrackMovement, but keep the search between steps in an IncrementalPlanner,
+ * so when the player moves a square or a door changes only the affected part
+ * of the search is repaired rather than starting again.
+ *
+ * @author evansben1
+ *
+ */
+
+@SuppressWarnings("serial")
+public class IncrementalTrackMovement extends ShortestPathMover implements
+		PursuitStrategy {
+
+	// The player we are chasing
+	private Player target;
+
+	// The steps planned from where we last thought
+	private List<Location> path;
+
+	// The distance a player must be from a rover before the rover gives up
+	private final int MAX_DISTANCE;
+
+	// The search kept between steps, rebuilt after loading or a new map
+	private transient IncrementalPlanner planner;
+
+	public IncrementalTrackMovement(GameState gamestate, Player target) {
+		this.target = target;
+		this.MAX_DISTANCE = gamestate.getBoard().length / 2;
+	}
+
+	/**
+	 * Gives up if the player is inside, or the player is too far away from you.
+	 */
+	public boolean shouldGiveup(Rover rover, GameState gamestate) {
+		return !gamestate.isOutside(target.getLocation())
+				|| target.hasCloak()
+				|| estimate(rover.getLocation(), target.getLocation()) > MAX_DISTANCE;
+	}
+
+	/**
+	 * Plans one step along the shortest path to the target, or stays put if
+	 * already there
+	 *
+	 * @return The next location, or null if the target can't be reached
+	 */
+	public Location nextStep(Rover rover, GameState gamestate) {
+		if (shouldGiveup(rover, gamestate)) {
+			return null;
+		}
+
+		NavigationGrid grid = gamestate.getNavigationGrid();
+		if (planner == null || planner.getGrid() != grid) {
+			planner = new IncrementalPlanner(grid);
+		}
+
+		Location location = rover.getLocation();
+		Location targetLocation = target.getLocation();
+		int cell = grid.getCell(location.getX(), location.getY());
+		int next = planner.nextCell(cell,
+				grid.getCell(targetLocation.getX(), targetLocation.getY()));
+		if (next < 0) {
+			path = null;
+			return null;
+		}
+
+		path = walkPlan(next, grid, new NextCell() {
+			public int nextCell(int cell) {
+				return planner.followCell(cell);
+			}
+		}, MAX_DISTANCE);
+
+		if (next == cell) {
+			return location;
+		}
+		return new Location(next % grid.getWidth(), next / grid.getWidth());
+	}
+
+	/**
+	 * Takes the next step towards where the target was when we last thought,
+	 * even if they have moved since
+	 */
+	public Location followPlan(Rover rover, GameState gamestate) {
+		return followPath(path, rover, gamestate);
+	}
+
+}
@@ -0,0 +1,80 @@
+package bots;
+
+import java.util.List;
+
+import game.GameState;
+import game.Location;
+import game.Player;
+
+/**
+ * Long Range Track Movement: Follow a Player around the map like
+ * TrackMovement, but find paths with the HierarchicalPathfinder so the rover
+ * can keep chasing however far away the player gets. Only gives up if the
+ * player goes inside, cloaks, or can't be reached.
+ *
+ * @author evansben1
+ *
+ */
+
+@SuppressWarnings("serial")
+public class LongRangeTrackMovement extends HierarchicalPathMover implements
+		PursuitStrategy {
+
+	// The player we are chasing
+	private Player target;
+
+	// The path we are currently following
+	private List<Location> path;
+
+	public LongRangeTrackMovement(Rover rover, GameState gamestate,
+			Player target) {
+		this.target = target;
+		this.path = findPath(gamestate, rover.getLocation(),
+				target.getLocation());
+	}
+
+	/**
+	 * Gives up if the player is inside or has a cloaking gadget
+	 */
+	public boolean shouldGiveup(Rover rover, GameState gamestate) {
+		return !gamestate.isOutside(target.getLocation()) || target.hasCloak();
+	}
+
+	/**
+	 * Follows the path to the target, finding a new one whenever the target
+	 * has moved from the end of it
+	 *
+	 * @return The next location, or null if the target can't be reached
+	 */
+	public Location nextStep(Rover rover, GameState gamestate) {
+		if (shouldGiveup(rover, gamestate)) {
+			return null;
+		}
+
+		if (path == null || path.isEmpty()
+				|| !path.get(path.size() - 1).equals(target.getLocation())) {
+			path = findPath(gamestate, rover.getLocation(),
+					target.getLocation());
+		}
+
+		if (path == null) {
+			return null;
+		}
+
+		// Already at the player, so do not need to move
+		if (path.isEmpty()) {
+			return rover.getLocation();
+		}
+
+		return path.remove(0);
+	}
+
+	/**
+	 * Takes the next step along the current path, even if the target has
+	 * moved from the end of it
+	 */
+	public Location followPlan(Rover rover, GameState gamestate) {
+		return ShortestPathMover.followPath(path, rover, gamestate);
+	}
+
+}
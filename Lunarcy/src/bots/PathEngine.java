@@ -0,0 +1,238 @@
+package bots;
+
+import game.Location;
+import game.NavigationGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An A* search for rovers over a NavigationGrid. Squares are referred to by
+ * their packed index (y * width + x) and all the search state lives in
+ * primitive arrays which are reused by every search, so a search only
+ * allocates the path it returns.
+ *
+ * Rather than clearing the arrays between searches, each search has its own
+ * generation number and an entry only counts if it was stamped with the
+ * current generation.
+ *
+ * An engine is not thread safe, each thread searching a GameState has its own.
+ *
+ * @author evansben1
+ *
+ */
+public class PathEngine {
+	// How many squares a search may expand before giving up
+	public static final int DEFAULT_NODE_BUDGET = 4096;
+
+	private static final int DIRECTIONS = 4;
+
+	private final NavigationGrid grid;
+	private final int width;
+	private int nodeBudget;
+
+	// Per cell search state, only valid where stamp matches the generation
+	private final int[] costToHere;
+	private final int[] from;
+	private final int[] seen;
+	private final int[] closed;
+	private int generation;
+
+	// The open list, a binary heap of cells ordered by key
+	private int[] heapCells = new int[64];
+	private long[] heapKeys = new long[64];
+	private int heapSize;
+
+	private int lastExpanded;
+
+	public PathEngine(NavigationGrid grid) {
+		this(grid, DEFAULT_NODE_BUDGET);
+	}
+
+	/**
+	 * @param grid
+	 *            The moves which are possible from each square
+	 * @param nodeBudget
+	 *            How many squares a search may expand before giving up
+	 */
+	public PathEngine(NavigationGrid grid, int nodeBudget) {
+		this.grid = grid;
+		this.width = grid.getWidth();
+		this.nodeBudget = nodeBudget;
+		int cells = grid.getWidth() * grid.getHeight();
+		costToHere = new int[cells];
+		from = new int[cells];
+		seen = new int[cells];
+		closed = new int[cells];
+	}
+
+	/**
+	 * Finds the shortest path a rover could take from start to end.
+	 *
+	 * @return The locations to step through in order, not including the start,
+	 *         an empty list if start is end, or null if there is no path within
+	 *         the node budget
+	 */
+	public List<Location> findPath(Location start, Location end) {
+		if (start == null || end == null) {
+			return null;
+		}
+		int startCell = grid.getCell(start.getX(), start.getY());
+		int endCell = grid.getCell(end.getX(), end.getY());
+		if (startCell < 0 || endCell < 0 || !search(startCell, endCell)) {
+			return null;
+		}
+
+		List<Location> path = new ArrayList<Location>(costToHere[endCell]);
+		for (int cell = endCell; cell != startCell; cell = from[cell]) {
+			path.add(new Location(cell % width, cell / width));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Searches from one cell to another. If a path was found the cost to the
+	 * end cell, and the cell each step came from, can be read until the next
+	 * search.
+	 *
+	 * @return True if a path was found
+	 */
+	public boolean search(int startCell, int endCell) {
+		nextGeneration();
+		heapSize = 0;
+		lastExpanded = 0;
+		int endX = endCell % width;
+		int endY = endCell / width;
+
+		seen[startCell] = generation;
+		costToHere[startCell] = 0;
+		from[startCell] = -1;
+		push(startCell, 0, estimate(startCell, endX, endY));
+
+		while (heapSize > 0) {
+			int cell = pop();
+			if (closed[cell] == generation) {
+				continue; // a stale entry, the cell was reached more cheaply
+			}
+			closed[cell] = generation;
+			if (cell == endCell) {
+				return true;
+			}
+			if (++lastExpanded > nodeBudget) {
+				return false;
+			}
+
+			int cost = costToHere[cell] + 1;
+			for (int d = 0; d < DIRECTIONS; d++) {
+				if (!grid.canRoverMove(cell, d)) {
+					continue;
+				}
+				int next = cell + grid.getCellOffset(d);
+				if (closed[next] == generation
+						|| (seen[next] == generation && costToHere[next] <= cost)) {
+					continue;
+				}
+				seen[next] = generation;
+				costToHere[next] = cost;
+				from[next] = cell;
+				push(next, cost, estimate(next, endX, endY));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The cell the last search stepped into the given cell from, -1
+	 *         for the start
+	 */
+	public int getFrom(int cell) {
+		return from[cell];
+	}
+
+	/**
+	 * @return How many squares the last search expanded
+	 */
+	public int getLastExpanded() {
+		return lastExpanded;
+	}
+
+	public int getNodeBudget() {
+		return nodeBudget;
+	}
+
+	public void setNodeBudget(int nodeBudget) {
+		this.nodeBudget = nodeBudget;
+	}
+
+	private void nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	/**
+	 * Manhattan distance, which never overestimates on a grid without
+	 * diagonal moves
+	 */
+	private int estimate(int cell, int endX, int endY) {
+		return Math.abs(cell % width - endX) + Math.abs(cell / width - endY);
+	}
+
+	/**
+	 * Adds a cell to the open list. Cells are ordered by estimated total cost,
+	 * and between equal totals the one furthest along is preferred.
+	 */
+	private void push(int cell, int cost, int estimate) {
+		if (heapSize == heapCells.length) {
+			heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		long key = ((long) (cost + estimate) << 32) | (Integer.MAX_VALUE - cost);
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapKeys[parent] <= key) {
+				break;
+			}
+			heapCells[i] = heapCells[parent];
+			heapKeys[i] = heapKeys[parent];
+			i = parent;
+		}
+		heapCells[i] = cell;
+		heapKeys[i] = key;
+	}
+
+	/**
+	 * Removes and returns the cell with the lowest key
+	 */
+	private int pop() {
+		int top = heapCells[0];
+		int cell = heapCells[--heapSize];
+		long key = heapKeys[heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				child++;
+			}
+			if (key <= heapKeys[child]) {
+				break;
+			}
+			heapCells[i] = heapCells[child];
+			heapKeys[i] = heapKeys[child];
+			i = child;
+		}
+		heapCells[i] = cell;
+		heapKeys[i] = key;
+		return top;
+	}
+}
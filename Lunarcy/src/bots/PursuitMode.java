@@ -0,0 +1,55 @@
+package bots;
+
+import game.GameState;
+import game.Player;
+
+/**
+ * The ways a rover can chase a player once it has spotted one.
+ *
+ * @author evansben1
+ */
+public enum PursuitMode {
+	/**
+	 * Each rover searches its own path, replanning whenever the player moves
+	 */
+	TRACK {
+		public PursuitStrategy createStrategy(Rover rover, GameState gamestate,
+				Player target) {
+			return new TrackMovement(rover, gamestate, target);
+		}
+	},
+	/**
+	 * Each rover keeps its own search, repairing it as the player moves
+	 */
+	INCREMENTAL {
+		public PursuitStrategy createStrategy(Rover rover, GameState gamestate,
+				Player target) {
+			return new IncrementalTrackMovement(gamestate, target);
+		}
+	},
+	/**
+	 * Each rover searches its own path through clusters of the board, so it
+	 * can chase a player any distance
+	 */
+	HIERARCHICAL {
+		public PursuitStrategy createStrategy(Rover rover, GameState gamestate,
+				Player target) {
+			return new LongRangeTrackMovement(rover, gamestate, target);
+		}
+	},
+	/**
+	 * Every rover chasing a player follows one shared flow field
+	 */
+	FLOW_FIELD {
+		public PursuitStrategy createStrategy(Rover rover, GameState gamestate,
+				Player target) {
+			return new FlowFieldMovement(gamestate, target);
+		}
+	};
+
+	/**
+	 * @return A strategy for the rover to chase the target with
+	 */
+	public abstract PursuitStrategy createStrategy(Rover rover,
+			GameState gamestate, Player target);
+}
@@ -0,0 +1,28 @@
+package bots;
+
+import game.GameState;
+import game.Location;
+
+/**
+ * A MoveStrategy which chases a player, and knows when the chase should be
+ * abandoned so the rover can go back to roaming.
+ *
+ * @author evansben1
+ */
+public interface PursuitStrategy extends MoveStrategy {
+
+	/**
+	 * @return True if the rover should stop chasing
+	 */
+	public boolean shouldGiveup(Rover rover, GameState gamestate);
+
+	/**
+	 * Moves the rover one step along the plan it already has, without doing
+	 * any searching, for when the AIScheduler has no time for it to think.
+	 * The plan may be out of date, so the step must still be checked.
+	 *
+	 * @return The next location, or the rover's own location if the plan
+	 *         can't be followed
+	 */
+	public Location followPlan(Rover rover, GameState gamestate);
+}
@@ -1,6 +1,7 @@
 package bots;
 
 import game.Direction;
+import game.GameRandom;
 import game.GameState;
 import game.Location;
 import game.Player;
@@ -14,9 +15,14 @@ import java.io.Serializable;
  *
  * 1. Roam: Follow a random path, change to #2 when a player is spotted.
  *
- * 2. Track: Track and follow a specific Player, using shortest path to attempt
- * to capture them. Gives up after the player gets too far away, and reverts to
- * the Roam Strategy.
+ * 2. Pursuit: Chase a specific Player, in the way the GameState's PursuitMode
+ * chooses, to attempt to capture them. Gives up after the player gets too far
+ * away, and reverts to the Roam Strategy.
+ *
+ * Each tick is split in two, so that every rover can decide where to go at
+ * once on different threads. Deciding only changes the rover itself, and the
+ * rest of the game is changed when the rovers apply their moves one at a time
+ * in order of their IDs.
  *
  * @author evansben1
  *
@@ -25,6 +31,10 @@ public class Rover implements Character, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	// Orders the rovers are applied in, and seeds their random choices
+	private final int id;
+	private GameRandom random;
+
 	// The current movement strategy we are following
 	private MoveStrategy movementStrategy;
 
@@ -38,7 +48,27 @@ public class Rover implements Character, Serializable {
 	// So we can reset the rover to their original location if neccesary
 	private final Location startSpawn;
 
+	// Whether the rover moved when it last decided, so has a move to apply
+	private transient boolean moved;
+
+	// How long the rover took the last time it thought, in nanoseconds
+	private transient long thinkNanos;
+
 	public Rover(Location spawnLocation) {
+		this(0, spawnLocation, 0);
+	}
+
+	/**
+	 * @param id
+	 *            Unique among the rovers in a game
+	 * @param spawnLocation
+	 *            Where the rover starts
+	 * @param seed
+	 *            Seeds every random choice the rover makes
+	 */
+	public Rover(int id, Location spawnLocation, long seed) {
+		this.id = id;
+		this.random = new GameRandom(seed);
 		this.startSpawn = spawnLocation;
 		this.currentLocation = spawnLocation;
 
@@ -46,12 +76,67 @@ public class Rover implements Character, Serializable {
 		this.orientation = Direction.NORTH;
 	}
 
+	/**
+	 * Recreates a roaming rover at a given position, used when a rover is
+	 * received over the network
+	 *
+	 * @param id
+	 *            The ID of the rover, so clients can tell which rover is which
+	 *            between updates
+	 * @param spawnLocation
+	 *            Where the rover originally spawned
+	 * @param currentLocation
+	 *            Where the rover is now
+	 * @param orientation
+	 *            The direction the rover is facing
+	 */
+	public Rover(int id, Location spawnLocation, Location currentLocation,
+			Direction orientation) {
+		this(id, spawnLocation, 0);
+		this.currentLocation = currentLocation;
+		this.orientation = orientation;
+	}
+
 	/**
 	 * Moves the rover one step along its currentPath, generating a new path if
 	 * necessary and also changing the movement strategy when applicable.
 	 */
 
 	public void tick(GameState gameState) {
+		decide(gameState);
+		apply(gameState);
+	}
+
+	/**
+	 * Works out the rover's next step and moves it there, then changes the
+	 * movement strategy if applicable. Only the rover itself is changed, so
+	 * several rovers may decide at once, but nothing else in the GameState
+	 * may change until they have all applied their moves.
+	 */
+	public void decide(GameState gameState) {
+		decide(gameState, true);
+	}
+
+	/**
+	 * Decides the rover's next move like decide(GameState), but if the rover
+	 * isn't allowed to think this tick it only keeps following its last plan,
+	 * without looking for players, planning or changing its movement
+	 * strategy.
+	 *
+	 * @param think
+	 *            Whether the rover may think this tick, given by the
+	 *            AIScheduler
+	 */
+	public void decide(GameState gameState, boolean think) {
+		moved = false;
+
+		if (!think) {
+			follow(gameState);
+			return;
+		}
+
+		long start = System.nanoTime();
+
 		// Set our nextStep to based on the strategys next step
 		nextStep = movementStrategy.nextStep(this, gameState);
 
@@ -59,9 +144,37 @@ public class Rover implements Character, Serializable {
 		if (nextStep == null) {
 			// So set there movement to be roaming
 			movementStrategy = new RoamMovement();
+		} else {
+			step(gameState);
+			updateStrategy(gameState);
+		}
+		thinkNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Takes the next step of the plan the rover is already following. A
+	 * roaming rover has no plan, and roaming is cheap, so it just roams
+	 * without looking for players.
+	 */
+	private void follow(GameState gameState) {
+		if (movementStrategy instanceof PursuitStrategy) {
+			nextStep = ((PursuitStrategy) movementStrategy).followPlan(this,
+					gameState);
+		} else {
+			nextStep = movementStrategy.nextStep(this, gameState);
+		}
+
+		if (nextStep == null) {
+			movementStrategy = new RoamMovement();
 			return;
 		}
+		step(gameState);
+	}
 
+	/**
+	 * Moves the rover to its nextStep, which must be valid
+	 */
+	private void step(GameState gameState) {
 		// Face the direction the next square is in
 		orientation = currentLocation.getDirection(nextStep);
 
@@ -73,6 +186,20 @@ public class Rover implements Character, Serializable {
 		if (!gameState.isOutside(currentLocation)) {
 			restartRover();
 		}
+		moved = true;
+	}
+
+	/**
+	 * Updates the rest of the GameState for the move the rover last decided
+	 * on, catching any player it moved onto. Rovers must apply one at a time,
+	 * in order of their IDs.
+	 */
+	public void apply(GameState gameState) {
+		if (!moved) {
+			return;
+		}
+		moved = false;
+		gameState.updateLocation(this);
 
 		Player caughtPlayer = gameState.caughtPlayer(this);
 
@@ -81,9 +208,6 @@ public class Rover implements Character, Serializable {
 			// Take all there oxygen
 			caughtPlayer.depleteOxygen();
 		}
-
-		updateStrategy(gameState);
-
 	}
 
 	private void restartRover() {
@@ -94,10 +218,11 @@ public class Rover implements Character, Serializable {
 	/**
 	 * Changes the movement strategy in one of two cases
 	 *
-	 * 1. If the Rover is roaming and spots a target, changes to TrackMovement.
+	 * 1. If the Rover is roaming and spots a target, changes to the pursuit
+	 * strategy for the GameState's PursuitMode.
 	 *
-	 * 2. If the Rover is tracking and has not reached the player after a
-	 * certain amount of ticks, revert to roaming.
+	 * 2. If the Rover is chasing and the pursuit should be given up, revert to
+	 * roaming.
 	 *
 	 * Otherwise does not update the movement strategy.
 	 *
@@ -113,15 +238,16 @@ public class Rover implements Character, Serializable {
 
 			// If we can see a target, chase them
 			if (target != null) {
-				// Change to tracking this target
-				movementStrategy = new TrackMovement(this, gameState, target);
+				// Change to chasing this target
+				movementStrategy = gameState.getPursuitMode().createStrategy(
+						this, gameState, target);
 			}
 
 		}
-		// If we are in Track Mode
-		else if (movementStrategy instanceof TrackMovement) {
-			// If the tracker has been following for too long
-			if (((TrackMovement) movementStrategy)
+		// If we are chasing someone
+		else if (movementStrategy instanceof PursuitStrategy) {
+			// If the chase should be abandoned
+			if (((PursuitStrategy) movementStrategy)
 					.shouldGiveup(this, gameState)) {
 				// Change back to Roaming
 				movementStrategy = new RoamMovement();
@@ -140,6 +266,34 @@ public class Rover implements Character, Serializable {
 		return currentLocation;
 	}
 
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return How long the rover took the last time it thought, in
+	 *         nanoseconds, or 0 if it hasn't thought since it was created or
+	 *         loaded
+	 */
+	public long getThinkNanos() {
+		return thinkNanos;
+	}
+
+	/**
+	 * @return The generator for the rover's random choices, which rovers
+	 *         saved before they had one are given here
+	 */
+	GameRandom getRandom() {
+		if (random == null) {
+			random = new GameRandom(id);
+		}
+		return random;
+	}
+
+	public Location getSpawnLocation() {
+		return startSpawn;
+	}
+
 	public void setOrientation(Direction orientation) {
 		this.orientation = orientation;
 	}
@@ -2,16 +2,11 @@ package bots;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Set;
 
-import game.Direction;
 import game.GameState;
 import game.Location;
-import game.Square;
+import game.NavigationGrid;
 
 /**
  * A special instance of MoveStrategy, where the movement is defined by
@@ -24,34 +19,6 @@ import game.Square;
 @SuppressWarnings("serial")
 abstract class ShortestPathMover implements MoveStrategy, Serializable {
 
-	private List<Location> getNeighbours(Rover rover, GameState gamestate,
-			Location loc) {
-
-		List<Location> neighbours = new ArrayList<Location>();
-
-		for (Direction direction : game.Direction.values()) {
-			if (validMove(gamestate, rover, loc, direction)) {
-				neighbours.add(loc.getAdjacent(direction));
-			}
-		}
-
-		return neighbours;
-	}
-
-	private boolean validMove(GameState state, Rover rover, Location loc,
-			Direction direction) {
-
-		Square src = state.getSquare(loc);
-		Square dest = state.getSquare(loc.getAdjacent(direction));
-
-		if (src != null && dest != null) {
-			return src.canExit(rover, direction)
-					&& dest.canEnter(rover, direction.opposite());
-		}
-
-		return false;
-	}
-
 	/**
 	 * Manhattan distance between start and end, -1 if either values are null
 	 *
@@ -73,140 +40,79 @@ abstract class ShortestPathMover implements MoveStrategy, Serializable {
 	 *
 	 * @param start
 	 * @param end
-	 * @return
+	 * @return The path, not including start, or null if none could be found
 	 */
 	protected List<Location> findPath(Rover rover, GameState gamestate,
 			Location start, Location end) {
-
-		List<Location> path = new ArrayList<Location>();
-		PriorityQueue<LocationWrapper> fringe = new PriorityQueue<>();
-
-		// A set of all the locations we have visited, to avoid revisiting
-		Set<Location> visited = new HashSet<Location>();
-
-		// Add the start node onto our queue
-		fringe.offer(new LocationWrapper(start, null, 0, estimate(start, end)));
-
-		while (!fringe.isEmpty()) {
-
-			// We are stuck
-			if (fringe.size() > 100) {
-				return null;
-			}
-
-			// Get the first item off the queue
-			LocationWrapper item = fringe.poll();
-			Location current = item.getLocation();
-
-			// If we havent been to the current location
-			if (visited.add(current)) {
-				// If we are at the final location
-				if (current.equals(end)) {
-					LocationWrapper temp = item;
-					// Add the path we have just found (in reverse order)
-					while (temp.getFrom() != null) {
-						path.add(temp.getLocation());
-						temp = temp.getFrom();
-					}
-					// Reverse the path, so it is in the correct order to follow
-					Collections.reverse(path);
-					return path;
-				}
-
-				// Add all of this nodes valid neighbours onto the queue
-				for (Location neighbour : getNeighbours(rover, gamestate,
-						current)) {
-
-					// The cost to a neighbouring node, will be the cost to here
-					// + 1 since it is a grid where you can only move
-					// horizontally/vertically
-
-					int costToNeigh = item.getCostToHere() + 1;
-
-					int estimate = estimate(neighbour, end);
-
-					// If the estimates invalid, one of the squares must have
-					// been invalid so skip over this neighbour
-					if (estimate < 0) {
-						continue;
-					}
-
-					int estTotal = costToNeigh + estimate;
-
-					fringe.offer(new LocationWrapper(neighbour, item,
-							costToNeigh, estTotal));
-				}
-			}
-		}
-
-		return path;
-
+		return gamestate.getPathEngine().findPath(start, end);
 	}
 
 	/**
-	 * A wrapper class for location, necessary for findPath() to function
+	 * Takes the next step off a path, if the rover can still make it
 	 *
+	 * @param path
+	 *            The path the rover is following, may be null
+	 * @return The next location, or the rover's own location if the path
+	 *         can't be followed
 	 */
-	private class LocationWrapper implements Comparable<LocationWrapper> {
-		private final Location location;
-		private final LocationWrapper from;
-		private final int costToHere;
-		private final int totalCostToGoal;
-
-		LocationWrapper(Location location, LocationWrapper from,
-				int costToHere, int totalCostToGoal) {
-			this.location = location;
-			this.from = from;
-			this.costToHere = costToHere;
-			this.totalCostToGoal = totalCostToGoal;
-		}
-
-		/**
-		 * Will return -Positive if this is closer to the final location
-		 *
-		 * -Zero if they are equal
-		 *
-		 * -Negative if the other location is closer
-		 *
-		 * @return
-		 */
-
-		@Override
-		public int compareTo(LocationWrapper other) {
-			return totalCostToGoal - other.totalCostToGoal;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			LocationWrapper other = (LocationWrapper) obj;
-
-			// A wrapper is equal if the two locations inside are equal
-			return other.getLocation().equals(location);
-		}
-
-		@Override
-		public int hashCode() {
-			return location.hashCode();
-		}
-
-		public Location getLocation() {
+	static Location followPath(List<Location> path, Rover rover,
+			GameState gamestate) {
+		Location location = rover.getLocation();
+		if (path == null || path.isEmpty()) {
 			return location;
 		}
-
-		public LocationWrapper getFrom() {
-			return from;
+		Location next = path.get(0);
+		if (Math.abs(next.getX() - location.getX())
+				+ Math.abs(next.getY() - location.getY()) != 1
+				|| !gamestate.getNavigationGrid().canMove(rover, location,
+						location.getDirection(next))) {
+			return location;
 		}
+		return path.remove(0);
+	}
 
-		public int getCostToHere() {
-			return costToHere;
+	/**
+	 * Walks a rover's plan from the square it is stepping to, so it can keep
+	 * the way it found as a path of its own. Searches and flow fields are
+	 * never saved and may be recomputed for other rovers while they decide,
+	 * so a rover which doesn't get to think follows its path instead, and a
+	 * restored game carries on exactly as the original.
+	 *
+	 * @param first
+	 *            The packed index of the square the rover is stepping to
+	 * @param grid
+	 *            The grid the squares are packed on
+	 * @param plan
+	 *            The next square on the way from each square
+	 * @param limit
+	 *            The most squares to keep
+	 * @return The squares after the first, in order
+	 */
+	static List<Location> walkPlan(int first, NavigationGrid grid,
+			NextCell plan, int limit) {
+		List<Location> path = new ArrayList<Location>();
+		for (int cell = first; path.size() < limit;) {
+			int next = plan.nextCell(cell);
+			if (next < 0 || next == cell) {
+				break;
+			}
+			path.add(new Location(next % grid.getWidth(), next
+					/ grid.getWidth()));
+			cell = next;
 		}
+		return path;
+	}
 
+	/**
+	 * A plan to walk with walkPlan
+	 */
+	interface NextCell {
+		/**
+		 * @return The packed index of the next square on the way from the
+		 *         cell, the cell itself if it is the goal, or -1 if there is
+		 *         no way on
+		 */
+		int nextCell(int cell);
 	}
 
-}
\ No newline at end of file
+}
@@ -16,7 +16,8 @@ import game.Player;
  */
 
 @SuppressWarnings("serial")
-public class TrackMovement extends ShortestPathMover {
+public class TrackMovement extends ShortestPathMover implements
+		PursuitStrategy {
 
 	// The player we are chasing
 	private Player target;
@@ -30,7 +31,7 @@ public class TrackMovement extends ShortestPathMover {
 	public TrackMovement(Rover rover, GameState gamestate, Player target) {
 		this.target = target;
 		this.MAX_DISTANCE = gamestate.getBoard().length / 2;
-		this.path = findPath(rover, gamestate, rover.getLocation(),
+		this.path = gamestate.getPathEngine().findPath(rover.getLocation(),
 				target.getLocation());
 	}
 
@@ -84,7 +85,7 @@ public class TrackMovement extends ShortestPathMover {
 
 		// Updates the path if the targets changed locations
 		if (mustUpdate()) {
-			path = findPath(rover, gamestate, rover.getLocation(),
+			path = gamestate.getPathEngine().findPath(rover.getLocation(),
 					target.getLocation());
 		}
 
@@ -103,4 +104,12 @@ public class TrackMovement extends ShortestPathMover {
 
 	}
 
+	/**
+	 * Takes the next step along the current path, even if the target has
+	 * moved from the end of it
+	 */
+	public Location followPlan(Rover rover, GameState gamestate) {
+		return followPath(path, rover, gamestate);
+	}
+
 }
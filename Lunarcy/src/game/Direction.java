@@ -62,4 +62,14 @@ public enum Direction {
 		Direction[] dirs = values();
 		return dirs[(int)(Math.random()*dirs.length)];
 	}
+
+	/**
+	 * Returns a random direction, chosen by the given generator
+	 * @param random
+	 * @return
+	 */
+	public static Direction randomDirection(GameRandom random){
+		Direction[] dirs = values();
+		return dirs[random.nextInt(dirs.length)];
+	}
 }
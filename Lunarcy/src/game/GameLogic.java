@@ -1,8 +1,12 @@
 package game;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import bots.*;
 
@@ -13,13 +17,25 @@ import bots.*;
  *
  */
 public class GameLogic {
+	// How many rovers a game needs before they decide their moves in parallel
+	public static final int DEFAULT_PARALLEL_ROVERS = 64;
+
+	// The order rovers apply their moves in
+	private static final Comparator<Rover> ROVER_ORDER = new Comparator<Rover>() {
+		public int compare(Rover a, Rover b) {
+			return Integer.compare(a.getId(), b.getId());
+		}
+	};
+
 	private GameState state;
 	private PlayerMove[] moves;
 
-	private int tickCount;
+	private int parallelRovers = DEFAULT_PARALLEL_ROVERS;
+
+	// Shares out the time rovers may spend thinking each tick
+	private final AIScheduler aiScheduler = new AIScheduler();
 
 	public GameLogic(GameState state) {
-		tickCount = 0;
 		this.state = state;
 		moves = new PlayerMove[state.getPlayers().length];
 	}
@@ -29,11 +45,11 @@ public class GameLogic {
 	 * changes Player Oxygen
 	 */
 	public synchronized void tickGameState() {
-		// Move all the rovers
-		if (tickCount % 4 == 0) {
-			for (Rover r : state.getRovers()) {
-				r.tick(state);
-			}
+		// Move all the rovers, counting ticks with the state so they move on
+		// the same ticks after a game is loaded
+		if (state.getTickCount() % 4 == 0) {
+			tickRovers();
+			state.markRoversDirty();
 		}
 		// Move all the players
 		for (int i = 0; i < moves.length; i++) {
@@ -62,7 +78,56 @@ public class GameLogic {
 					+ " has won the game!!");
 		}
 		state.tick();
-		tickCount++;
+	}
+
+	/**
+	 * Moves every rover. The rovers all decide where to go first, on the
+	 * common fork-join pool if there are enough of them, then apply their
+	 * moves one at a time in order of ID, so the result is the same however
+	 * many threads they decided on. Only the rovers the AIScheduler has time
+	 * for think, the rest follow their last plan.
+	 */
+	private void tickRovers() {
+		Rover[] rovers = state.getRovers().toArray(new Rover[0]);
+		Arrays.sort(rovers, ROVER_ORDER);
+		boolean[] think = aiScheduler.schedule(rovers);
+		if (rovers.length >= parallelRovers) {
+			state.prepareRoverDecisions();
+			ForkJoinPool.commonPool().invoke(
+					new RoverDecisions(rovers, think, 0, rovers.length));
+		} else {
+			for (int i = 0; i < rovers.length; i++) {
+				rovers[i].decide(state, think[i]);
+			}
+		}
+		aiScheduler.record(rovers, think);
+		for (Rover rover : rovers) {
+			rover.apply(state);
+		}
+	}
+
+	/**
+	 * @return How many rovers a game needs before they decide in parallel
+	 */
+	public int getParallelRovers() {
+		return parallelRovers;
+	}
+
+	/**
+	 * @param parallelRovers
+	 *            How many rovers a game needs before they decide in parallel,
+	 *            Integer.MAX_VALUE to always decide on the ticking thread
+	 */
+	public void setParallelRovers(int parallelRovers) {
+		this.parallelRovers = parallelRovers;
+	}
+
+	/**
+	 * @return The scheduler for the rovers' thinking, which has no budget
+	 *         unless one is set
+	 */
+	public AIScheduler getAIScheduler() {
+		return aiScheduler;
 	}
 
 	/* --------Player Movement-------- */
@@ -95,6 +160,45 @@ public class GameLogic {
 		return false;
 	}
 
+	/**
+	 * Moves a player straight away if they may move, rather than on the next
+	 * tick. Used by clients to show their own moves before the server has
+	 * applied them.
+	 *
+	 * @param playerID
+	 *            The ID of the Player to be moved
+	 * @param direction
+	 *            The direction to move the Player in
+	 * @return True if the player was moved, False if they were not
+	 */
+	public boolean stepPlayer(int playerID, Direction direction) {
+		Player player = state.getPlayer(playerID);
+		if (!validMove(player, direction)) {
+			return false;
+		}
+		Square src = state.getSquare(player.getLocation());
+		Square dest = state.getSquare(player.getLocation().getAdjacent(
+				direction));
+		new PlayerMove(player, direction, src, dest).move();
+		return true;
+	}
+
+	/**
+	 * Records that a move or turn sent by a player's client has been applied,
+	 * which is sent back to the client with the player
+	 *
+	 * @param playerID
+	 *            The ID of the Player who sent the input
+	 * @param sequence
+	 *            The number the client gave the input, 0 if it wasn't numbered
+	 */
+	public void acknowledgeInput(int playerID, int sequence) {
+		Player player = state.getPlayer(playerID);
+		if (player != null) {
+			player.acknowledgeInput(sequence);
+		}
+	}
+
 	/**
 	 * Checks if the Character may move in the direction specified
 	 *
@@ -108,16 +212,8 @@ public class GameLogic {
 		if (character == null || direction == null) {
 			return false;
 		}
-
-		Square src = state.getSquare(character.getLocation());
-		Square dest = state.getSquare(character.getLocation().getAdjacent(
-				direction));
-
-		if (src != null && dest != null) {
-			return src.canExit(character, direction)
-					&& dest.canEnter(character, direction.opposite());
-		}
-		return false;
+		return state.getNavigationGrid().canMove(character,
+				character.getLocation(), direction);
 	}
 
 	/**
@@ -152,7 +248,7 @@ public class GameLogic {
 		List<Item> inventory = player.getInventory();
 
 		if (inventory.size() > 0) {
-			int i = (int) (inventory.size() * Math.random());
+			int i = state.getRandom().nextInt(inventory.size());
 			Item item = inventory.get(i);
 
 			//We don't want to drop keys as players could get stuck
@@ -168,11 +264,14 @@ public class GameLogic {
 		}
 
 		List<Location> spawns = state.getSpawnPoints();
-		Location loc = spawns.get((int) (spawns.size() * Math.random()));
+		Location loc = spawns.get(state.getRandom().nextInt(spawns.size()));
 
+		state.markDirty(player.getLocation());
 		state.getSquare(player.getLocation()).removePlayer(player);
 		state.getSquare(loc).addPlayer(player);
 		player.setLocation(loc);
+		state.updateLocation(player);
+		state.markDirty(loc);
 	}
 
 	/* --------Item Interaction-------- */
@@ -217,6 +316,7 @@ public class GameLogic {
 			// Otherwise cannot contain players/items
 			// Item must be in the square
 			WalkableSquare wSquare = (WalkableSquare) square;
+			state.markDirty(player.getLocation());
 
 			Item item = null;
 
@@ -286,6 +386,7 @@ public class GameLogic {
 
 			if (item != null) {//Then we
 				WalkableSquare wSquare = (WalkableSquare) square;
+				state.markDirty(player.getLocation());
 				return wSquare.addItem(player.getOrientation(), item);
 			}
 		}
@@ -355,6 +456,7 @@ public class GameLogic {
 						//If cannot add to container drop item on the ground
 						wSquare.addItem(player.getOrientation(), item);
 					}
+					state.markDirty(player.getLocation());
 					return true;
 				}
 			}
@@ -386,6 +488,7 @@ public class GameLogic {
 					.getOrientation());
 			if (container != null) {
 				container.open(player);
+				state.markDirty(player.getLocation());
 				return container.isOpen();
 			}
 		}
@@ -415,6 +518,7 @@ public class GameLogic {
 					.getOrientation());
 			if (container != null) {
 				container.close();
+				state.markDirty(player.getLocation());
 				return true;
 			}
 		}
@@ -432,6 +536,40 @@ public class GameLogic {
 		return null;
 	}
 
+	/**
+	 * Decides the moves for a range of rovers, splitting the range in half
+	 * until it is small enough to decide on one thread
+	 */
+	@SuppressWarnings("serial")
+	private class RoverDecisions extends RecursiveAction {
+		private static final int MAX_ROVERS = 16;
+
+		private final Rover[] rovers;
+		private final boolean[] think;
+		private final int start;
+		private final int end;
+
+		public RoverDecisions(Rover[] rovers, boolean[] think, int start,
+				int end) {
+			this.rovers = rovers;
+			this.think = think;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute() {
+			if (end - start <= MAX_ROVERS) {
+				for (int i = start; i < end; i++) {
+					rovers[i].decide(state, think[i]);
+				}
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new RoverDecisions(rovers, think, start, middle),
+						new RoverDecisions(rovers, think, middle, end));
+			}
+		}
+	}
+
 	private class PlayerMove {
 		private final Player player;
 		private final Direction direction;
@@ -451,9 +589,12 @@ public class GameLogic {
 					|| destination == null) {
 				return;
 			}
+			state.markDirty(player.getLocation());
 			source.removePlayer(player);
 			destination.addPlayer(player);
 			player.move(direction);
+			state.updateLocation(player);
+			state.markDirty(player.getLocation());
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package game;
+
+import java.io.Serializable;
+
+/**
+ * A random number generator whose whole state is a single long, so it is saved
+ * and sent along with whatever owns it, and always gives the same numbers for
+ * the same seed. Each rover has its own, so rovers make the same choices
+ * whatever order, or however many threads, they are ticked in.
+ *
+ * Uses the SplitMix64 algorithm, which is not thread safe.
+ *
+ * @author Robbie
+ *
+ */
+public class GameRandom implements Serializable {
+	private static final long serialVersionUID = -3470935467460231768L;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private long state;
+
+	public GameRandom(long seed) {
+		this.state = seed;
+	}
+
+	public long nextLong() {
+		long z = (state += GOLDEN_GAMMA);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return A number from 0 (inclusive) up to bound (exclusive)
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException(
+					"Parameter 'bound' must be positive.");
+		}
+		return (int) (((nextLong() >>> 33) * bound) >>> 31);
+	}
+
+	/**
+	 * @return A number from 0 (inclusive) up to 1 (exclusive)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return The whole state of the generator, which is the same for two
+	 *         generators exactly when they will give the same numbers
+	 */
+	public long getState() {
+		return state;
+	}
+}
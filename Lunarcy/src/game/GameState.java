@@ -38,18 +38,108 @@ public class GameState implements Serializable {
 
 	private int tickCount;
 
-	private final int MAX_ROVERS = 5;
+	// How many rovers a game has unless told otherwise
+	public static final int DEFAULT_MAX_ROVERS = 5;
+
+	private int maxRovers;
+
+	// Seeds every random choice in the game, so a game with the same seed
+	// plays out the same for the same player moves
+	private GameRandom random;
+	private int nextRoverId;
+
+	// Changes since the last replicated tick, these are never saved or sent
+	private transient Set<Location> dirtySquares;
+	private transient boolean roversDirty;
+	private transient int replicatedTick;
+
+	// Where the players and rovers are, rebuilt when needed as these are
+	// never saved or sent either
+	private transient SpatialIndex<Player> playerIndex;
+	private transient SpatialIndex<Rover> roverIndex;
+
+	// Which moves are possible from each square, rebuilt when needed
+	private transient NavigationGrid navigation;
+	private transient ThreadLocal<PathEngine> pathEngines;
+	private transient FlowFields flowFields;
+	private transient HierarchicalPathfinder hierarchicalPathfinder;
+
+	// How rovers chase players, saved so a restored game chases the same
+	// way, the default is used when null
+	private PursuitMode pursuitMode;
 
 	public GameState(int numPlayers, String map) {
+		this(numPlayers, map, DEFAULT_MAX_ROVERS);
+	}
+
+	/**
+	 * Creates a GameState with more (or fewer) rovers than usual
+	 *
+	 * @param numPlayers
+	 *            The number of players in the game
+	 * @param map
+	 *            The map file to load
+	 * @param maxRovers
+	 *            The number of rovers to add
+	 */
+	public GameState(int numPlayers, String map, int maxRovers) {
+		this(numPlayers, map, maxRovers, System.nanoTime());
+	}
+
+	/**
+	 * Creates a GameState whose rovers make the same choices every time it is
+	 * created with the same seed
+	 *
+	 * @param numPlayers
+	 *            The number of players in the game
+	 * @param map
+	 *            The map file to load
+	 * @param maxRovers
+	 *            The number of rovers to add
+	 * @param seed
+	 *            Seeds where the rovers spawn and the choices they make
+	 */
+	public GameState(int numPlayers, String map, int maxRovers, long seed) {
+		this.random = new GameRandom(seed);
 		loadMap(map);
 		rovers = new HashSet<Rover>();
 		players = new Player[numPlayers];
+		this.maxRovers = maxRovers;
 
-		for(int i=0; i<MAX_ROVERS; i++){
+		for(int i=0; i<maxRovers; i++){
 			addRover();
 		}
 	}
 
+	/**
+	 * Creates a GameState from its parts rather than loading a map, used when
+	 * a state is received over the network
+	 *
+	 * @param board
+	 *            The squares of the board
+	 * @param spawnPoints
+	 *            Where players may spawn
+	 * @param roverSpawnPoints
+	 *            Where rovers may spawn
+	 * @param players
+	 *            The players in the game, indexed by ID
+	 * @param rovers
+	 *            The rovers in the game
+	 * @param tickCount
+	 *            The number of times the state has been ticked
+	 */
+	public GameState(Square[][] board, List<Location> spawnPoints,
+			List<Location> roverSpawnPoints, Player[] players,
+			Set<Rover> rovers, int tickCount) {
+		this.board = board;
+		this.spawnPoints = spawnPoints;
+		this.roverSpawnPoints = roverSpawnPoints;
+		this.players = players;
+		this.rovers = rovers;
+		this.tickCount = tickCount;
+		findShip();
+	}
+
 	/**
 	 * Distributes all the passed in Items amongst the containers on the board,
 	 * matches the access level of each container (keyID) with the corresponding List in the Map parameter
@@ -97,7 +187,7 @@ public class GameState implements Serializable {
 						break;
 					}
 					//Each time add a random item from the list;
-					int index = (int)(items.size() * Math.random());
+					int index = getRandom().nextInt(items.size());
 					container.forceAddItem(items.remove(index));
 				}
 			}
@@ -174,6 +264,7 @@ public class GameState implements Serializable {
 		} else {
 			Square old = board[y][x];
 			board[y][x] = square;
+			updateNavigation(location);
 			return old;
 		}
 	}
@@ -181,9 +272,17 @@ public class GameState implements Serializable {
 	public void loadMap(String map) {
 		GameMap gameMap = Storage.loadGameMap(new File(map));
 		board = gameMap.getSquares();
+		navigation = null;
+		pathEngines = null;
+		flowFields = null;
+		hierarchicalPathfinder = null;
 		spawnPoints = gameMap.getPlayerSpawnPoints();
 		roverSpawnPoints = gameMap.getRoverSpawnPoints();
 		distributeItems(gameMap.getTierDictionary());
+		findShip();
+	}
+
+	private void findShip() {
 		// Search the board to find the ship and save it
 		// Probably need to do something if there is no ship
 		// (InvalidMapException??)
@@ -223,11 +322,17 @@ public class GameState implements Serializable {
 	 * @return True if the rover was added, False otherwise
 	 */
 	public boolean addRover() {
-		if(rovers.size() >= MAX_ROVERS || roverSpawnPoints.isEmpty()){
+		if(rovers.size() >= getMaxRovers() || roverSpawnPoints.isEmpty()){
+			return false;
+		}
+		GameRandom random = getRandom();
+		Rover rover = new Rover(nextRoverId++, roverSpawnPoints.get(random
+				.nextInt(roverSpawnPoints.size())), random.nextLong());
+		if (!rovers.add(rover)) {
 			return false;
 		}
-		Rover rover = new Rover(roverSpawnPoints.get((int) (Math.random() * roverSpawnPoints.size())));
-		return rovers.add(rover);
+		updateLocation(rover);
+		return true;
 	}
 
 	/**
@@ -242,13 +347,17 @@ public class GameState implements Serializable {
 	 * @return
 	 */
 	public boolean addPlayer(int playerID, String name, Color colour) {
-		Location spawn = spawnPoints.get((int) (Math.random() * spawnPoints
-				.size()));
+		Location spawn = spawnPoints.get(getRandom().nextInt(
+				spawnPoints.size()));
 		Player player = new Player(playerID, name, colour, spawn,
 				Direction.NORTH);
 		if (playerID < 0 || playerID > players.length)
 			return false;
+		if (players[playerID] != null) {
+			getPlayerIndex().remove(players[playerID]);
+		}
 		players[playerID] = player;
+		updateLocation(player);
 		return true;
 	}
 
@@ -262,6 +371,10 @@ public class GameState implements Serializable {
 		if (playerID < 0 || playerID > players.length) {
 			return false;
 		}
+		if (players[playerID] != null) {
+			markDirty(players[playerID].getLocation());
+			getPlayerIndex().remove(players[playerID]);
+		}
 		players[playerID] = null;
 		return true;
 	}
@@ -309,16 +422,299 @@ public class GameState implements Serializable {
 		if (rover == null) {
 			return null;
 		}
-		for (Player player : players) {
+		Player caught = null;
+		for (Player player : getPlayerIndex().getAt(rover.getLocation())) {
 
 			//If there is a player without armour, whose location matches the rover
-			if (player != null && !player.hasArmour() && player.getLocation().equals(rover.getLocation())) {
+			//they have been caught, the lowest ID is returned if there are several
+			if (!player.hasArmour()
+					&& (caught == null || player.getId() < caught.getId())) {
+				caught = player;
+			}
+		}
+		return caught;
+	}
+
+	/**
+	 * Finds the closest player (by manhattan distance) that a rover at the
+	 * location could see, that is a player who is outside and not cloaked.
+	 *
+	 * @param location
+	 *            Where to look from
+	 * @return The closest visible player, null if there are none
+	 */
+	public Player nearestVisiblePlayer(Location location) {
+		return getPlayerIndex().nearest(location,
+				new SpatialIndex.Filter<Player>() {
+					public boolean accept(Player player, Location at) {
+						return isOutside(at) && !player.hasCloak();
+					}
+				});
+	}
+
+	/**
+	 * Must be called whenever a player is moved, so that they can be found by
+	 * location
+	 *
+	 * @param player
+	 *            The player that moved
+	 */
+	public void updateLocation(Player player) {
+		if (player != null) {
+			getPlayerIndex().put(player, player.getLocation());
+		}
+	}
+
+	/**
+	 * Must be called whenever a rover is moved, so that it can be found by
+	 * location
+	 *
+	 * @param rover
+	 *            The rover that moved
+	 */
+	public void updateLocation(Rover rover) {
+		if (rover != null) {
+			getRoverIndex().put(rover, rover.getLocation());
+		}
+	}
+
+	/**
+	 * @return The rovers at exactly this location
+	 */
+	public List<Rover> getRoversAt(Location location) {
+		return getRoverIndex().getAt(location);
+	}
+
+	/**
+	 * Must be called after the walls of a square on the board are changed, so
+	 * that moves through them are checked correctly. Replacing a square with
+	 * setSquare does this itself.
+	 *
+	 * @param location
+	 *            The location of the square that changed
+	 */
+	public void updateNavigation(Location location) {
+		if (navigation != null && location != null) {
+			navigation.update(location);
+		}
+		// Every distance to a chased player may have changed
+		if (flowFields != null) {
+			flowFields.clear();
+		}
+	}
+
+	/**
+	 * @return Which moves are possible from each square of the board
+	 */
+	public NavigationGrid getNavigationGrid() {
+		if (navigation == null) {
+			navigation = new NavigationGrid(board);
+		}
+		return navigation;
+	}
+
+	/**
+	 * @return The path search used by the rovers, which is reused by every
+	 *         search on this board from the same thread
+	 */
+	public PathEngine getPathEngine() {
+		ThreadLocal<PathEngine> engines = getPathEngines();
+		PathEngine engine = engines.get();
+		if (engine == null) {
+			engine = new PathEngine(getNavigationGrid());
+			engines.set(engine);
+		}
+		return engine;
+	}
+
+	private synchronized ThreadLocal<PathEngine> getPathEngines() {
+		if (pathEngines == null) {
+			pathEngines = new ThreadLocal<PathEngine>();
+		}
+		return pathEngines;
+	}
+
+	/**
+	 * Builds everything which is otherwise built the first time a rover needs
+	 * it, so that rovers can then decide their moves on several threads at
+	 * once without racing to build them.
+	 */
+	public void prepareRoverDecisions() {
+		getNavigationGrid();
+		getPlayerIndex();
+		getRoverIndex();
+	}
+
+	/**
+	 * @return The path search used for long paths, which keeps its clusters
+	 *         up to date with the navigation grid
+	 */
+	public synchronized HierarchicalPathfinder getHierarchicalPathfinder() {
+		if (hierarchicalPathfinder == null) {
+			hierarchicalPathfinder = new HierarchicalPathfinder(
+					getNavigationGrid());
+		}
+		return hierarchicalPathfinder;
+	}
+
+	/**
+	 * @return The flow fields shared by rovers chasing each player
+	 */
+	public synchronized FlowFields getFlowFields() {
+		if (flowFields == null) {
+			flowFields = new FlowFields(getNavigationGrid());
+		}
+		return flowFields;
+	}
+
+	/**
+	 * @return How rovers chase a player once they spot one
+	 */
+	public PursuitMode getPursuitMode() {
+		return pursuitMode == null ? PursuitMode.FLOW_FIELD : pursuitMode;
+	}
 
-				//They have been caught so return them
-				return player;
+	public void setPursuitMode(PursuitMode pursuitMode) {
+		this.pursuitMode = pursuitMode;
+	}
+
+	/**
+	 * @return The most rovers the game can have
+	 */
+	public int getMaxRovers() {
+		// States saved before the limit was stored have the default
+		return maxRovers == 0 ? DEFAULT_MAX_ROVERS : maxRovers;
+	}
+
+	private SpatialIndex<Player> getPlayerIndex() {
+		// Built from scratch after loading, receiving or applying a delta
+		if (playerIndex == null) {
+			playerIndex = new SpatialIndex<Player>(board[0].length,
+					board.length);
+			for (Player player : players) {
+				if (player != null) {
+					playerIndex.put(player, player.getLocation());
+				}
+			}
+		}
+		return playerIndex;
+	}
+
+	private SpatialIndex<Rover> getRoverIndex() {
+		if (roverIndex == null) {
+			roverIndex = new SpatialIndex<Rover>(board[0].length, board.length);
+			for (Rover rover : rovers) {
+				roverIndex.put(rover, rover.getLocation());
+			}
+		}
+		return roverIndex;
+	}
+
+	/* --------State Replication-------- */
+
+	/**
+	 * Flags the Square at the location as changed, so that it is included in
+	 * the next StateDelta
+	 *
+	 * @param location
+	 *            The location of the Square that changed
+	 */
+	public void markDirty(Location location) {
+		if (location == null) {
+			return;
+		}
+		getDirtySquares().add(location);
+	}
+
+	/**
+	 * Flags the rovers as changed, so that they are included in the next
+	 * StateDelta
+	 */
+	public void markRoversDirty() {
+		roversDirty = true;
+	}
+
+	/**
+	 * Creates a StateDelta containing everything that has changed since the
+	 * last delta (or since the last reset), then clears the changes.
+	 *
+	 * Players are always included as their oxygen changes every tick, as are
+	 * the Squares they stand on so that the Square player sets stay in sync.
+	 *
+	 * @return The changes since the last replicated tick
+	 */
+	public StateDelta createDelta() {
+		Set<Location> dirty = getDirtySquares();
+		for (Player player : players) {
+			if (player != null) {
+				dirty.add(player.getLocation());
+			}
+		}
+
+		Map<Location, Square> squares = new HashMap<Location, Square>();
+		for (Location location : dirty) {
+			Square square = getSquare(location);
+			if (square != null) {
+				squares.put(location, square);
 			}
 		}
-		return null;
+
+		StateDelta delta = new StateDelta(replicatedTick, tickCount, squares,
+				getPlayers(), roversDirty ? getRovers() : null);
+
+		resetReplication();
+		return delta;
+	}
+
+	/**
+	 * Discards all pending changes, should be called once the full GameState
+	 * has been sent so that the next StateDelta is based on it
+	 */
+	public void resetReplication() {
+		getDirtySquares().clear();
+		roversDirty = false;
+		replicatedTick = tickCount;
+	}
+
+	/**
+	 * Applies a StateDelta received from the server onto this copy of the
+	 * GameState. Only references are replaced, so anything reading the state
+	 * concurrently will see either the old or the new object.
+	 *
+	 * @param delta
+	 *            The changes to apply
+	 * @return True if the delta was applied, False if it was created against a
+	 *         different tick than this state is at
+	 */
+	public boolean applyDelta(StateDelta delta) {
+		if (delta == null || delta.getBaseTick() != tickCount) {
+			return false;
+		}
+		for (Map.Entry<Location, Square> entry : delta.getSquares().entrySet()) {
+			Location location = entry.getKey();
+			Square square = entry.getValue();
+			board[location.getY()][location.getX()] = square;
+			updateNavigation(location);
+			if (square instanceof Ship) {
+				ship = (Ship) square;
+			}
+		}
+		players = delta.getPlayers();
+		playerIndex = null;
+		if (delta.getRovers() != null) {
+			rovers = delta.getRovers();
+			roverIndex = null;
+		}
+		tickCount = delta.getTick();
+		return true;
+	}
+
+	private Set<Location> getDirtySquares() {
+		// Transient fields are not restored when loading or receiving a state
+		if (dirtySquares == null) {
+			dirtySquares = new HashSet<Location>();
+		}
+		return dirtySquares;
 	}
 
 	/**
@@ -327,6 +723,114 @@ public class GameState implements Serializable {
 	public void tick(){
 		tickCount++;
 	}
+
+	/**
+	 * @return The generator for every random choice in the game, which
+	 *         states received over the network or saved before they had one
+	 *         are given here
+	 */
+	public GameRandom getRandom() {
+		if (random == null) {
+			random = new GameRandom(System.nanoTime());
+		}
+		return random;
+	}
+	/**
+	 * Sums up everything a tick can change, the players and what they carry,
+	 * the squares changed since the last delta, rovers and random numbers
+	 * drawn, so copies of the game ticked in lockstep can cheaply check they
+	 * are still the same
+	 *
+	 * @return The checksum, equal for copies which have not diverged
+	 */
+	public long checksum() {
+		long sum = tickCount;
+		sum = sum * 31 + getRandom().getState();
+		for (Player player : players) {
+			sum *= 31;
+			if (player != null) {
+				sum += player.getLocation().getX();
+				sum = sum * 31 + player.getLocation().getY();
+				sum = sum * 31 + player.getOrientation().ordinal();
+				sum = sum * 31 + player.getOxygen();
+				sum = sum * 31 + checksum(player.getInventory());
+			}
+		}
+		// Squares and rovers are kept in sets, so are summed in any order
+		long squareSum = 0;
+		for (Location location : getDirtySquares()) {
+			long hash = location.getX();
+			hash = hash * 31 + location.getY();
+			hash = hash * 31 + checksum(getSquare(location));
+			squareSum += hash * 0x9E3779B97F4A7C15L;
+		}
+		long roverSum = 0;
+		for (Rover rover : rovers) {
+			long hash = rover.getId();
+			hash = hash * 31 + rover.getLocation().getX();
+			hash = hash * 31 + rover.getLocation().getY();
+			hash = hash * 31 + rover.getOrientation().ordinal();
+			roverSum += hash * 0x9E3779B97F4A7C15L;
+		}
+		return (sum * 31 + squareSum) * 31 + roverSum;
+	}
+
+	/**
+	 * Sums up the walls of a square, and the items, furniture and ship parts
+	 * in it
+	 */
+	private long checksum(Square square) {
+		long sum = 0;
+		for (Direction side : Direction.values()) {
+			Wall wall = square.getWalls().get(side);
+			sum *= 31;
+			if (wall != null) {
+				sum += wall.getClass().getName().hashCode();
+				if (wall instanceof LockedDoor) {
+					sum = sum * 31 + ((LockedDoor) wall).getKeyCode();
+				}
+			}
+			if (!(square instanceof WalkableSquare)) {
+				continue;
+			}
+			WalkableSquare walkable = (WalkableSquare) square;
+			sum = sum * 31 + checksum(walkable.getItems(side));
+			Furniture furniture = walkable.getFurniture(side);
+			if (furniture instanceof SolidContainer) {
+				SolidContainer container = (SolidContainer) furniture;
+				sum = sum * 31 + container.getEntityID();
+				sum = sum * 31 + (container.isOpen() ? 1 : 0);
+				sum = sum * 31 + checksum(container.getItems());
+			}
+		}
+		if (square instanceof Ship) {
+			Ship ship = (Ship) square;
+			for (ShipPart part : ship.getParts()) {
+				sum += part.getEntityID() * 0x9E3779B97F4A7C15L;
+			}
+			sum = sum * 31 + (ship.hasLaunched() ? 1 : 0);
+		}
+		return sum;
+	}
+
+	/**
+	 * Sums up the IDs of a list of items in order, including what is inside
+	 * bags
+	 */
+	private long checksum(List<Item> items) {
+		long sum = 0;
+		if (items == null) {
+			return sum;
+		}
+		for (Item item : items) {
+			sum = sum * 31 + item.getEntityID();
+			if (item instanceof Container) {
+				sum = sum * 31 + checksum(((Container) item).getItems());
+			}
+		}
+		return sum;
+	}
+
 	/**
 	 * Returns the time as a percentage of the day
 	 * @return 0-99% of how much the day night cycle has gone through
@@ -335,6 +839,13 @@ public class GameState implements Serializable {
 		return (int)((tickCount % dayLength) / (dayLength/100f));
 	}
 
+	/**
+	 * @return The number of times the GameState has been ticked
+	 */
+	public int getTickCount() {
+		return tickCount;
+	}
+
 	public Square[][] getBoard() {
 		return board;
 	}
@@ -347,6 +858,10 @@ public class GameState implements Serializable {
 		return new ArrayList<Location>(spawnPoints);
 	}
 
+	public List<Location> getRoverSpawnPoints() {
+		return new ArrayList<Location>(roverSpawnPoints);
+	}
+
 	public Player[] getPlayers() {
 		return Arrays.copyOf(players, players.length);
 	}
@@ -0,0 +1,255 @@
+package game;
+
+import bots.Rover;
+
+/**
+ * Records which moves are possible from every square on the board, so that
+ * checking a move is an array lookup instead of resolving both Squares and
+ * asking their Walls.
+ *
+ * Each square has three bits for each direction, packed into a short:
+ * whether a rover can move that way, whether any player can, and whether it
+ * depends on what the player is carrying (a locked door, or entering the
+ * ship). One more bit records whether the square is outside. Only moves
+ * which depend on the player fall back to asking the Squares, so the rules
+ * stay in the Walls and Squares themselves.
+ *
+ * The grid must be updated whenever a square or its walls change. The most
+ * recent changes are remembered, so that searches which keep their results
+ * between ticks can repair just the squares that changed.
+ *
+ * @author Robbie
+ *
+ */
+public class NavigationGrid {
+	private static final int ROVER = 1;
+	private static final int PLAYER = 2;
+	private static final int DEPENDS_ON_PLAYER = 4;
+	private static final int BITS_PER_DIRECTION = 3;
+	// Set above the bits for the directions when the square is outside
+	private static final int OUTSIDE = 1 << 12;
+
+	// How many changed squares are remembered for incremental searches
+	private static final int CHANGE_LOG_SIZE = 64;
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+	// How far a step in each direction moves, indexed by ordinal
+	private static final int[] DX = new int[DIRECTIONS.length];
+	private static final int[] DY = new int[DIRECTIONS.length];
+	static {
+		Location origin = new Location(0, 0);
+		for (Direction direction : DIRECTIONS) {
+			Location step = origin.getAdjacent(direction);
+			DX[direction.ordinal()] = step.getX();
+			DY[direction.ordinal()] = step.getY();
+		}
+	}
+
+	// Stand ins for each kind of character, walls only care about the class
+	// of a character unless the move depends on the player
+	private static final Character ROVER_PROBE = new Rover(new Location(0, 0));
+	private static final Character PLAYER_PROBE = new Player(-1, "", null,
+			null, null);
+
+	private final Square[][] board;
+	private final int width;
+	private final int height;
+	private final short[] moves;
+
+	private final int[] changes = new int[CHANGE_LOG_SIZE];
+	private int version;
+
+	/**
+	 * Builds the grid for a board, which must be rectangular
+	 */
+	public NavigationGrid(Square[][] board) {
+		this.board = board;
+		this.height = board.length;
+		this.width = height == 0 ? 0 : board[0].length;
+		this.moves = new short[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				moves[y * width + x] = computeMoves(x, y);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the moves into and out of a square, should be called after
+	 * the square or any of its walls change
+	 *
+	 * @param location
+	 *            The location of the square that changed
+	 */
+	public void update(Location location) {
+		int x = location.getX();
+		int y = location.getY();
+		if (!onBoard(x, y)) {
+			return;
+		}
+		moves[y * width + x] = computeMoves(x, y);
+		changes[version++ % CHANGE_LOG_SIZE] = y * width + x;
+		// Moves into this square are stored in its neighbours
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (onBoard(nx, ny)) {
+				moves[ny * width + nx] = computeMoves(nx, ny);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a character standing at a location could move one square
+	 * in a direction, following the same rules as Square.canExit and
+	 * Square.canEnter
+	 */
+	public boolean canMove(Character character, Location from,
+			Direction direction) {
+		if (from == null) {
+			return false;
+		}
+		return canMove(character, from.getX(), from.getY(), direction);
+	}
+
+	/**
+	 * Checks whether a character standing at (x, y) could move one square in a
+	 * direction, without allocating
+	 */
+	public boolean canMove(Character character, int x, int y,
+			Direction direction) {
+		if (character == null || direction == null || !onBoard(x, y)) {
+			return false;
+		}
+		int d = direction.ordinal();
+		int bits = moves[y * width + x] >> (d * BITS_PER_DIRECTION);
+		if (!(character instanceof Player)) {
+			return (bits & ROVER) != 0;
+		}
+		if ((bits & PLAYER) != 0) {
+			return true;
+		}
+		if ((bits & DEPENDS_ON_PLAYER) != 0) {
+			return board[y][x].canExit(character, direction)
+					&& board[y + DY[d]][x + DX[d]].canEnter(character,
+							direction.opposite());
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a rover standing on a cell could move one square in the
+	 * direction with the given ordinal. Moves off the board are never
+	 * possible, so the cell moved to is always on the board.
+	 *
+	 * @param cell
+	 *            The packed index of the cell, y * width + x
+	 * @param direction
+	 *            The ordinal of the direction
+	 */
+	public boolean canRoverMove(int cell, int direction) {
+		return (moves[cell] >> (direction * BITS_PER_DIRECTION) & ROVER) != 0;
+	}
+
+	/**
+	 * @return Whether the square at the packed index is outside, where rovers
+	 *         roam
+	 */
+	public boolean isOutside(int cell) {
+		return (moves[cell] & OUTSIDE) != 0;
+	}
+
+	/**
+	 * @return How much the packed index changes when moving one square in the
+	 *         direction with the given ordinal
+	 */
+	public int getCellOffset(int direction) {
+		return DY[direction] * width + DX[direction];
+	}
+
+	/**
+	 * @return The packed index of (x, y), or -1 if it is off the board
+	 */
+	public int getCell(int x, int y) {
+		return onBoard(x, y) ? y * width + x : -1;
+	}
+
+	/**
+	 * @return How many times a square has changed, each change has this as
+	 *         its version before it happened
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Finds which square changed. Moves out of it and out of its neighbours
+	 * may have changed.
+	 *
+	 * @param version
+	 *            The version of the change
+	 * @return The packed index of the square which changed, or -1 if the
+	 *         change is too old to be remembered
+	 */
+	public int getChangedCell(int version) {
+		if (version < 0 || version >= this.version
+				|| version < this.version - CHANGE_LOG_SIZE) {
+			return -1;
+		}
+		return changes[version % CHANGE_LOG_SIZE];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	private boolean onBoard(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	private short computeMoves(int x, int y) {
+		Square src = board[y][x];
+		int packed = 0;
+		if (src instanceof WalkableSquare && !((WalkableSquare) src).isInside()) {
+			packed |= OUTSIDE;
+		}
+		for (Direction direction : DIRECTIONS) {
+			int d = direction.ordinal();
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (src == null || !onBoard(nx, ny) || board[ny][nx] == null) {
+				continue;
+			}
+			Square dest = board[ny][nx];
+			Direction back = direction.opposite();
+
+			int bits = 0;
+			if (src.canExit(ROVER_PROBE, direction)
+					&& dest.canEnter(ROVER_PROBE, back)) {
+				bits |= ROVER;
+			}
+			if (dependsOnPlayer(src, dest, direction)) {
+				bits |= DEPENDS_ON_PLAYER;
+			} else if (src.canExit(PLAYER_PROBE, direction)
+					&& dest.canEnter(PLAYER_PROBE, back)) {
+				bits |= PLAYER;
+			}
+			packed |= bits << (d * BITS_PER_DIRECTION);
+		}
+		return (short) packed;
+	}
+
+	/**
+	 * @return Whether a player can make this move depends on what they carry
+	 */
+	private static boolean dependsOnPlayer(Square src, Square dest,
+			Direction direction) {
+		return dest instanceof Ship
+				|| src.getWalls().get(direction) instanceof LockedDoor
+				|| dest.getWalls().get(direction.opposite()) instanceof LockedDoor;
+	}
+}
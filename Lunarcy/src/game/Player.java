@@ -28,6 +28,10 @@ public class Player implements Character, Serializable {
 	private int oxygen;
 	private List<Item> inventory;
 
+	// The number of the last move or turn from this player's client which the
+	// server has applied, so the client knows which it is still predicting
+	private int lastInput;
+
 	public Player(int uniqueID, String name, Color colour, Location location,
 			Direction orientation) {
 		this.id = uniqueID;
@@ -250,6 +254,26 @@ public class Player implements Character, Serializable {
 		orientation = orientation.right();
 	}
 
+	/**
+	 * @return The number of the last move or turn from this player's client
+	 *         which has been applied
+	 */
+	public int getLastInput() {
+		return lastInput;
+	}
+
+	/**
+	 * Record that a move or turn from this player's client has been applied.
+	 * Inputs are numbered in the order they were made, so only the latest is
+	 * kept.
+	 *
+	 * @param sequence
+	 *            The number of the input
+	 */
+	public void acknowledgeInput(int sequence) {
+		lastInput = Math.max(lastInput, sequence);
+	}
+
 	public int getId() {
 		return id;
 	}
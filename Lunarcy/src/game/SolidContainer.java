@@ -24,6 +24,14 @@ public abstract class SolidContainer extends Container implements Furniture {
 		isOpen = false;
 	}
 
+	/**
+	 * Forces the container open regardless of access
+	 * Do not use this method when players open containers
+	 */
+	public void forceOpen(){
+		isOpen = true;
+	}
+
 	public boolean addItem(Item item){
 		if(!isOpen()){
 			return false;
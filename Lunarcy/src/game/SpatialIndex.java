@@ -0,0 +1,185 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buckets things on the board (players or rovers) into a coarse grid of cells
+ * so they can be found by location without scanning every square. Each cell
+ * covers CELL_SIZE by CELL_SIZE squares and is stored at index y * width + x.
+ *
+ * Whoever moves something must call put again with its new location. Nothing
+ * is synchronized, the index belongs to whichever thread ticks the GameState.
+ *
+ * @author Robbie
+ *
+ * @param <T>
+ *            The type of thing being indexed
+ */
+public class SpatialIndex<T> {
+	public static final int CELL_SIZE = 8;
+
+	/**
+	 * Decides whether something found by a query should be returned
+	 */
+	public interface Filter<T> {
+		public boolean accept(T item, Location location);
+	}
+
+	private final int width;
+	private final int height;
+	private final List<List<T>> cells;
+
+	// Where each item was last put, identity based as items may not override
+	// equals
+	private final Map<T, Location> locations = new IdentityHashMap<T, Location>();
+
+	/**
+	 * @param boardWidth
+	 *            Width of the board in squares
+	 * @param boardHeight
+	 *            Height of the board in squares
+	 */
+	public SpatialIndex(int boardWidth, int boardHeight) {
+		width = Math.max(1, (boardWidth + CELL_SIZE - 1) / CELL_SIZE);
+		height = Math.max(1, (boardHeight + CELL_SIZE - 1) / CELL_SIZE);
+		cells = new ArrayList<List<T>>(width * height);
+		for (int i = 0; i < width * height; i++) {
+			cells.add(new ArrayList<T>(0));
+		}
+	}
+
+	/**
+	 * Adds an item at the location, or moves it there if it is already in the
+	 * index
+	 */
+	public void put(T item, Location location) {
+		if (item == null || location == null) {
+			return;
+		}
+		Location old = locations.put(item, location);
+		if (old != null) {
+			int oldCell = cellIndex(old);
+			if (oldCell == cellIndex(location)) {
+				return;
+			}
+			cells.get(oldCell).remove(item);
+		}
+		cells.get(cellIndex(location)).add(item);
+	}
+
+	/**
+	 * Removes an item from the index
+	 *
+	 * @return True if the item was in the index
+	 */
+	public boolean remove(T item) {
+		Location old = locations.remove(item);
+		if (old == null) {
+			return false;
+		}
+		cells.get(cellIndex(old)).remove(item);
+		return true;
+	}
+
+	/**
+	 * @return Where the item was last put, null if it isn't in the index
+	 */
+	public Location getLocation(T item) {
+		return locations.get(item);
+	}
+
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * @return Everything at exactly this location, in the order it was added
+	 */
+	public List<T> getAt(Location location) {
+		List<T> found = new ArrayList<T>(1);
+		if (location == null) {
+			return found;
+		}
+		for (T item : cells.get(cellIndex(location))) {
+			if (location.equals(locations.get(item))) {
+				found.add(item);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the closest accepted item by manhattan distance, searching rings of
+	 * cells outward from the location. The search stops as soon as no
+	 * unsearched cell could hold anything closer, or every item has been seen,
+	 * so its cost depends on how far away things are rather than the size of
+	 * the board.
+	 *
+	 * @param location
+	 *            Where to search from
+	 * @param filter
+	 *            Which items may be returned, null accepts everything
+	 * @return The closest accepted item, null if there are none
+	 */
+	public T nearest(Location location, Filter<T> filter) {
+		if (location == null || locations.isEmpty()) {
+			return null;
+		}
+		int cx = clamp(location.getX() / CELL_SIZE, width);
+		int cy = clamp(location.getY() / CELL_SIZE, height);
+		int maxRing = Math.max(Math.max(cx, width - 1 - cx),
+				Math.max(cy, height - 1 - cy));
+
+		T closest = null;
+		int closestDistance = Integer.MAX_VALUE;
+		int seen = 0;
+		for (int ring = 0; ring <= maxRing && seen < locations.size(); ring++) {
+			// Nothing in this ring can be closer than this
+			int nearestPossible = ring == 0 ? 0 : (ring - 1) * CELL_SIZE + 1;
+			if (nearestPossible >= closestDistance) {
+				break;
+			}
+			for (int y = cy - ring; y <= cy + ring; y++) {
+				if (y < 0 || y >= height) {
+					continue;
+				}
+				// Only the edge of the ring, the inside has been searched
+				int step = (y == cy - ring || y == cy + ring) ? 1 : 2 * ring;
+				for (int x = cx - ring; x <= cx + ring; x += Math.max(1, step)) {
+					if (x < 0 || x >= width) {
+						continue;
+					}
+					for (T item : cells.get(y * width + x)) {
+						seen++;
+						Location at = locations.get(item);
+						int distance = distance(location, at);
+						if (distance < closestDistance
+								&& (filter == null || filter.accept(item, at))) {
+							closest = item;
+							closestDistance = distance;
+						}
+					}
+				}
+			}
+		}
+		return closest;
+	}
+
+	private int cellIndex(Location location) {
+		int x = clamp(location.getX() / CELL_SIZE, width);
+		int y = clamp(location.getY() / CELL_SIZE, height);
+		return y * width + x;
+	}
+
+	private static int clamp(int value, int size) {
+		return Math.max(0, Math.min(size - 1, value));
+	}
+
+	private static int distance(Location start, Location end) {
+		return Math.abs(start.getX() - end.getX())
+				+ Math.abs(start.getY() - end.getY());
+	}
+}
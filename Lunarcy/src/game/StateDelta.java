@@ -0,0 +1,69 @@
+package game;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+import bots.Rover;
+
+/**
+ * Contains the parts of a GameState which changed between two ticks, so that
+ * clients can update their copy of the state without being sent the whole
+ * board every tick.
+ *
+ * @author Robbie
+ *
+ */
+public class StateDelta implements Serializable {
+	private static final long serialVersionUID = 3817305426649046912L;
+
+	private final int baseTick;
+	private final int tick;
+	private final Map<Location, Square> squares;
+	private final Player[] players;
+	private final Set<Rover> rovers;
+
+	/**
+	 * @param baseTick
+	 *            The tick of the state this delta should be applied on
+	 * @param tick
+	 *            The tick of the state after this delta has been applied
+	 * @param squares
+	 *            Every Square that changed, mapped from its location
+	 * @param players
+	 *            All of the players
+	 * @param rovers
+	 *            All of the rovers, null if none of them changed
+	 */
+	public StateDelta(int baseTick, int tick, Map<Location, Square> squares,
+			Player[] players, Set<Rover> rovers) {
+		this.baseTick = baseTick;
+		this.tick = tick;
+		this.squares = squares;
+		this.players = players;
+		this.rovers = rovers;
+	}
+
+	public int getBaseTick() {
+		return baseTick;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	public Map<Location, Square> getSquares() {
+		return squares;
+	}
+
+	public Player[] getPlayers() {
+		return players;
+	}
+
+	/**
+	 * @return The set of rovers, or null if they did not change
+	 */
+	public Set<Rover> getRovers() {
+		return rovers;
+	}
+}
@@ -0,0 +1,58 @@
+package loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records a series of durations so their percentiles can be reported. Every
+ * sample is kept, which is fine for the length of a load test run.
+ *
+ * @author JTFM
+ *
+ */
+public class Histogram {
+	private long[] samples = new long[1024];
+	private int count = 0;
+
+	/**
+	 * Record a sample
+	 *
+	 * @param value
+	 *            The duration, in whatever unit is being reported
+	 */
+	public synchronized void add(long value) {
+		if (count == samples.length) {
+			samples = Arrays.copyOf(samples, count * 2);
+		}
+		samples[count++] = value;
+	}
+
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param percentile
+	 *            Between 0 and 100
+	 * @return The sample below which the given percentage of samples fall, or
+	 *         0 if there are no samples
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	/**
+	 * @return A summary of the samples, divided by the given scale
+	 */
+	public synchronized String summary(double scale, String unit) {
+		return String.format("p50 %.1f%s, p90 %.1f%s, p99 %.1f%s, max %.1f%s",
+				getPercentile(50) / scale, unit, getPercentile(90) / scale,
+				unit, getPercentile(99) / scale, unit, getPercentile(100)
+						/ scale, unit);
+	}
+}
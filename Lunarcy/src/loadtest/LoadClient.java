@@ -0,0 +1,309 @@
+package loadtest;
+
+import game.Direction;
+import game.GameState;
+import game.Item;
+import game.Player;
+import game.Square;
+import game.StateDelta;
+import game.WalkableSquare;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import network.LockstepSimulation;
+import network.LockstepTick;
+import network.MoveAction;
+import network.OrientAction;
+import network.PickupAction;
+import network.ResyncAction;
+import network.Server;
+import network.ServerConnection;
+
+/**
+ * A headless load generator for the server. Many bots connect from a single
+ * process, negotiate just as the real Client does, and then send a mix of
+ * move, orient and pickup actions at a fixed rate while keeping their own copy
+ * of the gamestate up to date, ticking it themselves if the server is playing
+ * in lockstep.
+ *
+ * Reports the round trip latency of actions, measured by sending a turn and
+ * timing how long it takes to show up in a state update, along with the
+ * interval between state updates and the bytes received.
+ *
+ * Rooms only start once they are full, so the number of bots should be a
+ * multiple of the players in each game.
+ *
+ * Usage: LoadClient [host] [bots] [actions per second per bot] [seconds]
+ * [room]
+ *
+ * @author JTFM
+ *
+ */
+public class LoadClient {
+	// How often progress is printed, in seconds
+	private static final int REPORT_INTERVAL = 5;
+
+	private final Histogram roundTrips = new Histogram();
+	private final Histogram updateIntervals = new Histogram();
+	private final AtomicLong actionsSent = new AtomicLong();
+	private final AtomicLong updatesReceived = new AtomicLong();
+	private final AtomicLong resyncs = new AtomicLong();
+	private final List<Bot> bots = new ArrayList<Bot>();
+
+	public static void main(String[] args) throws Exception {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int botCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		double rate = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+		String room = args.length > 4 ? args[4] : "";
+
+		new LoadClient().run(host, botCount, rate, seconds, room);
+		System.exit(0);
+	}
+
+	/**
+	 * Connect every bot, run for the given time and print the results
+	 */
+	private void run(String host, int botCount, double rate, int seconds,
+			String room) throws InterruptedException {
+		ScheduledExecutorService senders = Executors
+				.newScheduledThreadPool(Math.min(4, Runtime.getRuntime()
+						.availableProcessors()));
+		long period = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+
+		for (int i = 0; i < botCount; i++) {
+			final Bot bot = new Bot(i);
+			try {
+				bot.connect(host, room);
+			} catch (IOException e) {
+				System.out.println("Bot " + i + " couldn't connect: "
+						+ e.getMessage());
+				continue;
+			}
+			bots.add(bot);
+			new Thread(bot, "bot-" + i).start();
+			// Spread the bots' actions out over the period
+			senders.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					bot.act();
+				}
+			}, (long) (Math.random() * period), period, TimeUnit.NANOSECONDS);
+		}
+		System.out.println(bots.size() + " bots connected");
+
+		long start = System.nanoTime();
+		long lastBytes = 0;
+		long lastUpdates = 0;
+		for (int elapsed = REPORT_INTERVAL; elapsed <= seconds; elapsed += REPORT_INTERVAL) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(REPORT_INTERVAL));
+			long bytes = bytesReceived();
+			long updates = updatesReceived.get();
+			System.out.printf(
+					"%3ds: %d updates/s, %.1f kB/s, rtt %s%n",
+					elapsed,
+					(updates - lastUpdates) / REPORT_INTERVAL,
+					(bytes - lastBytes) / 1024.0 / REPORT_INTERVAL,
+					roundTrips.summary(1e6, "ms"));
+			lastBytes = bytes;
+			lastUpdates = updates;
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		senders.shutdownNow();
+
+		int playing = 0;
+		for (Bot bot : bots) {
+			if (bot.lastUpdate != 0) {
+				playing++;
+			}
+			bot.connection.close();
+		}
+		long bytes = bytesReceived();
+		System.out.println();
+		System.out.println("Bots connected:    " + bots.size() + ", "
+				+ playing + " received updates");
+		System.out.println("Actions sent:      " + actionsSent.get());
+		System.out.println("Action round trip: "
+				+ roundTrips.summary(1e6, "ms") + " (" + roundTrips.getCount()
+				+ " samples)");
+		System.out.println("Update interval:   "
+				+ updateIntervals.summary(1e6, "ms"));
+		System.out.println("Lockstep resyncs:  " + resyncs.get());
+		System.out.printf("Bytes received:    %d (%.1f kB/s, %.1f kB/s per bot)%n",
+				bytes, bytes / 1024.0 / elapsed, playing == 0 ? 0 : bytes
+						/ 1024.0 / elapsed / playing);
+	}
+
+	private long bytesReceived() {
+		long total = 0;
+		for (Bot bot : bots) {
+			total += bot.connection.getBytesReceived();
+		}
+		return total;
+	}
+
+	/**
+	 * A single simulated player, with its own connection. The bot's thread
+	 * reads updates, while its actions are sent from the shared sender pool.
+	 */
+	private class Bot implements Runnable {
+		private final int index;
+		private ServerConnection connection;
+		private int id;
+		private GameState state;
+		private volatile long lastUpdate;
+
+		// Ticks the copy when the server is playing in lockstep, null until
+		// the first tick or while waiting to be sent the whole game again
+		private LockstepSimulation simulation;
+		private boolean awaitingKeyframe;
+
+		// What the bot can see, updated by the reading thread
+		private volatile Direction orientation;
+		private volatile int visibleItem = -1;
+
+		// When the turn being timed was sent, 0 if none is in flight
+		private volatile long probeSent;
+		private volatile Direction probeExpected;
+
+		Bot(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * Connect and negotiate just as the Client does
+		 */
+		void connect(String host, String room) throws IOException {
+			connection = new ServerConnection(host);
+			if (!connection.joinRoom(room)) {
+				connection.close();
+				throw new IOException("Room is full");
+			}
+			String name = "bot-" + index;
+			id = connection.sendName(name);
+			for (int i = 1; id == Server.USERNAME_TAKEN; i++) {
+				id = connection.sendName(name + "-" + i);
+			}
+			if (id == Server.INVALID_USERNAME) {
+				connection.close();
+				throw new IOException("Server is running a saved game");
+			}
+			connection.sendColour(new Color((int) (Math.random() * 0xFFFFFF)));
+			connection.negotiateCodec();
+		}
+
+		/**
+		 * Read updates until disconnected
+		 */
+		public void run() {
+			try {
+				while (true) {
+					Object update = connection.readUpdate();
+					long now = System.nanoTime();
+					if (lastUpdate != 0) {
+						updateIntervals.add(now - lastUpdate);
+					}
+					lastUpdate = now;
+					updatesReceived.incrementAndGet();
+
+					if (update instanceof GameState) {
+						state = (GameState) update;
+						simulation = null;
+						awaitingKeyframe = false;
+					} else if (update instanceof LockstepTick) {
+						if (!playTick((LockstepTick) update)) {
+							continue;
+						}
+					} else if (state == null
+							|| !state.applyDelta((StateDelta) update)) {
+						continue; // wait for the next keyframe
+					}
+					see(now);
+				}
+			} catch (IOException e) {
+			}
+		}
+
+		/**
+		 * Play a tick sent by a server playing in lockstep on the bot's copy,
+		 * asking for the whole game again if the copy is out of step. The bot
+		 * predicts nothing, so its copy can be taken when the first tick
+		 * arrives.
+		 *
+		 * @return <tt>true</tt> if the copy was updated
+		 */
+		private boolean playTick(LockstepTick tick) throws IOException {
+			if (state == null || awaitingKeyframe) {
+				return false;
+			}
+			if (simulation == null) {
+				simulation = new LockstepSimulation(state);
+			}
+			if (simulation.apply(tick)) {
+				return true;
+			}
+			resyncs.incrementAndGet();
+			simulation = null;
+			awaitingKeyframe = true;
+			connection.sendAction(new ResyncAction(id));
+			return false;
+		}
+
+		/**
+		 * Look at the bot's player in the latest state, and finish timing the
+		 * turn in flight if it has been applied
+		 */
+		private void see(long now) {
+			Player player = state.getPlayer(id);
+			if (player == null) {
+				return;
+			}
+			orientation = player.getOrientation();
+			if (probeSent != 0 && orientation == probeExpected) {
+				roundTrips.add(now - probeSent);
+				probeSent = 0;
+			}
+			visibleItem = -1;
+			Square square = state.getSquare(player.getLocation());
+			if (square instanceof WalkableSquare) {
+				List<Item> items = ((WalkableSquare) square)
+						.getItems(orientation);
+				if (items != null && !items.isEmpty()) {
+					visibleItem = items.get(0).getEntityID();
+				}
+			}
+		}
+
+		/**
+		 * Send the next action. Only one turn is in flight at a time, so its
+		 * round trip can be timed, the rest are moves and pickups.
+		 */
+		void act() {
+			if (orientation == null) {
+				return; // not playing yet
+			}
+			try {
+				double choice = Math.random();
+				if (probeSent == 0 && choice < 0.3) {
+					probeExpected = orientation.left();
+					probeSent = System.nanoTime();
+					connection.sendAction(new OrientAction(id, true));
+				} else if (visibleItem != -1 && choice < 0.5) {
+					connection.sendAction(new PickupAction(id, visibleItem));
+				} else {
+					connection.sendAction(new MoveAction(id, Direction
+							.randomDirection()));
+				}
+				actionsSent.incrementAndGet();
+			} catch (IOException e) {
+				orientation = null;
+			}
+		}
+	}
+}
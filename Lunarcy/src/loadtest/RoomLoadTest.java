@@ -0,0 +1,152 @@
+package loadtest;
+
+import game.Direction;
+import game.GameLogic;
+import game.GameState;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import network.BinaryCodec;
+import network.Codec;
+import network.MoveAction;
+import network.SerialExecutor;
+
+/**
+ * Measures how room ticking scales across cores. A number of simulated rooms
+ * are ticked as fast as possible, each owned by a SerialExecutor on a shared
+ * ForkJoinPool just as the server's rooms are, and the total ticks per second
+ * is reported for pools of 1 worker up to one per core.
+ *
+ * Each simulated tick does the same work as a real room, applying a move for
+ * every player, ticking the GameLogic and encoding the delta to send, but
+ * without any sockets.
+ *
+ * Usage: RoomLoadTest [rooms] [seconds per run] [map] [max workers]
+ *
+ * @author JTFM
+ *
+ */
+public class RoomLoadTest {
+	private static final int PLAYERS_PER_ROOM = 4;
+
+	public static void main(String[] args) throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int rooms = args.length > 0 ? Integer.parseInt(args[0]) : cores * 4;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		String map = args.length > 2 ? args[2] : "assets/maps/map.json";
+		int maxWorkers = args.length > 3 ? Integer.parseInt(args[3]) : cores;
+
+		System.out.println(rooms + " rooms, " + cores + " cores, " + seconds
+				+ "s per run");
+		System.out.println("workers\tticks/s\tspeedup");
+
+		double baseline = 0;
+		for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+			double rate = run(workers, rooms, seconds, map);
+			if (baseline == 0) {
+				baseline = rate;
+			}
+			System.out.printf("%d\t%.0f\t%.2fx%n", workers, rate, rate
+					/ baseline);
+			// Make sure the last run uses every worker
+			if (workers < maxWorkers && workers * 2 > maxWorkers) {
+				workers = maxWorkers / 2;
+			}
+		}
+	}
+
+	/**
+	 * Tick every room as fast as possible on a pool of the given size
+	 *
+	 * @return The total ticks per second across all rooms
+	 */
+	private static double run(int workers, int roomCount, int seconds,
+			String map) throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(workers,
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		List<SimulatedRoom> rooms = new ArrayList<SimulatedRoom>();
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new SimulatedRoom(map, pool));
+		}
+
+		// Warm up before measuring
+		for (SimulatedRoom room : rooms) {
+			room.start();
+		}
+		Thread.sleep(1000);
+		long startTicks = totalTicks(rooms);
+		long start = System.nanoTime();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		long ticks = totalTicks(rooms) - startTicks;
+		long elapsed = System.nanoTime() - start;
+
+		for (SimulatedRoom room : rooms) {
+			room.stop();
+		}
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+		return ticks / (elapsed / 1e9);
+	}
+
+	private static long totalTicks(List<SimulatedRoom> rooms) {
+		long total = 0;
+		for (SimulatedRoom room : rooms) {
+			total += room.ticks;
+		}
+		return total;
+	}
+
+	/**
+	 * A room with no clients, which keeps posting its next tick to its own
+	 * mailbox until stopped
+	 */
+	private static class SimulatedRoom implements Runnable {
+		private final GameLogic logic;
+		private final SerialExecutor owner;
+		private final Codec codec = new BinaryCodec();
+		private volatile boolean running;
+		private volatile long ticks;
+
+		SimulatedRoom(String map, ForkJoinPool pool) {
+			GameState state = new GameState(PLAYERS_PER_ROOM, map);
+			for (int i = 0; i < PLAYERS_PER_ROOM; i++) {
+				state.addPlayer(i, "Player" + i, Color.red);
+			}
+			logic = new GameLogic(state);
+			owner = new SerialExecutor(pool);
+		}
+
+		void start() {
+			running = true;
+			owner.execute(this);
+		}
+
+		void stop() {
+			running = false;
+		}
+
+		public void run() {
+			if (!running) {
+				return;
+			}
+			Direction[] directions = Direction.values();
+			for (int i = 0; i < PLAYERS_PER_ROOM; i++) {
+				new MoveAction(i, directions[(int) (Math.random() * 4)])
+						.applyAction(logic);
+			}
+			logic.tickGameState();
+			try {
+				codec.encodeUpdate(logic.getGameState().createDelta());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			ticks++;
+			owner.execute(this);
+		}
+	}
+}
@@ -0,0 +1,765 @@
+package network;
+
+import game.Armour;
+import game.Bag;
+import game.BlankSquare;
+import game.Chest;
+import game.CloakingGadget;
+import game.Container;
+import game.Direction;
+import game.Door;
+import game.EmptyWall;
+import game.Furniture;
+import game.GameState;
+import game.Item;
+import game.Key;
+import game.Location;
+import game.LockedChest;
+import game.LockedDoor;
+import game.Monitor;
+import game.Player;
+import game.Rock;
+import game.Ship;
+import game.ShipPart;
+import game.SolidContainer;
+import game.SolidWall;
+import game.Square;
+import game.StateDelta;
+import game.WalkableSquare;
+import game.Wall;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import storage.StateSnapshot;
+import bots.Rover;
+
+/**
+ * A hand written binary codec. Actions are an opcode followed by fixed width
+ * fields, updates are a version and kind followed by a structured encoding of
+ * the players, squares and rovers.
+ *
+ * Players inside squares are written as their IDs, so each player is only
+ * written once per update. Rovers are written with their ID and position
+ * only, as clients do not need their movement strategy, except in the
+ * snapshots sent to clients playing in lockstep, which need the whole game.
+ *
+ * @author denforjohn
+ *
+ */
+public class BinaryCodec implements Codec {
+	public static final int ID = 2;
+
+	// Bumped whenever the encoding changes
+	public static final int VERSION = 5;
+
+	// Action opcodes
+	private static final int MOVE = 1;
+	private static final int ORIENT = 2;
+	private static final int PICKUP = 3;
+	private static final int DROP = 4;
+	private static final int PUT = 5;
+	private static final int OPEN = 6;
+	private static final int CLOSE = 7;
+	private static final int REMOVE_PLAYER = 8;
+	private static final int RESYNC = 9;
+
+	// Update kinds
+	private static final int KEYFRAME = 1;
+	private static final int DELTA = 2;
+	private static final int SNAPSHOT = 3;
+	private static final int LOCKSTEP_TICK = 4;
+
+	// Square types
+	private static final int BLANK_SQUARE = 0;
+	private static final int WALKABLE_SQUARE = 1;
+	private static final int SHIP = 2;
+
+	// Wall types
+	private static final int EMPTY_WALL = 0;
+	private static final int SOLID_WALL = 1;
+	private static final int DOOR = 2;
+	private static final int LOCKED_DOOR = 3;
+
+	// Furniture types
+	private static final int NO_FURNITURE = 0;
+	private static final int ROCK = 1;
+	private static final int MONITOR = 2;
+	private static final int CHEST = 3;
+	private static final int LOCKED_CHEST = 4;
+
+	// Item types
+	private static final int KEY = 0;
+	private static final int SHIP_PART = 1;
+	private static final int BAG = 2;
+	private static final int ARMOUR = 3;
+	private static final int CLOAK = 4;
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	@Override
+	public int getID() {
+		return ID;
+	}
+
+	/* --------Actions-------- */
+
+	@Override
+	public byte[] encodeAction(NetworkAction action) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		if (action instanceof MoveAction) {
+			MoveAction move = (MoveAction) action;
+			out.writeByte(MOVE);
+			out.writeInt(move.getPlayerID());
+			out.writeByte(move.getDirection().ordinal());
+			out.writeInt(move.getSequence());
+		} else if (action instanceof OrientAction) {
+			OrientAction orient = (OrientAction) action;
+			out.writeByte(ORIENT);
+			out.writeInt(orient.getPlayerID());
+			out.writeBoolean(orient.isTurnLeft());
+			out.writeInt(orient.getSequence());
+		} else if (action instanceof PickupAction) {
+			PickupAction pickup = (PickupAction) action;
+			out.writeByte(PICKUP);
+			out.writeInt(pickup.getPlayerID());
+			out.writeInt(pickup.getItemID());
+		} else if (action instanceof DropAction) {
+			DropAction drop = (DropAction) action;
+			out.writeByte(DROP);
+			out.writeInt(drop.getPlayerID());
+			out.writeInt(drop.getItemID());
+		} else if (action instanceof PutAction) {
+			PutAction put = (PutAction) action;
+			out.writeByte(PUT);
+			out.writeInt(put.getPlayerID());
+			out.writeInt(put.getContainerID());
+			out.writeInt(put.getItemID());
+		} else if (action instanceof OpenAction) {
+			out.writeByte(OPEN);
+			out.writeInt(((OpenAction) action).getPlayerID());
+		} else if (action instanceof CloseAction) {
+			out.writeByte(CLOSE);
+			out.writeInt(((CloseAction) action).getPlayerID());
+		} else if (action instanceof RemovePlayer) {
+			out.writeByte(REMOVE_PLAYER);
+			out.writeInt(((RemovePlayer) action).getPlayerID());
+		} else if (action instanceof ResyncAction) {
+			out.writeByte(RESYNC);
+			out.writeInt(((ResyncAction) action).getPlayerID());
+		} else {
+			throw new IOException("Can't encode action " + action);
+		}
+
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public NetworkAction decodeAction(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int opcode = in.readUnsignedByte();
+		int playerID = in.readInt();
+
+		switch (opcode) {
+		case MOVE:
+			return new MoveAction(playerID, readDirection(in), in.readInt());
+		case ORIENT:
+			return new OrientAction(playerID, in.readBoolean(), in.readInt());
+		case PICKUP:
+			return new PickupAction(playerID, in.readInt());
+		case DROP:
+			return new DropAction(playerID, in.readInt());
+		case PUT:
+			int containerID = in.readInt();
+			return new PutAction(playerID, containerID, in.readInt());
+		case OPEN:
+			return new OpenAction(playerID);
+		case CLOSE:
+			return new CloseAction(playerID);
+		case REMOVE_PLAYER:
+			return new RemovePlayer(playerID);
+		case RESYNC:
+			return new ResyncAction(playerID);
+		default:
+			throw new IOException("Unknown action opcode " + opcode);
+		}
+	}
+
+	/* --------Updates-------- */
+
+	@Override
+	public byte[] encodeUpdate(Object update) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(VERSION);
+
+		if (update instanceof GameState) {
+			out.writeByte(KEYFRAME);
+			writeGameState(out, (GameState) update);
+		} else if (update instanceof StateDelta) {
+			out.writeByte(DELTA);
+			writeDelta(out, (StateDelta) update);
+		} else if (update instanceof StateSnapshot) {
+			// Games played in lockstep need all of the state, rovers' plans
+			// included, which is left to Java serialization
+			out.writeByte(SNAPSHOT);
+			((StateSnapshot) update).writeTo(out);
+		} else if (update instanceof LockstepTick) {
+			out.writeByte(LOCKSTEP_TICK);
+			writeLockstepTick(out, (LockstepTick) update);
+		} else {
+			throw new IOException("Can't encode update " + update);
+		}
+
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Object decodeUpdate(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version);
+		}
+
+		int kind = in.readUnsignedByte();
+		if (kind == KEYFRAME) {
+			return readGameState(in);
+		} else if (kind == DELTA) {
+			return readDelta(in);
+		} else if (kind == SNAPSHOT) {
+			return readSnapshot(in);
+		} else if (kind == LOCKSTEP_TICK) {
+			return readLockstepTick(in);
+		}
+		throw new IOException("Unknown update kind " + kind);
+	}
+
+	private void writeGameState(DataOutputStream out, GameState state)
+			throws IOException {
+		out.writeInt(state.getTickCount());
+		writePlayers(out, state.getPlayers());
+
+		Square[][] board = state.getBoard();
+		out.writeShort(board.length);
+		out.writeShort(board[0].length);
+		for (int y = 0; y < board.length; y++) {
+			for (int x = 0; x < board[y].length; x++) {
+				writeSquare(out, board[y][x]);
+			}
+		}
+
+		writeLocations(out, state.getSpawnPoints());
+		writeLocations(out, state.getRoverSpawnPoints());
+		writeRovers(out, state.getRovers());
+	}
+
+	private GameState readGameState(DataInputStream in) throws IOException {
+		int tickCount = in.readInt();
+		Player[] players = readPlayers(in);
+
+		Square[][] board = new Square[in.readShort()][in.readShort()];
+		for (int y = 0; y < board.length; y++) {
+			for (int x = 0; x < board[y].length; x++) {
+				board[y][x] = readSquare(in, players);
+			}
+		}
+
+		List<Location> spawnPoints = readLocations(in);
+		List<Location> roverSpawnPoints = readLocations(in);
+		Set<Rover> rovers = readRovers(in);
+
+		return new GameState(board, spawnPoints, roverSpawnPoints, players,
+				rovers, tickCount);
+	}
+
+	private void writeDelta(DataOutputStream out, StateDelta delta)
+			throws IOException {
+		out.writeInt(delta.getBaseTick());
+		out.writeInt(delta.getTick());
+		writePlayers(out, delta.getPlayers());
+
+		Map<Location, Square> squares = delta.getSquares();
+		out.writeShort(squares.size());
+		for (Map.Entry<Location, Square> entry : squares.entrySet()) {
+			writeLocation(out, entry.getKey());
+			writeSquare(out, entry.getValue());
+		}
+
+		out.writeBoolean(delta.getRovers() != null);
+		if (delta.getRovers() != null) {
+			writeRovers(out, delta.getRovers());
+		}
+	}
+
+	private StateDelta readDelta(DataInputStream in) throws IOException {
+		int baseTick = in.readInt();
+		int tick = in.readInt();
+		Player[] players = readPlayers(in);
+
+		int numSquares = in.readUnsignedShort();
+		Map<Location, Square> squares = new HashMap<Location, Square>();
+		for (int i = 0; i < numSquares; i++) {
+			Location location = readLocation(in);
+			squares.put(location, readSquare(in, players));
+		}
+
+		Set<Rover> rovers = in.readBoolean() ? readRovers(in) : null;
+
+		return new StateDelta(baseTick, tick, squares, players, rovers);
+	}
+
+	private GameState readSnapshot(DataInputStream in) throws IOException {
+		try {
+			return (GameState) new ObjectInputStream(in).readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Not a snapshot of a game", e);
+		}
+	}
+
+	private void writeLockstepTick(DataOutputStream out, LockstepTick tick)
+			throws IOException {
+		out.writeInt(tick.getTick());
+		out.writeShort(tick.getAIStart());
+		out.writeShort(tick.getAICount());
+		out.writeLong(tick.getChecksum());
+		out.writeShort(tick.getActions().length);
+		for (NetworkAction action : tick.getActions()) {
+			byte[] data = encodeAction(action);
+			if (data.length > 0xFF) {
+				throw new IOException("Action too long to encode " + action);
+			}
+			out.writeByte(data.length);
+			out.write(data);
+		}
+	}
+
+	private LockstepTick readLockstepTick(DataInputStream in)
+			throws IOException {
+		int tick = in.readInt();
+		int aiStart = in.readUnsignedShort();
+		int aiCount = in.readUnsignedShort();
+		long checksum = in.readLong();
+		NetworkAction[] actions = new NetworkAction[in.readUnsignedShort()];
+		for (int i = 0; i < actions.length; i++) {
+			byte[] data = new byte[in.readUnsignedByte()];
+			in.readFully(data);
+			actions[i] = decodeAction(data);
+		}
+		return new LockstepTick(tick, actions, aiStart, aiCount, checksum);
+	}
+
+	/* --------Players and Rovers-------- */
+
+	private void writePlayers(DataOutputStream out, Player[] players)
+			throws IOException {
+		out.writeShort(players.length);
+		for (Player player : players) {
+			out.writeBoolean(player != null);
+			if (player == null) {
+				continue;
+			}
+			out.writeInt(player.getId());
+			out.writeUTF(player.getName());
+			out.writeInt(player.getColour() == null ? 0 : player.getColour()
+					.getRGB());
+			writeLocation(out, player.getLocation());
+			out.writeByte(player.getOrientation().ordinal());
+			out.writeShort(player.getOxygen());
+			out.writeInt(player.getLastInput());
+			writeItems(out, player.getInventory());
+		}
+	}
+
+	private Player[] readPlayers(DataInputStream in) throws IOException {
+		Player[] players = new Player[in.readUnsignedShort()];
+		for (int i = 0; i < players.length; i++) {
+			if (!in.readBoolean()) {
+				continue;
+			}
+			int id = in.readInt();
+			String name = in.readUTF();
+			Color colour = new Color(in.readInt(), true);
+			Location location = readLocation(in);
+			Direction orientation = readDirection(in);
+
+			Player player = new Player(id, name, colour, location, orientation);
+			player.modifyOxygen(in.readShort() - player.getOxygen());
+			player.acknowledgeInput(in.readInt());
+
+			// The constructor may have given the player items already
+			for (Item item : player.getInventory()) {
+				player.removeItem(item.getEntityID());
+			}
+			for (Item item : readItems(in)) {
+				player.giveItem(item);
+			}
+			players[i] = player;
+		}
+		return players;
+	}
+
+	private void writeRovers(DataOutputStream out, Set<Rover> rovers)
+			throws IOException {
+		out.writeShort(rovers.size());
+		for (Rover rover : rovers) {
+			out.writeInt(rover.getId());
+			writeLocation(out, rover.getSpawnLocation());
+			writeLocation(out, rover.getLocation());
+			out.writeByte(rover.getOrientation().ordinal());
+		}
+	}
+
+	private Set<Rover> readRovers(DataInputStream in) throws IOException {
+		int numRovers = in.readUnsignedShort();
+		Set<Rover> rovers = new HashSet<Rover>();
+		for (int i = 0; i < numRovers; i++) {
+			int id = in.readInt();
+			Location spawn = readLocation(in);
+			Location location = readLocation(in);
+			rovers.add(new Rover(id, spawn, location, readDirection(in)));
+		}
+		return rovers;
+	}
+
+	/* --------Squares and Walls-------- */
+
+	private void writeSquare(DataOutputStream out, Square square)
+			throws IOException {
+		if (square instanceof Ship) {
+			out.writeByte(SHIP);
+		} else if (square instanceof WalkableSquare) {
+			out.writeByte(WALKABLE_SQUARE);
+		} else {
+			out.writeByte(BLANK_SQUARE);
+		}
+		writeWalls(out, square.getWalls());
+
+		if (!(square instanceof WalkableSquare)) {
+			return;
+		}
+		WalkableSquare walkable = (WalkableSquare) square;
+		if (square instanceof Ship) {
+			Set<ShipPart> parts = ((Ship) square).getParts();
+			writeCount(out, parts.size());
+			for (ShipPart part : parts) {
+				out.writeInt(part.getEntityID());
+				out.writeByte(part.getTypeID());
+			}
+		} else {
+			out.writeBoolean(walkable.isInside());
+		}
+
+		for (Direction dir : DIRECTIONS) {
+			writeItems(out, walkable.getItems(dir));
+			writeFurniture(out, walkable.getFurniture(dir));
+		}
+
+		Set<Player> players = walkable.getPlayers();
+		out.writeShort(players.size());
+		for (Player player : players) {
+			out.writeInt(player.getId());
+		}
+	}
+
+	private Square readSquare(DataInputStream in, Player[] players)
+			throws IOException {
+		int type = in.readUnsignedByte();
+		List<Wall> walls = readWalls(in);
+
+		if (type == BLANK_SQUARE) {
+			BlankSquare blank = new BlankSquare();
+			setWalls(blank, walls);
+			return blank;
+		}
+
+		WalkableSquare walkable;
+		if (type == SHIP) {
+			ShipPart[] parts = new ShipPart[in.readUnsignedShort()];
+			for (int i = 0; i < parts.length; i++) {
+				parts[i] = new ShipPart(in.readInt(), in.readUnsignedByte());
+			}
+			walkable = new Ship(parts);
+		} else if (type == WALKABLE_SQUARE) {
+			walkable = new WalkableSquare(in.readBoolean(), null, null, null,
+					null);
+		} else {
+			throw new IOException("Unknown square type " + type);
+		}
+		setWalls(walkable, walls);
+
+		for (Direction dir : DIRECTIONS) {
+			for (Item item : readItems(in)) {
+				walkable.addItem(dir, item);
+			}
+			walkable.setFurniture(dir, readFurniture(in));
+		}
+
+		int numPlayers = in.readUnsignedShort();
+		for (int i = 0; i < numPlayers; i++) {
+			int id = in.readInt();
+			// Players who have left the game are no longer in the square
+			if (id >= 0 && id < players.length && players[id] != null) {
+				walkable.addPlayer(players[id]);
+			}
+		}
+		return walkable;
+	}
+
+	/**
+	 * Writes the walls of a square in direction order, so the same square
+	 * always encodes to the same bytes
+	 */
+	private void writeWalls(DataOutputStream out, Map<Direction, Wall> walls)
+			throws IOException {
+		out.writeByte(walls.size());
+		for (Direction dir : Direction.values()) {
+			Wall wall = walls.get(dir);
+			if (wall == null) {
+				continue;
+			}
+			out.writeByte(dir.ordinal());
+			if (wall instanceof LockedDoor) {
+				out.writeByte(LOCKED_DOOR);
+				out.writeInt(((LockedDoor) wall).getKeyCode());
+			} else if (wall instanceof Door) {
+				out.writeByte(DOOR);
+			} else if (wall instanceof SolidWall) {
+				out.writeByte(SOLID_WALL);
+			} else {
+				out.writeByte(EMPTY_WALL);
+			}
+		}
+	}
+
+	/**
+	 * Reads the walls of a square, the returned list is indexed by direction
+	 * and has null entries for sides without a wall.
+	 */
+	private List<Wall> readWalls(DataInputStream in) throws IOException {
+		List<Wall> walls = new ArrayList<Wall>();
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			walls.add(null);
+		}
+
+		int numWalls = in.readUnsignedByte();
+		for (int i = 0; i < numWalls; i++) {
+			Direction dir = readDirection(in);
+			int type = in.readUnsignedByte();
+			switch (type) {
+			case LOCKED_DOOR:
+				walls.set(dir.ordinal(), new LockedDoor(in.readInt()));
+				break;
+			case DOOR:
+				walls.set(dir.ordinal(), new Door());
+				break;
+			case SOLID_WALL:
+				walls.set(dir.ordinal(), new SolidWall());
+				break;
+			case EMPTY_WALL:
+				walls.set(dir.ordinal(), new EmptyWall());
+				break;
+			default:
+				throw new IOException("Unknown wall type " + type);
+			}
+		}
+		return walls;
+	}
+
+	private void setWalls(Square square, List<Wall> walls) {
+		for (Direction dir : DIRECTIONS) {
+			Wall wall = walls.get(dir.ordinal());
+			if (wall != null) {
+				square.getWalls().put(dir, wall);
+			}
+		}
+	}
+
+	/* --------Furniture and Items-------- */
+
+	private void writeFurniture(DataOutputStream out, Furniture furniture)
+			throws IOException {
+		if (furniture instanceof LockedChest) {
+			LockedChest chest = (LockedChest) furniture;
+			out.writeByte(LOCKED_CHEST);
+			out.writeInt(chest.getEntityID());
+			out.writeByte(chest.getAccessLevel());
+		} else if (furniture instanceof Chest) {
+			out.writeByte(CHEST);
+			out.writeInt(((Chest) furniture).getEntityID());
+		} else if (furniture instanceof Rock) {
+			out.writeByte(ROCK);
+		} else if (furniture instanceof Monitor) {
+			out.writeByte(MONITOR);
+		} else {
+			out.writeByte(NO_FURNITURE);
+		}
+
+		if (furniture instanceof SolidContainer) {
+			SolidContainer container = (SolidContainer) furniture;
+			out.writeBoolean(container.isOpen());
+			writeItems(out, container.getItems());
+		}
+	}
+
+	private Furniture readFurniture(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		SolidContainer container;
+		switch (type) {
+		case NO_FURNITURE:
+			return null;
+		case ROCK:
+			return new Rock();
+		case MONITOR:
+			return new Monitor();
+		case CHEST:
+			container = new Chest(in.readInt());
+			break;
+		case LOCKED_CHEST:
+			int entityID = in.readInt();
+			container = new LockedChest(entityID, in.readUnsignedByte());
+			break;
+		default:
+			throw new IOException("Unknown furniture type " + type);
+		}
+
+		if (in.readBoolean()) {
+			container.forceOpen();
+		}
+		for (Item item : readItems(in)) {
+			container.forceAddItem(item);
+		}
+		return container;
+	}
+
+	private void writeItems(DataOutputStream out, List<Item> items)
+			throws IOException {
+		writeCount(out, items.size());
+		for (Item item : items) {
+			writeItem(out, item);
+		}
+	}
+
+	/**
+	 * Write how many items or parts follow, read back with readUnsignedShort.
+	 * Any more than fit would leave everything after them misread, so the
+	 * update isn't sent at all.
+	 */
+	private void writeCount(DataOutputStream out, int count)
+			throws IOException {
+		if (count > 0xFFFF) {
+			throw new IOException("Too many to encode: " + count);
+		}
+		out.writeShort(count);
+	}
+
+	private List<Item> readItems(DataInputStream in) throws IOException {
+		int numItems = in.readUnsignedShort();
+		List<Item> items = new ArrayList<Item>(numItems);
+		for (int i = 0; i < numItems; i++) {
+			items.add(readItem(in));
+		}
+		return items;
+	}
+
+	private void writeItem(DataOutputStream out, Item item) throws IOException {
+		if (item instanceof Key) {
+			out.writeByte(KEY);
+			out.writeInt(item.getEntityID());
+			out.writeInt(((Key) item).getAccessLevel());
+		} else if (item instanceof ShipPart) {
+			out.writeByte(SHIP_PART);
+			out.writeInt(item.getEntityID());
+			out.writeByte(((ShipPart) item).getTypeID());
+		} else if (item instanceof Bag) {
+			out.writeByte(BAG);
+			out.writeInt(item.getEntityID());
+			writeItems(out, ((Container) item).getItems());
+		} else if (item instanceof Armour) {
+			out.writeByte(ARMOUR);
+			out.writeInt(item.getEntityID());
+		} else if (item instanceof CloakingGadget) {
+			out.writeByte(CLOAK);
+			out.writeInt(item.getEntityID());
+		} else {
+			throw new IOException("Can't encode item " + item);
+		}
+	}
+
+	private Item readItem(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		int entityID = in.readInt();
+		switch (type) {
+		case KEY:
+			return new Key(entityID, in.readInt());
+		case SHIP_PART:
+			return new ShipPart(entityID, in.readUnsignedByte());
+		case BAG:
+			Bag bag = new Bag(entityID);
+			for (Item item : readItems(in)) {
+				bag.addItem(item);
+			}
+			return bag;
+		case ARMOUR:
+			return new Armour(entityID);
+		case CLOAK:
+			return new CloakingGadget(entityID);
+		default:
+			throw new IOException("Unknown item type " + type);
+		}
+	}
+
+	/* --------Locations and Directions-------- */
+
+	private void writeLocations(DataOutputStream out, List<Location> locations)
+			throws IOException {
+		out.writeShort(locations.size());
+		for (Location location : locations) {
+			writeLocation(out, location);
+		}
+	}
+
+	private List<Location> readLocations(DataInputStream in)
+			throws IOException {
+		int numLocations = in.readUnsignedShort();
+		List<Location> locations = new ArrayList<Location>(numLocations);
+		for (int i = 0; i < numLocations; i++) {
+			locations.add(readLocation(in));
+		}
+		return locations;
+	}
+
+	private void writeLocation(DataOutputStream out, Location location)
+			throws IOException {
+		out.writeShort(location.getX());
+		out.writeShort(location.getY());
+	}
+
+	private Location readLocation(DataInputStream in) throws IOException {
+		int x = in.readShort();
+		return new Location(x, in.readShort());
+	}
+
+	private Direction readDirection(DataInputStream in) throws IOException {
+		int ordinal = in.readUnsignedByte();
+		if (ordinal >= DIRECTIONS.length) {
+			throw new IOException("Unknown direction " + ordinal);
+		}
+		return DIRECTIONS[ordinal];
+	}
+}
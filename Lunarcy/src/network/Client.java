@@ -1,13 +1,11 @@
 package network;
 
 import game.GameState;
+import game.StateDelta;
 import ui.Frame;
 
 import java.awt.Color;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
 
 import javax.swing.JOptionPane;
 
@@ -20,10 +18,7 @@ import javax.swing.JOptionPane;
  */
 public class Client {
 	// Network related fields
-	private static final int DEFAULT_PORT = 58627;
-	private Socket socket;
-	private ObjectInputStream inputFromServer;
-	private ObjectOutputStream outputToServer;
+	private ServerConnection connection;
 	private int id = -1;
 	private String name;
 	private Frame frame;
@@ -31,6 +26,19 @@ public class Client {
 	private int frameHeight;
 	private boolean hardwareRenderer;
 
+	// The local copy of the gamestate which updates are applied onto
+	private GameState gameState;
+
+	// Ticks the local copy when the server is playing in lockstep, null once
+	// the server is known to send deltas or while waiting to be sent the
+	// whole game again
+	private LockstepSimulation simulation;
+	private boolean awaitingKeyframe;
+	private boolean receivingDeltas;
+
+	// Shows the player's own moves and turns before the server applies them
+	private InputPrediction prediction;
+
 	/**
 	 * Construct a Client
 	 *
@@ -45,17 +53,34 @@ public class Client {
 	public Client(String serverAddr, String name, Color colour, int frameWidth,
 			int frameHeight, boolean hardwareRenderer)
 			throws IllegalArgumentException {
+		this(serverAddr, "", name, colour, frameWidth, frameHeight,
+				hardwareRenderer);
+	}
+
+	/**
+	 * Construct a Client which joins a specific room on the server
+	 *
+	 * @param serverAddr String address of the server
+	 * @param room Name of the room to join, an empty string joins any room with space
+	 * @param name	Username of the client
+	 * @param colour Colour of the client
+	 * @param frameWidth Width of the canvas frame
+	 * @param frameHeight Height of the canvas frame
+	 * @param hardwareRenderer Whether or not to use a hardware renderer
+	 * @throws IllegalArgumentException If the server couldn't be reached or the room is full
+	 */
+	public Client(String serverAddr, String room, String name, Color colour,
+			int frameWidth, int frameHeight, boolean hardwareRenderer)
+			throws IllegalArgumentException {
 
 		this.frameWidth = frameWidth;
 		this.frameHeight = frameHeight;
 		this.hardwareRenderer = hardwareRenderer;
 		this.name = name;
 		try {
-			socket = new Socket(serverAddr, DEFAULT_PORT);
+			connection = new ServerConnection(serverAddr);
 			System.out.println("bound socket");
-			outputToServer = new ObjectOutputStream(socket.getOutputStream());
-			inputFromServer = new ObjectInputStream(socket.getInputStream());
-			negotiateConnection(name, colour);
+			negotiateConnection(room, name, colour);
 		} catch (IOException e) {
 			System.out.println("Couldn't establish connection");
 			throw new IllegalArgumentException("Bad IP");
@@ -67,15 +92,19 @@ public class Client {
 	/**
 	 * Negotiate the connection between the client and server
 	 *
+	 * @param room Name of the room to join
 	 * @param name userName of this user
 	 * @param colour Colour of this player
-	 * @throws IllegalArgumentException
+	 * @throws IllegalArgumentException If the room is full
 	 * @throws IOException
 	 */
-	private void negotiateConnection(String name, Color colour) throws IllegalArgumentException, IOException {
+	private void negotiateConnection(String room, String name, Color colour) throws IllegalArgumentException, IOException {
+		if (!connection.joinRoom(room)) {
+			connection.close();
+			throw new IllegalArgumentException("Room is full");
+		}
 		do {
-			writeObject(name);
-			this.id = readInt();
+			this.id = connection.sendName(name);
 			if (this.id == Server.INVALID_USERNAME) {
 				name = showDialog("To join this game, please enter the correct name");
 			} else if (this.id == Server.USERNAME_TAKEN) {
@@ -84,9 +113,10 @@ public class Client {
 		} while (this.id == Server.USERNAME_TAKEN || this.id == Server.INVALID_USERNAME);
 		this.name = name;
 		// Send hex colour
-		String hexColour = String.format("#%02x%02x%02x", colour.getRed(), colour.getGreen(), colour.getBlue());
-		writeObject(hexColour);
+		connection.sendColour(colour);
 		System.out.println("Name sent to server: " + name);
+		// Offer the codecs we support, the server chooses which one to use
+		connection.negotiateCodec();
 
 	}
 
@@ -111,8 +141,12 @@ public class Client {
 		while (initialGameState == null) {
 			initialGameState = getGameState(); // wait for the initial gamestate
 		}
+		setKeyframe(initialGameState);
+		this.prediction = new InputPrediction(id, initialGameState);
 		this.frame = new Frame(this, initialGameState, frameWidth, frameHeight,
 				hardwareRenderer);
+		frame.getCanvas().getSnapshots().record(initialGameState,
+				System.nanoTime());
 	}
 	/**
 	 * Listen for updates sent from the server
@@ -125,24 +159,104 @@ public class Client {
 					while (true) {
 						Object obj;
 
-						obj = inputFromServer.readObject();
+						obj = connection.readUpdate();
 
 						if (obj instanceof String) {
 							String val = (String) obj;
 							if (val.equals("quit"))
 								break;
-						} else if (obj instanceof GameState) {
-							GameState gameState = (GameState) obj;
-							frame.getCanvas().setGameState(gameState);
+						} else {
+							applyUpdate(obj);
 						}
 					}
-				} catch (ClassNotFoundException | IOException e) {
+				} catch (IOException e) {
 				} finally {
 					disconnect();
 				}
 			}
 		}).start();
 	}
+	/**
+	 * Apply an update from the server onto the local copy, then replay the
+	 * moves and turns the server hasn't applied yet. Holds the client's lock
+	 * so no input is predicted half way through.
+	 *
+	 * @param obj
+	 *            The update which was read
+	 * @throws IOException
+	 */
+	private synchronized void applyUpdate(Object obj) throws IOException {
+		if (obj instanceof GameState) {
+			setKeyframe((GameState) obj);
+		} else if (obj instanceof LockstepTick) {
+			if (!playTick((LockstepTick) obj)) {
+				return;
+			}
+		} else if (obj instanceof StateDelta) {
+			// The server isn't playing in lockstep, so no copy is needed
+			receivingDeltas = true;
+			simulation = null;
+			// Otherwise apply the changes onto the local copy, a delta that
+			// doesn't match is skipped until the next keyframe arrives
+			if (!gameState.applyDelta((StateDelta) obj)) {
+				return;
+			}
+		} else {
+			return;
+		}
+		// Other characters are drawn moving between the server's states,
+		// which are recorded before the player's own inputs are replayed
+		frame.getCanvas().getSnapshots().record(gameState, System.nanoTime());
+		prediction.reconcile(gameState);
+		frame.getCanvas().setGameState(gameState);
+	}
+
+	/**
+	 * A keyframe replaces the local copy entirely. Unless the server is known
+	 * to send deltas, the copy ticked in lockstep is taken straight away,
+	 * before any of the player's inputs are predicted on the local copy.
+	 *
+	 * @param state
+	 *            The whole game sent by the server
+	 */
+	private void setKeyframe(GameState state) {
+		gameState = state;
+		awaitingKeyframe = false;
+		simulation = null;
+		if (!receivingDeltas) {
+			try {
+				simulation = new LockstepSimulation(state);
+			} catch (IOException e) {
+				// Asked for again if a tick arrives
+			}
+		}
+	}
+
+	/**
+	 * Play a tick sent by a server playing in lockstep on the local copy. If
+	 * there is no copy, or it no longer matches the server's, the whole game
+	 * is asked for again and ticks are ignored until it arrives.
+	 *
+	 * @param tick
+	 *            The tick the server played
+	 * @return <tt>true</tt> if the local copy was updated
+	 * @throws IOException
+	 */
+	private boolean playTick(LockstepTick tick) throws IOException {
+		if (awaitingKeyframe) {
+			return false;
+		}
+		if (simulation != null && simulation.apply(tick)) {
+			return true;
+		}
+		System.out.println("Out of step with the server at tick "
+				+ tick.getTick());
+		simulation = null;
+		awaitingKeyframe = true;
+		connection.sendAction(new ResyncAction(id));
+		return false;
+	}
+
 	/**
 	 * Return the gamestate from the server when received
 	 * @return
@@ -151,11 +265,9 @@ public class Client {
 		GameState state = null;
 		try {
 			// System.out.println("attempting to listen for game update");
-			state = (GameState) inputFromServer.readObject();
+			state = (GameState) connection.readUpdate();
 			return state;
 		} catch (IOException e) {
-
-		} catch (ClassNotFoundException e) {
 			e.printStackTrace();
 		}
 		return null;
@@ -166,45 +278,58 @@ public class Client {
 	 */
 	public boolean sendAction(NetworkAction action) {
 		try {
-			writeObject(action);
+			connection.sendAction(action);
 		} catch (IOException e) {
 			return false;
 		}
 		return true;
 	}
 	/**
-	 * Read an integer from the server
-	 *
-	 * @return value from server
-	 * @throws IOException Faied to read value
+	 * @return The number to give the player's next move or turn
 	 */
-	private int readInt() throws IOException {
-			return inputFromServer.readInt();
+	public synchronized int nextInputSequence() {
+		return prediction.nextSequence();
 	}
+
 	/**
-	 * Disconnect this client from the server
+	 * Show a move or turn on the local copy straight away, then send it to
+	 * the server, which corrects the local copy if it disagrees
+	 *
+	 * @param action
+	 *            The move or turn, numbered by nextInputSequence
+	 * @return false if it wasn't sent, as the player has already moved this
+	 *         tick or the server couldn't be reached
 	 */
-	private void disconnect() {
-		JOptionPane.showMessageDialog(null, "Disconnected from Server");
-		try {
-			inputFromServer.close();
-			outputToServer.close();
-			socket.close();
-		} catch (IOException e) {
-		} finally {
-			System.exit(1);
+	public boolean sendInput(PredictedAction action) {
+		synchronized (this) {
+			if (!prediction.predict(gameState, action)) {
+				return false;
+			}
+			frame.getCanvas().setGameState(gameState);
 		}
+		return sendAction(action);
 	}
+
 	/**
+	 * Set how far behind the latest state other players and rovers are drawn,
+	 * so they can be shown moving between the states either side
 	 *
-	 * @param o
-	 * @return
-	 * @throws IOException
+	 * @param millis
+	 *            The delay in milliseconds, 0 to draw them where they are, or
+	 *            SnapshotBuffer.AUTOMATIC to use twice the time between
+	 *            updates
 	 */
-	private void writeObject(Object o) throws IOException {
-		outputToServer.reset();
-		outputToServer.writeObject(o);
-		outputToServer.flush();
+	public void setInterpolationDelay(long millis) {
+		frame.getCanvas().getSnapshots().setDelay(millis);
+	}
+
+	/**
+	 * Disconnect this client from the server
+	 */
+	private void disconnect() {
+		JOptionPane.showMessageDialog(null, "Disconnected from Server");
+		connection.close();
+		System.exit(1);
 	}
 
 	public int getPlayerID() {
@@ -0,0 +1,307 @@
+package network;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Handles the connection between the server and a single client. All of the
+ * reading and writing is done by the server's selector thread, while updates
+ * are queued by the room the client is playing in.
+ *
+ * @author JTFM
+ *
+ */
+class ClientConnection {
+	// Updates a client may have waiting to be written before it is resynced
+	private static final int MAX_PENDING_UPDATES = 16;
+
+	// Stages of a client connection
+	private static final int AWAITING_ROOM = 0;
+	private static final int AWAITING_NAME = 1;
+	private static final int AWAITING_COLOUR = 2;
+	private static final int AWAITING_CODECS = 3;
+	private static final int CONNECTED = 4;
+
+	private Server server;
+	private SocketChannel channel;
+	private SelectionKey key;
+	private Room room;
+	private int clientId;
+	private String username;
+	private Color colour;
+	private Codec codec;
+	private int stage = AWAITING_ROOM;
+	private volatile boolean clientRunning = false;
+	private volatile boolean closeWhenFlushed = false;
+	private ByteBuffer readBuffer = ByteBuffer.allocate(256);
+	private ByteBuffer currentWrite;
+	private LinkedBlockingQueue<ByteBuffer> pendingUpdates = new LinkedBlockingQueue<ByteBuffer>(
+			MAX_PENDING_UPDATES);
+	private volatile boolean needsKeyframe = true;
+
+	/**
+	 * @param server
+	 *            The server which accepted the client
+	 * @param channel
+	 *            The non-blocking channel connected to the client
+	 * @param key
+	 *            The key the channel is registered with the selector under
+	 */
+	ClientConnection(Server server, SocketChannel channel, SelectionKey key) {
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+	}
+
+	/**
+	 * Whether the client has finished negotiating and is ready for updates
+	 *
+	 * @return <tt>true</tt> is running
+	 */
+	public boolean isRunning() {
+		return clientRunning;
+	}
+
+	public int getClientId() {
+		return clientId;
+	}
+
+	void setClientId(int clientId) {
+		this.clientId = clientId;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public Color getColour() {
+		return colour;
+	}
+
+	public Codec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Read whatever the client has sent, and handle every complete frame
+	 *
+	 * @throws IOException
+	 *             If the client disconnected or sent an invalid frame
+	 */
+	void read() throws IOException {
+		if (channel.read(readBuffer) < 0) {
+			throw new IOException("Client disconnected");
+		}
+		readBuffer.flip();
+		while (readBuffer.remaining() >= 4) {
+			int length = readBuffer.getInt(readBuffer.position());
+			if (length < 0 || length > Server.MAX_FRAME_LENGTH) {
+				throw new IOException("Invalid frame length " + length);
+			}
+			if (readBuffer.remaining() < length + 4) {
+				break;
+			}
+			readBuffer.getInt();
+			byte[] frame = new byte[length];
+			readBuffer.get(frame);
+			handleFrame(frame);
+		}
+		readBuffer.compact();
+
+		// Make room for a frame bigger than the buffer
+		if (readBuffer.position() >= 4) {
+			int needed = readBuffer.getInt(0) + 4;
+			if (needed > readBuffer.capacity()) {
+				ByteBuffer larger = ByteBuffer.allocate(needed);
+				readBuffer.flip();
+				larger.put(readBuffer);
+				readBuffer = larger;
+			}
+		}
+	}
+
+	/**
+	 * Handle a frame sent by the client, negotiating the connection until it
+	 * is set up and then treating every frame as an action
+	 *
+	 * @param frame
+	 *            The bytes sent
+	 * @throws IOException
+	 */
+	private void handleFrame(byte[] frame) throws IOException {
+		if (stage == CONNECTED) {
+			NetworkAction action = codec.decodeAction(frame);
+			if (action instanceof ResyncAction) {
+				// Their copy of a game played in lockstep has gone wrong
+				needsKeyframe = true;
+			} else {
+				room.queueAction(action);
+			}
+		} else if (stage == AWAITING_ROOM) {
+			// Join the requested room, or any open room if none was named
+			room = server.joinRoom(new String(frame, StandardCharsets.UTF_8),
+					this);
+			if (room == null) {
+				sendInt(Server.ROOM_FULL);
+				return;
+			}
+			sendInt(Server.ROOM_JOINED);
+			stage = AWAITING_NAME;
+		} else if (stage == AWAITING_NAME) {
+			String name = new String(frame, StandardCharsets.UTF_8);
+			if (room.isFromSavedGame()) {
+				// retrieve their previous name
+				this.clientId = room.getPlayerID(name);
+				if (this.clientId == -1) {
+					sendInt(Server.INVALID_USERNAME);
+					return;
+				}
+			} else if (room.isNameTaken(name)) {
+				// if name already used
+				sendInt(Server.USERNAME_TAKEN);
+				return;
+			}
+			sendInt(this.clientId);
+			System.out.println("sent id to client: " + this.clientId);
+			this.username = name;
+			stage = AWAITING_COLOUR;
+		} else if (stage == AWAITING_COLOUR) {
+			try {
+				this.colour = Color.decode(new String(frame,
+						StandardCharsets.UTF_8));
+			} catch (NumberFormatException e) {
+				this.colour = Color.RED;
+			}
+			stage = AWAITING_CODECS;
+		} else if (stage == AWAITING_CODECS) {
+			// Agree on the codec to use for actions and updates
+			this.codec = Codecs.forID(Codecs.choose(Codecs.decodeOffer(frame)));
+			sendInt(codec.getID());
+			stage = CONNECTED;
+			this.clientRunning = true; // ready to be sent to
+			room.clientReady(this);
+		}
+	}
+
+	/**
+	 * Send an int to the client, only called from the selector thread
+	 *
+	 * @param val
+	 */
+	private void sendInt(int val) {
+		byte[] payload = ByteBuffer.allocate(4).putInt(val).array();
+		pendingUpdates.offer(Server.frame(payload, false));
+		enableWrite();
+	}
+
+	/**
+	 * Queue an encoded update to be sent to the client. If the client has too
+	 * many updates waiting they are dropped, and the client is flagged as
+	 * needing a keyframe as any later deltas would not apply.
+	 *
+	 * @param update
+	 *            The encoded update, shared between all clients
+	 * @param keyframe
+	 *            Whether the update is a full gamestate
+	 */
+	public void queueUpdate(ByteBuffer update, boolean keyframe) {
+		if (keyframe) {
+			needsKeyframe = false;
+		}
+		if (!pendingUpdates.offer(update)) {
+			pendingUpdates.clear();
+			needsKeyframe = true;
+		}
+	}
+
+	/**
+	 * Whether this client must be sent a full gamestate next
+	 *
+	 * @return <tt>true</tt> if the client can't apply a delta
+	 */
+	public boolean needsKeyframe() {
+		return needsKeyframe;
+	}
+
+	/**
+	 * Disconnect the client once everything queued has been written, used
+	 * when the game is over
+	 */
+	public void closeWhenFlushed() {
+		closeWhenFlushed = true;
+	}
+
+	/**
+	 * Register interest in writing, called on the selector thread once
+	 * updates have been queued
+	 */
+	void enableWrite() {
+		if (key.isValid()) {
+			key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * Write as much of the queued updates as the socket will take. The update
+	 * being written is kept aside, so dropping the queue when the client falls
+	 * behind never cuts a frame in half.
+	 *
+	 * @throws IOException
+	 */
+	void write() throws IOException {
+		while (true) {
+			if (currentWrite == null) {
+				currentWrite = pendingUpdates.poll();
+				if (currentWrite == null) {
+					// Nothing left, stop waiting to write
+					if (closeWhenFlushed) {
+						close();
+					} else {
+						key.interestOps(SelectionKey.OP_READ);
+					}
+					return;
+				}
+			}
+			channel.write(currentWrite);
+			if (currentWrite.hasRemaining()) {
+				return; // socket is full, wait until it drains
+			}
+			currentWrite = null;
+		}
+	}
+
+	/**
+	 * Write whatever can be sent without waiting, before disconnecting
+	 */
+	void flush() {
+		try {
+			write();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Remove the client from the server and its room, and attempt to close
+	 * the socket
+	 */
+	void close() {
+		if (!server.removeClientConnection(this)) {
+			return; // already closed
+		}
+		System.out.println("Client " + clientId + "Disconnected");
+		clientRunning = false;
+		if (room != null) {
+			room.removeClient(this);
+		}
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package network;
+
+import java.io.IOException;
+
+/**
+ * Converts the messages passed between the client and server to and from
+ * bytes. Which codec a connection uses is agreed on when the connection is
+ * negotiated.
+ *
+ * @author denforjohn
+ *
+ */
+public interface Codec {
+	/**
+	 * @return The ID used to identify this codec during negotiation
+	 */
+	int getID();
+
+	/**
+	 * Encode an action being sent to the server
+	 *
+	 * @param action
+	 *            The action to encode
+	 * @return The encoded bytes
+	 * @throws IOException
+	 *             If the action can't be encoded
+	 */
+	byte[] encodeAction(NetworkAction action) throws IOException;
+
+	/**
+	 * Decode an action received from a client
+	 *
+	 * @param data
+	 *            The encoded bytes
+	 * @return The action that was encoded
+	 * @throws IOException
+	 *             If the bytes are not a valid action
+	 */
+	NetworkAction decodeAction(byte[] data) throws IOException;
+
+	/**
+	 * Encode an update being sent to the clients, either a full GameState or a
+	 * StateDelta
+	 *
+	 * @param update
+	 *            The update to encode
+	 * @return The encoded bytes
+	 * @throws IOException
+	 *             If the update can't be encoded
+	 */
+	byte[] encodeUpdate(Object update) throws IOException;
+
+	/**
+	 * Decode an update received from the server
+	 *
+	 * @param data
+	 *            The encoded bytes
+	 * @return The GameState or StateDelta that was encoded
+	 * @throws IOException
+	 *             If the bytes are not a valid update
+	 */
+	Object decodeUpdate(byte[] data) throws IOException;
+}
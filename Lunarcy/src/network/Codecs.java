@@ -0,0 +1,88 @@
+package network;
+
+/**
+ * Keeps track of the codecs available, and chooses which one a connection
+ * should use.
+ *
+ * @author denforjohn
+ *
+ */
+public class Codecs {
+
+	// Codecs this side of the connection can use, most preferred first
+	private static final int[] SUPPORTED = { BinaryCodec.ID,
+			SerializationCodec.ID };
+
+	/**
+	 * @return The IDs of every supported codec, most preferred first
+	 */
+	public static int[] supported() {
+		return SUPPORTED.clone();
+	}
+
+	/**
+	 * Choose the first codec offered which is also supported here, falling
+	 * back to Java serialization if there is none
+	 *
+	 * @param offered
+	 *            The codec IDs offered by the other side, most preferred first
+	 * @return The ID of the codec to use
+	 */
+	public static int choose(int[] offered) {
+		if (offered != null) {
+			for (int id : offered) {
+				for (int supported : SUPPORTED) {
+					if (id == supported) {
+						return id;
+					}
+				}
+			}
+		}
+		return SerializationCodec.ID;
+	}
+
+	/**
+	 * Encode a list of codec IDs to be offered to the other side during
+	 * negotiation, each ID is sent as a single byte
+	 *
+	 * @param ids
+	 *            The codec IDs, most preferred first
+	 * @return The encoded offer
+	 */
+	public static byte[] encodeOffer(int[] ids) {
+		byte[] offer = new byte[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			offer[i] = (byte) ids[i];
+		}
+		return offer;
+	}
+
+	/**
+	 * Decode a list of codec IDs offered by the other side
+	 *
+	 * @param offer
+	 *            The encoded offer
+	 * @return The codec IDs, most preferred first
+	 */
+	public static int[] decodeOffer(byte[] offer) {
+		int[] ids = new int[offer.length];
+		for (int i = 0; i < offer.length; i++) {
+			ids[i] = offer[i] & 0xFF;
+		}
+		return ids;
+	}
+
+	/**
+	 * Create the codec with the given ID
+	 *
+	 * @param id
+	 *            ID of the codec
+	 * @return The codec, Java serialization if the ID is unknown
+	 */
+	public static Codec forID(int id) {
+		if (id == BinaryCodec.ID) {
+			return new BinaryCodec();
+		}
+		return new SerializationCodec();
+	}
+}
@@ -0,0 +1,122 @@
+package network;
+
+import game.GameLogic;
+import game.GameState;
+import game.Player;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Shows a client's own moves and turns on its copy of the game as soon as
+ * they are made, using the same rules as the server, rather than a round trip
+ * and a tick later.
+ *
+ * Every input is numbered, and the server records the number of the last one
+ * it applied on the player. Each time the server's state arrives it replaces
+ * whatever was predicted, the inputs it has applied are forgotten, and the
+ * rest are played again on top of it. If the server disagreed with a
+ * prediction, the player is put back where the server says they are.
+ *
+ * Not thread safe, the Client uses it while holding its own lock.
+ *
+ * @author denforjohn
+ *
+ */
+public class InputPrediction {
+	private final int playerID;
+	private int lastSequence;
+
+	// Inputs sent but not yet applied by the server, in the order they were made
+	private final List<PredictedAction> pending = new ArrayList<PredictedAction>();
+
+	// The logic the predictions are applied with, replaced with the state
+	private GameLogic logic;
+
+	// The tick the player last moved on, as the server only moves each
+	// player once a tick
+	private int movedAt = -1;
+
+	/**
+	 * @param playerID
+	 *            The ID of the client's player
+	 * @param state
+	 *            The first state sent by the server
+	 */
+	public InputPrediction(int playerID, GameState state) {
+		this.playerID = playerID;
+		// Carry on from the inputs applied in a saved game
+		Player player = state.getPlayer(playerID);
+		this.lastSequence = player == null ? 0 : player.getLastInput();
+	}
+
+	/**
+	 * @return The number to give the next input
+	 */
+	public int nextSequence() {
+		return ++lastSequence;
+	}
+
+	/**
+	 * Apply an input to the client's copy straight away, and remember it until
+	 * the server has applied it too
+	 *
+	 * @param state
+	 *            The client's copy of the game
+	 * @param action
+	 *            The input, numbered by nextSequence
+	 * @return false if the input shouldn't be sent, as the player has already
+	 *         moved this tick
+	 */
+	public boolean predict(GameState state, PredictedAction action) {
+		boolean move = action instanceof MoveAction;
+		if (move && state.getTickCount() == movedAt) {
+			return false;
+		}
+		if (action.predict(getLogic(state)) && move) {
+			movedAt = state.getTickCount();
+		}
+		pending.add(action);
+		return true;
+	}
+
+	/**
+	 * Replay the inputs the server hasn't applied yet, once its state has
+	 * been applied onto the client's copy
+	 *
+	 * @param state
+	 *            The client's copy of the game
+	 */
+	public void reconcile(GameState state) {
+		Player player = state.getPlayer(playerID);
+		if (player == null) {
+			pending.clear();
+			return;
+		}
+		Iterator<PredictedAction> it = pending.iterator();
+		while (it.hasNext()) {
+			if (it.next().getSequence() <= player.getLastInput()) {
+				it.remove();
+			}
+		}
+		GameLogic logic = getLogic(state);
+		for (PredictedAction action : pending) {
+			action.predict(logic);
+		}
+	}
+
+	/**
+	 * @return How many inputs the server hasn't applied yet
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	private GameLogic getLogic(GameState state) {
+		if (logic == null || logic.getGameState() != state) {
+			logic = new GameLogic(state);
+		}
+		return logic;
+	}
+}
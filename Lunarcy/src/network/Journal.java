@@ -0,0 +1,411 @@
+package network;
+
+import game.GameLogic;
+import game.GameState;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import storage.StateSnapshot;
+
+/**
+ * A write-ahead journal of a game, so it can be recovered if the server
+ * crashes. Every action applied to the game and every tick are appended to
+ * the journal, and every so often a snapshot of the whole GameState is taken.
+ * A game is recovered by loading the latest snapshot and replaying the
+ * journal written since.
+ *
+ * The room only encodes records and snapshots, which are written to disc by
+ * the journal's own thread, so keeping a journal costs the tick very little.
+ * The journal is written straight to the operating system every tick so it
+ * survives the server process crashing, and snapshots are forced to disc
+ * before the journal they replace is deleted.
+ *
+ * A game's journal is kept in its own directory, as snapshot-TICK files
+ * holding the compressed serialized GameState after that tick, and
+ * journal-TICK files holding the records written since that snapshot. Each
+ * record is a type, a length and its data: actions are encoded with the
+ * BinaryCodec, and a tick is its number and which rovers the AIScheduler let
+ * think, since that depends on how long they took.
+ *
+ * @author JTFM
+ *
+ */
+public class Journal {
+	// How many ticks there are between snapshots unless told otherwise
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 600;
+
+	private static final String SNAPSHOT = "snapshot-";
+	private static final String SEGMENT = "journal-";
+
+	private static final byte ACTION = 1;
+	private static final byte TICK = 2;
+
+	private final File directory;
+	private final int snapshotInterval;
+	private final Codec codec = new BinaryCodec();
+
+	// Records for the current tick, handed to the writer when it ends
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private final DataOutputStream records = new DataOutputStream(pending);
+
+	// Only used by the writer thread
+	private final ExecutorService writer;
+	private FileChannel segment;
+	private int snapshotTick = -1;
+
+	private volatile long bytesWritten;
+	private volatile long snapshots;
+	private volatile IOException failure;
+
+	/**
+	 * @param directory
+	 *            Where to keep the journal, created if it doesn't exist
+	 * @param snapshotInterval
+	 *            How many ticks there are between snapshots
+	 * @throws IOException
+	 *             If the directory can't be created
+	 */
+	public Journal(File directory, int snapshotInterval) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create journal " + directory);
+		}
+		this.directory = directory;
+		this.snapshotInterval = Math.max(1, snapshotInterval);
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "journal "
+						+ Journal.this.directory.getName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Records an action which is about to be applied to the game
+	 *
+	 * @throws IOException
+	 *             If the action can't be encoded
+	 */
+	public void logAction(NetworkAction action) throws IOException {
+		byte[] data = codec.encodeAction(action);
+		records.writeByte(ACTION);
+		records.writeInt(data.length);
+		records.write(data);
+	}
+
+	/**
+	 * Records that a tick has finished, and takes a snapshot if one is due
+	 *
+	 * @param logic
+	 *            The game which was ticked
+	 * @throws IOException
+	 *             If writing the journal has failed
+	 */
+	public void logTick(GameLogic logic) throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		records.writeByte(TICK);
+		records.writeInt(12);
+		records.writeInt(logic.getGameState().getTickCount());
+		records.writeInt(logic.getAIScheduler().getLastStart());
+		records.writeInt(logic.getAIScheduler().getLastCount());
+		final byte[] data = pending.toByteArray();
+		pending.reset();
+		writer.execute(new Runnable() {
+			public void run() {
+				try {
+					append(data);
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		});
+
+		if (logic.getGameState().getTickCount() % snapshotInterval == 0) {
+			snapshot(logic.getGameState());
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the game, which must be between ticks. The state is
+	 * serialized straight away and written by the journal's thread.
+	 *
+	 * @throws IOException
+	 *             If the state can't be serialized
+	 */
+	public void snapshot(GameState state) throws IOException {
+		final StateSnapshot snapshot = StateSnapshot.capture(state);
+		writer.execute(new Runnable() {
+			public void run() {
+				try {
+					writeSnapshot(snapshot);
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes everything still queued and closes the journal
+	 */
+	public void close() {
+		if (writer.isShutdown()) {
+			return;
+		}
+		writer.execute(new Runnable() {
+			public void run() {
+				try {
+					if (segment != null) {
+						segment.close();
+					}
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		});
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Closes the journal and deletes it, once the game is over and will never
+	 * need recovering
+	 */
+	public void delete() {
+		close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/**
+	 * @return The number of bytes of records written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return The number of snapshots written
+	 */
+	public long getSnapshotCount() {
+		return snapshots;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/* --------Writing, on the journal's thread-------- */
+
+	private void append(byte[] data) throws IOException {
+		if (segment == null) {
+			// Nothing can be recovered without a snapshot to start from
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		while (buffer.hasRemaining()) {
+			segment.write(buffer);
+		}
+		bytesWritten += data.length;
+	}
+
+	/**
+	 * Writes a snapshot and starts a new journal after it. The snapshot is
+	 * only given its name once it is safely on disc, then everything older
+	 * is deleted.
+	 */
+	private void writeSnapshot(StateSnapshot snapshot) throws IOException {
+		int tick = snapshot.getTick();
+		if (tick == snapshotTick) {
+			return;
+		}
+		File temp = new File(directory, SNAPSHOT + tick + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (DeflaterOutputStream out = new DeflaterOutputStream(
+					compressed)) {
+				snapshot.writeTo(out);
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(compressed.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+
+		if (segment != null) {
+			segment.force(true);
+			segment.close();
+		}
+		segment = FileChannel.open(
+				new File(directory, SEGMENT + tick).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		Files.move(temp.toPath(), new File(directory, SNAPSHOT + tick).toPath(),
+				StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		for (File file : directory.listFiles()) {
+			int fileTick = tickOf(file, SNAPSHOT);
+			if (fileTick < 0) {
+				fileTick = tickOf(file, SEGMENT);
+			}
+			if (fileTick >= 0 && fileTick < tick) {
+				file.delete();
+			}
+		}
+		snapshotTick = tick;
+		snapshots++;
+	}
+
+	/* --------Recovery-------- */
+
+	/**
+	 * Recovers a game from its journal, loading the latest snapshot and
+	 * replaying every complete tick after it
+	 *
+	 * @param directory
+	 *            The directory the journal was kept in
+	 * @return The game as it was after the last tick in the journal
+	 * @throws IOException
+	 *             If there is no snapshot, or it can't be read
+	 */
+	public static GameState recover(File directory) throws IOException {
+		int tick = -1;
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				tick = Math.max(tick, tickOf(file, SNAPSHOT));
+			}
+		}
+		if (tick < 0) {
+			throw new IOException("No snapshot in " + directory);
+		}
+
+		GameState state;
+		try (ObjectInputStream in = new ObjectInputStream(
+				new InflaterInputStream(new BufferedInputStream(
+						new FileInputStream(new File(directory, SNAPSHOT
+								+ tick)))))) {
+			state = (GameState) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Not a snapshot of a game", e);
+		}
+
+		GameLogic logic = new GameLogic(state);
+		File segment = new File(directory, SEGMENT + tick);
+		if (segment.exists()) {
+			replay(logic, new FileInputStream(segment));
+		}
+		return state;
+	}
+
+	/**
+	 * Applies every complete tick in a journal to a game. Actions after the
+	 * last tick, or a record cut off by a crash, are ignored.
+	 */
+	private static void replay(GameLogic logic, InputStream journal)
+			throws IOException {
+		Codec codec = new BinaryCodec();
+		ByteArrayOutputStream tick = new ByteArrayOutputStream();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				journal))) {
+			while (true) {
+				byte type;
+				byte[] data;
+				try {
+					type = in.readByte();
+					int length = in.readInt();
+					if (length < 0 || length > Server.MAX_FRAME_LENGTH) {
+						// Cut off while the length was being written
+						return;
+					}
+					data = new byte[length];
+					in.readFully(data);
+				} catch (EOFException e) {
+					return;
+				}
+
+				if (type == ACTION) {
+					// Kept until the tick they belong to is known to be
+					// complete
+					DataOutputStream out = new DataOutputStream(tick);
+					out.writeInt(data.length);
+					out.write(data);
+				} else if (type == TICK) {
+					DataInputStream record = new DataInputStream(
+							new ByteArrayInputStream(data));
+					int number = record.readInt();
+					DataInputStream actions = new DataInputStream(
+							new ByteArrayInputStream(tick.toByteArray()));
+					while (actions.available() > 0) {
+						byte[] action = new byte[actions.readInt()];
+						actions.readFully(action);
+						codec.decodeAction(action).applyAction(logic);
+					}
+					tick.reset();
+					logic.getAIScheduler().replay(record.readInt(),
+							record.readInt());
+					logic.tickGameState();
+					if (logic.getGameState().getTickCount() != number) {
+						throw new IOException("Journal is out of step at tick "
+								+ number);
+					}
+				} else {
+					throw new IOException("Unknown journal record " + type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The tick in the name of a journal file with the given prefix, or
+	 *         -1 if it isn't one
+	 */
+	private static int tickOf(File file, String prefix) {
+		String name = file.getName();
+		if (!name.startsWith(prefix)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(name.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package network;
+
+import game.GameLogic;
+import game.GameState;
+import game.StateDelta;
+
+import java.io.IOException;
+
+import storage.StateSnapshot;
+
+/**
+ * A client's own copy of a game played in lockstep, ticked with the
+ * LockstepTicks the server sends rather than replaced by its updates.
+ *
+ * The copy which is ticked is kept apart from the one being drawn, so the
+ * renderer never sees a game half way through a tick. After each tick the
+ * changes are copied across as a StateDelta, the same as the server would
+ * have sent.
+ *
+ * @author denforjohn
+ *
+ */
+public class LockstepSimulation {
+	private final GameLogic logic;
+	private final GameState view;
+
+	// Copies each delta, so the view shares nothing with the ticked copy
+	private final Codec copier = new SerializationCodec();
+
+	/**
+	 * @param keyframe
+	 *            The whole game as the server last sent it, which becomes the
+	 *            copy being drawn
+	 * @throws IOException
+	 *             If the game can't be copied
+	 */
+	public LockstepSimulation(GameState keyframe) throws IOException {
+		this.view = keyframe;
+		GameState copy = StateSnapshot.capture(keyframe).restore();
+		copy.resetReplication();
+		this.logic = new GameLogic(copy);
+	}
+
+	/**
+	 * Play the next tick, and update the copy being drawn
+	 *
+	 * @param tick
+	 *            The tick the server played
+	 * @return <tt>true</tt> if the copy still matches the server's, otherwise
+	 *         it can't be used until the whole game is sent again
+	 * @throws IOException
+	 *             If the changes can't be copied
+	 */
+	public boolean apply(LockstepTick tick) throws IOException {
+		GameState state = logic.getGameState();
+		if (tick.getTick() != state.getTickCount() + 1) {
+			return false;
+		}
+		boolean matched = tick.applyTo(logic);
+		view.applyDelta((StateDelta) copier.decodeUpdate(copier
+				.encodeUpdate(state.createDelta())));
+		return matched;
+	}
+
+	/**
+	 * @return The copy of the game to draw
+	 */
+	public GameState getGameState() {
+		return view;
+	}
+}
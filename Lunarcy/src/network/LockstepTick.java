@@ -0,0 +1,106 @@
+package network;
+
+import game.GameLogic;
+import game.GameState;
+
+import java.io.Serializable;
+
+import bots.AIScheduler;
+
+/**
+ * Everything needed to play one tick of a game in lockstep: the actions the
+ * server applied before the tick in the order it applied them, and which
+ * rovers the AIScheduler let think, since that depends on how long they took
+ * on the server. A checksum of the game after the tick lets clients check
+ * their copy still matches the server's.
+ *
+ * @author JTFM
+ *
+ */
+public class LockstepTick implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int tick;
+	private final NetworkAction[] actions;
+	private final int aiStart;
+	private final int aiCount;
+	private final long checksum;
+
+	/**
+	 * @param tick
+	 *            The tick count of the game after the tick
+	 * @param actions
+	 *            The actions applied before the tick, in order
+	 * @param aiStart
+	 *            The first rover the AIScheduler let think
+	 * @param aiCount
+	 *            How many rovers it let think
+	 * @param checksum
+	 *            The checksum of the game after the tick
+	 */
+	public LockstepTick(int tick, NetworkAction[] actions, int aiStart,
+			int aiCount, long checksum) {
+		this.tick = tick;
+		this.actions = actions;
+		this.aiStart = aiStart;
+		this.aiCount = aiCount;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Record the tick the server has just played. The checksum covers the
+	 * squares changed during the tick, so they are forgotten afterwards, as
+	 * the clients' copies forget them after each tick too.
+	 *
+	 * @param logic
+	 *            The server's game, after the tick
+	 * @param actions
+	 *            The actions applied before the tick, in order
+	 * @return The tick to send to clients
+	 */
+	public static LockstepTick record(GameLogic logic, NetworkAction[] actions) {
+		GameState state = logic.getGameState();
+		AIScheduler ai = logic.getAIScheduler();
+		LockstepTick tick = new LockstepTick(state.getTickCount(), actions,
+				ai.getLastStart(), ai.getLastCount(), state.checksum());
+		state.resetReplication();
+		return tick;
+	}
+
+	/**
+	 * Plays the tick on a copy of the game, which must be on the tick before
+	 *
+	 * @param logic
+	 *            The copy of the game
+	 * @return <tt>true</tt> if the copy matches the server's afterwards
+	 */
+	public boolean applyTo(GameLogic logic) {
+		for (NetworkAction action : actions) {
+			action.applyAction(logic);
+		}
+		logic.getAIScheduler().replay(aiStart, aiCount);
+		logic.tickGameState();
+		GameState state = logic.getGameState();
+		return state.getTickCount() == tick && state.checksum() == checksum;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	public NetworkAction[] getActions() {
+		return actions;
+	}
+
+	public int getAIStart() {
+		return aiStart;
+	}
+
+	public int getAICount() {
+		return aiCount;
+	}
+
+	public long getChecksum() {
+		return checksum;
+	}
+}
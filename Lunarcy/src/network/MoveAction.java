@@ -11,12 +11,13 @@ import java.io.Serializable;
  * @author denforjohn
  *
  */
-public class MoveAction implements NetworkAction, Serializable {
+public class MoveAction implements PredictedAction, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
 	int playerID;
 	private Direction direction;
+	private int sequence;
 
 	/**
 	 *
@@ -24,8 +25,19 @@ public class MoveAction implements NetworkAction, Serializable {
 	 * @param direction Desired direction
 	 */
 	public MoveAction(int playerID, Direction direction) {
+		this(playerID, direction, 0);
+	}
+
+	/**
+	 *
+	 * @param playerID ID of the player to move
+	 * @param direction Desired direction
+	 * @param sequence Number of the input, 0 if the client isn't predicting it
+	 */
+	public MoveAction(int playerID, Direction direction, int sequence) {
 		this.playerID = playerID;
 		this.direction = direction;
+		this.sequence = sequence;
 	}
 
 	public int getPlayerID() {
@@ -36,8 +48,19 @@ public class MoveAction implements NetworkAction, Serializable {
 		return direction;
 	}
 
+	@Override
+	public int getSequence() {
+		return sequence;
+	}
+
 	@Override
 	public boolean applyAction(GameLogic logic) {
+		logic.acknowledgeInput(playerID, sequence);
 		return logic.movePlayer(playerID, direction);
 	}
+
+	@Override
+	public boolean predict(GameLogic logic) {
+		return logic.stepPlayer(playerID, direction);
+	}
 }
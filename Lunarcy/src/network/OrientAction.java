@@ -8,20 +8,50 @@ import java.io.Serializable;
  * @author denforjohn
  *
  */
-public class OrientAction implements NetworkAction, Serializable{
+public class OrientAction implements PredictedAction, Serializable{
 
 	private static final long serialVersionUID = 1L;
 
 	int playerID;
 	private boolean turnLeft;
+	private int sequence;
 
 	public OrientAction(int playerID, boolean turnLeft) {
+		this(playerID, turnLeft, 0);
+	}
+
+	/**
+	 * @param playerID ID of the player to turn
+	 * @param turnLeft Whether to turn left rather than right
+	 * @param sequence Number of the input, 0 if the client isn't predicting it
+	 */
+	public OrientAction(int playerID, boolean turnLeft, int sequence) {
 		this.playerID = playerID;
 		this.turnLeft = turnLeft;
+		this.sequence = sequence;
+	}
+
+	public int getPlayerID() {
+		return playerID;
+	}
+
+	public boolean isTurnLeft() {
+		return turnLeft;
+	}
+
+	@Override
+	public int getSequence() {
+		return sequence;
 	}
 
 	@Override
 	public boolean applyAction(GameLogic logic) {
+		logic.acknowledgeInput(playerID, sequence);
+		return predict(logic);
+	}
+
+	@Override
+	public boolean predict(GameLogic logic) {
 		if (turnLeft) {
 			logic.turnPlayerLeft(playerID);
 		} else {
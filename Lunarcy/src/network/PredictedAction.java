@@ -0,0 +1,29 @@
+package network;
+
+import game.GameLogic;
+
+/**
+ * A move or turn which a client shows on its own copy of the game as soon as
+ * it is made, rather than waiting for the server to apply it. Each one is
+ * numbered, so the client can tell from the player the server sends back
+ * which of them it has applied.
+ *
+ * @author denforjohn
+ *
+ */
+public interface PredictedAction extends NetworkAction {
+	/**
+	 * @return The number the client gave this input, inputs are numbered from
+	 *         1 in the order they were made
+	 */
+	int getSequence();
+
+	/**
+	 * Apply the action to the client's copy of the game straight away
+	 *
+	 * @param logic
+	 *            The game logic of the client's copy
+	 * @return true if the action changed the game
+	 */
+	boolean predict(GameLogic logic);
+}
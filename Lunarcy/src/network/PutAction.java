@@ -25,6 +25,10 @@ public class PutAction implements NetworkAction, Serializable {
 		return itemID;
 	}
 
+	public int getContainerID() {
+		return containerID;
+	}
+
 	public boolean applyAction(GameLogic logic){
 		return logic.putItemIntoContainer(playerID, containerID, itemID);
 	}
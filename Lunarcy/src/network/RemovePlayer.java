@@ -15,6 +15,10 @@ public class RemovePlayer implements NetworkAction {
 		this.id = id;
 	}
 
+	public int getPlayerID() {
+		return id;
+	}
+
 	@Override
 	public boolean applyAction(GameLogic logic) {
 		logic.getGameState().removePlayer(id);
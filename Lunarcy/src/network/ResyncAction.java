@@ -0,0 +1,31 @@
+package network;
+
+import game.GameLogic;
+
+/**
+ * A message from a client playing in lockstep whose copy of the game no
+ * longer matches the server's, asking to be sent the whole game again. It is
+ * handled by the client's connection and never reaches the game.
+ *
+ * @author denforjohn
+ *
+ */
+public class ResyncAction implements NetworkAction {
+
+	private static final long serialVersionUID = 1L;
+	int playerID;
+
+	public ResyncAction(int playerID) {
+		this.playerID = playerID;
+	}
+
+	public int getPlayerID() {
+		return playerID;
+	}
+
+	@Override
+	public boolean applyAction(GameLogic logic) {
+		return false;
+	}
+
+}
@@ -0,0 +1,595 @@
+package network;
+
+import game.GameLogic;
+import game.GameState;
+import game.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import storage.StateSnapshot;
+import storage.Storage;
+
+import bots.AIScheduler;
+
+/**
+ * A single game hosted by the server. Each room has its own GameLogic, its own
+ * clients and queue of actions. A room waits until it is full before starting,
+ * and is removed from the server once the game is over or every client has
+ * left.
+ *
+ * Everything which touches the room's game runs through its SerialExecutor,
+ * so the GameLogic is owned by one of the server's workers at a time. Rooms
+ * share nothing with each other, so their ticks run in parallel across the
+ * cores without contending for any lock.
+ *
+ * @author JTFM
+ *
+ */
+public class Room implements Runnable {
+	// A full gamestate is sent this often, otherwise only the changes are sent
+	private static final int KEYFRAME_INTERVAL = 100;
+
+	// The percentage of each tick the rovers may spend thinking
+	private static final int AI_BUDGET_PERCENT = 25;
+
+	private final String name;
+	private final Server server;
+	private final GameLogic gameLogic;
+	private final int maxClients;
+	private final boolean fromSavedGame;
+	private final TickScheduler scheduler;
+	private final SerialExecutor owner;
+	private final TickClock clock;
+
+	// Only used by the room's owner, null if the game isn't being journaled
+	private Journal journal;
+
+	// Copied on write so ticks can send to every client without locking
+	private List<ClientConnection> clientList = new CopyOnWriteArrayList<ClientConnection>();
+	private ConcurrentLinkedQueue<NetworkAction> actionQueue = new ConcurrentLinkedQueue<NetworkAction>();
+	// The actions applied this tick, only kept by rooms playing in lockstep
+	private final List<NetworkAction> tickActions = new ArrayList<NetworkAction>();
+	private int ticksSinceKeyframe = KEYFRAME_INTERVAL;
+	private volatile boolean started = false;
+	// Decided when the game starts, as the journal is
+	private volatile boolean lockstep = false;
+	private volatile boolean finished = false;
+
+	/**
+	 * @param name
+	 *            Name clients can use to join the room
+	 * @param server
+	 *            The server hosting the room
+	 * @param gameState
+	 *            The game to be played in the room
+	 * @param fromSavedGame
+	 *            Whether the game was loaded from a save, in which case
+	 *            clients must rejoin as their existing players
+	 * @param updateFreq
+	 *            Milliseconds between each tick
+	 * @param workers
+	 *            The pool the room's tasks are run on
+	 * @param clock
+	 *            The clock which starts each tick
+	 */
+	Room(String name, Server server, GameState gameState,
+			boolean fromSavedGame, int updateFreq, Executor workers,
+			TickClock clock) {
+		this.name = name;
+		this.server = server;
+		this.gameLogic = new GameLogic(gameState);
+		this.gameLogic.getAIScheduler().setBudget(
+				TimeUnit.MILLISECONDS.toMicros(updateFreq) * AI_BUDGET_PERCENT
+						/ 100);
+		this.maxClients = gameState.getPlayers().length;
+		this.fromSavedGame = fromSavedGame;
+		this.scheduler = new TickScheduler(updateFreq);
+		this.owner = new SerialExecutor(workers);
+		this.clock = clock;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaxClients() {
+		return maxClients;
+	}
+
+	public boolean isFromSavedGame() {
+		return fromSavedGame;
+	}
+
+	/**
+	 * @return <tt>true</tt> if clients are sent each tick's actions to play
+	 *         on their own copy of the game, rather than the changes
+	 */
+	public boolean isLockstep() {
+		return lockstep;
+	}
+
+	/**
+	 * @return The scheduler running the room, which records tick metrics
+	 */
+	public TickScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * @return The scheduler for the rovers' thinking, which records how many
+	 *         decisions were deferred and how much of its budget was used
+	 */
+	public AIScheduler getAIScheduler() {
+		return gameLogic.getAIScheduler();
+	}
+
+	public GameState getGameState() {
+		return gameLogic.getGameState();
+	}
+
+	/**
+	 * @return <tt>true</tt> once every player has joined and the game is
+	 *         being ticked
+	 */
+	public boolean isStarted() {
+		return started;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return The number of clients in the room, including those still
+	 *         negotiating
+	 */
+	public int getClientCount() {
+		return clientList.size();
+	}
+
+	/**
+	 * Saves the gamestate to disc without holding up the game. The room's
+	 * owner copies the game between ticks, and the copy is written by the
+	 * storage thread. Must not be called by the room's owner.
+	 *
+	 * @param filename
+	 *            The file to save to
+	 * @param compress
+	 *            Whether to gzip the save
+	 * @return Whether the game was saved, once it has been written
+	 * @throws IOException
+	 *             If the game couldn't be copied
+	 */
+	public Future<Boolean> saveGamestate(String filename, boolean compress)
+			throws IOException {
+		FutureTask<StateSnapshot> capture = new FutureTask<StateSnapshot>(
+				new Callable<StateSnapshot>() {
+					public StateSnapshot call() throws IOException {
+						return StateSnapshot.capture(gameLogic.getGameState());
+					}
+				});
+		owner.execute(capture);
+		try {
+			return Storage.saveStateInBackground(capture.get(), filename,
+					compress);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying the game", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not copy the game", e.getCause());
+		}
+	}
+
+	/* --------Clients-------- */
+
+	/**
+	 * Add a client to the room if there is space and the game hasn't started,
+	 * reserving them a player ID
+	 *
+	 * @param client
+	 *            The client wanting to join
+	 * @return <tt>true</tt> if the client joined
+	 */
+	synchronized boolean join(ClientConnection client) {
+		if (started || finished || clientList.size() >= maxClients) {
+			return false;
+		}
+		// set -1 if from saved game, it's found from their name instead
+		client.setClientId(fromSavedGame ? -1 : nextPlayerID());
+		clientList.add(client);
+		return true;
+	}
+
+	/**
+	 * @return The lowest player ID not held by a client in the room
+	 */
+	private int nextPlayerID() {
+		for (int id = 0;; id++) {
+			boolean taken = false;
+			for (ClientConnection c : clientList) {
+				if (c.getClientId() == id) {
+					taken = true;
+				}
+			}
+			if (!taken) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Get the id of a given player name from a saved game, nothing changes the
+	 * saved players until the game starts
+	 *
+	 * @param name
+	 *            Username of player
+	 * @return id if found, -1 if not present
+	 */
+	int getPlayerID(String name) {
+		Player[] players = gameLogic.getGameState().getPlayers();
+		for (Player p : players) {
+			if (p != null) {
+				if (p.getName().equals(name))
+					return p.getId();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether a client in the room is already using the given name
+	 *
+	 * @param name
+	 *            Username of player
+	 * @return <tt>true</tt> if the name is taken
+	 */
+	boolean isNameTaken(String name) {
+		for (ClientConnection c : clientList) {
+			if (name.equals(c.getUsername())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Called once a client has finished negotiating, adds their player to the
+	 * game and starts the game if everyone is ready
+	 *
+	 * @param client
+	 *            The client which is ready
+	 */
+	synchronized void clientReady(final ClientConnection client) {
+		if (!fromSavedGame) {
+			owner.execute(new Runnable() {
+				public void run() {
+					gameLogic.getGameState().addPlayer(client.getClientId(),
+							client.getUsername(), client.getColour());
+				}
+			});
+		}
+		if (clientList.size() < maxClients) {
+			return;
+		}
+		for (ClientConnection c : clientList) {
+			if (!c.isRunning()) {
+				return;
+			}
+		}
+		started = true;
+		System.out.println("Room " + name + " starting");
+		owner.execute(new Runnable() {
+			public void run() {
+				lockstep = server.isLockstep();
+				startJournal();
+				try {
+					transmitState(); // transmit initially
+				} catch (IOException e) {
+					finish(false);
+					return;
+				}
+				scheduler.start();
+				scheduleNextTick();
+			}
+		});
+	}
+
+	/**
+	 * Remove a client which has disconnected from the room
+	 *
+	 * @param client
+	 *            The client to remove
+	 */
+	synchronized void removeClient(final ClientConnection client) {
+		if (!clientList.remove(client)) {
+			return;
+		}
+		if (started) {
+			actionQueue.add(new RemovePlayer(client.getClientId()));
+		} else if (client.isRunning() && !fromSavedGame) {
+			// Nothing is ticking yet, so free their player straight away
+			owner.execute(new Runnable() {
+				public void run() {
+					gameLogic.getGameState().removePlayer(client.getClientId());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Queue an action sent by a client to be applied on the next tick
+	 *
+	 * @param action
+	 */
+	void queueAction(NetworkAction action) {
+		actionQueue.add(action);
+	}
+
+	/* --------Ticking-------- */
+
+	// Hands each tick to the room's owner once the clock says it is due
+	private final Runnable tickDue = new Runnable() {
+		public void run() {
+			owner.execute(Room.this);
+		}
+	};
+
+	/**
+	 * Have the clock start the next tick when the tick scheduler says it is
+	 * due
+	 */
+	private void scheduleNextTick() {
+		clock.schedule(tickDue, Math.max(0, scheduler.nanosUntilNextTick()));
+	}
+
+	/**
+	 * Run a single tick of the game, applying the actions which arrived since
+	 * the last tick and sending out the changes. Only ever run by the room's
+	 * owner.
+	 */
+	public void run() {
+		if (finished) {
+			return;
+		}
+		try {
+			scheduler.beginTick();
+			processActions();
+			gameLogic.tickGameState();
+			journalTick();
+			transmitState();
+			scheduler.endTick();
+
+			//winning case
+			if (gameLogic.getWinner() != null || getClientCount() == 0) {
+				finish(true);
+			} else {
+				scheduleNextTick();
+			}
+		} catch (IOException | RuntimeException e) {
+			// The journal is kept, so the game can be recovered from the
+			// tick before whatever went wrong
+			e.printStackTrace();
+			finish(false);
+		}
+	}
+
+	/**
+	 * Apply every client action which arrived since the last tick, in the
+	 * order they were received
+	 */
+	private void processActions() {
+		NetworkAction action;
+		while ((action = actionQueue.poll()) != null) {
+			if (journal != null) {
+				try {
+					journal.logAction(action);
+				} catch (IOException e) {
+					stopJournal(e);
+				}
+			}
+			if (lockstep) {
+				tickActions.add(action);
+			}
+			action.applyAction(gameLogic);
+		}
+	}
+
+	/* --------Journal-------- */
+
+	/**
+	 * Start journaling the game if the server keeps journals, beginning with
+	 * a snapshot of the game as it starts
+	 */
+	private void startJournal() {
+		File directory = server.getJournalDirectory();
+		if (directory == null) {
+			return;
+		}
+		try {
+			journal = new Journal(new File(directory, name + "-"
+					+ System.currentTimeMillis()), server.getSnapshotInterval());
+			journal.snapshot(gameLogic.getGameState());
+			System.out.println("Room " + name + " journaling to "
+					+ journal.getDirectory());
+		} catch (IOException e) {
+			stopJournal(e);
+		}
+	}
+
+	/**
+	 * Record the end of a tick in the journal
+	 */
+	private void journalTick() {
+		if (journal != null) {
+			try {
+				journal.logTick(gameLogic);
+			} catch (IOException e) {
+				stopJournal(e);
+			}
+		}
+	}
+
+	/**
+	 * Carry on without a journal if it can't be written, rather than ending
+	 * the game
+	 */
+	private void stopJournal(IOException e) {
+		System.out.println("Room " + name + " stopped journaling: " + e);
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	/**
+	 * Send out the changes to the gamestate to all clients, periodically
+	 * sending the full gamestate as a keyframe. Each update is encoded once
+	 * per codec in use into a direct buffer, and every client is given its own
+	 * view of that buffer to write from. The writing is done by the server's
+	 * selector thread so a slow client can't hold up the room.
+	 *
+	 * @throws IOException
+	 */
+	private void transmitState() throws IOException {
+		if (lockstep) {
+			transmitTick();
+			return;
+		}
+		GameState state = gameLogic.getGameState();
+		List<ClientConnection> clients = clientList;
+
+		Object delta = null;
+		if (ticksSinceKeyframe >= KEYFRAME_INTERVAL) {
+			state.resetReplication();
+			ticksSinceKeyframe = 0;
+		} else {
+			delta = state.createDelta();
+			ticksSinceKeyframe++;
+		}
+
+		Map<Integer, ByteBuffer> keyframes = new HashMap<Integer, ByteBuffer>();
+		Map<Integer, ByteBuffer> deltas = new HashMap<Integer, ByteBuffer>();
+		for (ClientConnection client : clients) {
+			// Clients which fell behind are resynced with a keyframe
+			if (delta == null || client.needsKeyframe()) {
+				client.queueUpdate(
+						encode(state, client.getCodec(), keyframes), true);
+			} else {
+				client.queueUpdate(encode(delta, client.getCodec(), deltas),
+						false);
+			}
+		}
+		server.requestWrites(clients);
+	}
+
+	/**
+	 * Send out the actions applied this tick to all clients playing in
+	 * lockstep, so they can play the tick on their own copies. Clients which
+	 * don't have a copy yet, fell behind, or found their copy no longer
+	 * matches are sent the whole game instead.
+	 *
+	 * @throws IOException
+	 */
+	private void transmitTick() throws IOException {
+		GameState state = gameLogic.getGameState();
+		List<ClientConnection> clients = clientList;
+
+		LockstepTick tick = LockstepTick.record(gameLogic,
+				tickActions.toArray(new NetworkAction[tickActions.size()]));
+		tickActions.clear();
+
+		StateSnapshot snapshot = null;
+		Map<Integer, ByteBuffer> keyframes = new HashMap<Integer, ByteBuffer>();
+		Map<Integer, ByteBuffer> ticks = new HashMap<Integer, ByteBuffer>();
+		for (ClientConnection client : clients) {
+			if (client.needsKeyframe()) {
+				if (snapshot == null) {
+					snapshot = StateSnapshot.capture(state);
+				}
+				client.queueUpdate(
+						encode(snapshot, client.getCodec(), keyframes), true);
+			} else {
+				client.queueUpdate(encode(tick, client.getCodec(), ticks),
+						false);
+			}
+		}
+		server.requestWrites(clients);
+	}
+
+	/**
+	 * Encode an update with the given codec, unless it has already been
+	 * encoded with that codec this tick
+	 *
+	 * @param update
+	 *            The update to encode
+	 * @param codec
+	 *            The codec to encode with
+	 * @param encoded
+	 *            The update already encoded, mapped from codec ID
+	 * @return A view of the encoded frame for a single client to write from
+	 * @throws IOException
+	 */
+	private ByteBuffer encode(Object update, Codec codec,
+			Map<Integer, ByteBuffer> encoded) throws IOException {
+		ByteBuffer frame = encoded.get(codec.getID());
+		if (frame == null) {
+			frame = Server.frame(codec.encodeUpdate(update), true);
+			encoded.put(codec.getID(), frame);
+		}
+		return frame.duplicate();
+	}
+
+	/**
+	 * End the game, disconnecting every client once they have been sent
+	 * everything queued for them
+	 *
+	 * @param over
+	 *            True if the game was won or every client left, so it will
+	 *            never need recovering and its journal is deleted. Otherwise
+	 *            the journal is closed and kept.
+	 */
+	void finish(final boolean over) {
+		// The room's lock is let go before calling the server, which locks
+		// itself and then rooms when clients join
+		synchronized (this) {
+			if (finished) {
+				return;
+			}
+			finished = true;
+		}
+		System.out.println("Room " + name + " finished, tick metrics: "
+				+ scheduler + ", ai metrics: " + gameLogic.getAIScheduler());
+		owner.execute(new Runnable() {
+			public void run() {
+				if (journal == null) {
+					return;
+				}
+				if (over) {
+					journal.delete();
+				} else {
+					journal.close();
+				}
+				journal = null;
+			}
+		});
+		for (ClientConnection client : clientList) {
+			client.closeWhenFlushed();
+		}
+		server.requestWrites(clientList);
+		server.removeRoom(this);
+	}
+}
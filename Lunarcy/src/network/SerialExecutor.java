@@ -0,0 +1,71 @@
+package network;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on a shared
+ * pool of workers. Tasks are added to a mailbox and whichever worker takes
+ * ownership of the mailbox runs everything in it, so anything only touched by
+ * these tasks is owned by a single thread at a time and needs no locking.
+ *
+ * Many SerialExecutors can share one pool, so independent rooms run in
+ * parallel across the cores while each room's own tasks never overlap.
+ *
+ * @author JTFM
+ *
+ */
+public class SerialExecutor implements Executor {
+	private final Executor pool;
+	private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean owned = new AtomicBoolean(false);
+
+	// Submitted to the pool by whoever takes ownership of the mailbox
+	private final Runnable drain = new Runnable() {
+		public void run() {
+			drainMailbox();
+		}
+	};
+
+	/**
+	 * @param pool
+	 *            The workers to run tasks on
+	 */
+	public SerialExecutor(Executor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Add a task to the mailbox, handing the mailbox to a worker if no worker
+	 * owns it
+	 *
+	 * @param task
+	 *            The task to run
+	 */
+	public void execute(Runnable task) {
+		mailbox.add(task);
+		if (owned.compareAndSet(false, true)) {
+			pool.execute(drain);
+		}
+	}
+
+	/**
+	 * Run every task in the mailbox, then give up ownership. A task added
+	 * just as ownership was given up would otherwise be left waiting, so the
+	 * mailbox is checked again afterwards.
+	 */
+	private void drainMailbox() {
+		do {
+			Runnable task;
+			while ((task = mailbox.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			owned.set(false);
+		} while (!mailbox.isEmpty() && owned.compareAndSet(false, true));
+	}
+}
@@ -0,0 +1,74 @@
+package network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import storage.StateSnapshot;
+
+/**
+ * A codec which uses Java serialization, supports any serializable message so
+ * it is used whenever a client and server can't agree on anything better.
+ *
+ * @author denforjohn
+ *
+ */
+public class SerializationCodec implements Codec {
+	public static final int ID = 1;
+
+	@Override
+	public int getID() {
+		return ID;
+	}
+
+	@Override
+	public byte[] encodeAction(NetworkAction action) throws IOException {
+		return serialize(action);
+	}
+
+	@Override
+	public NetworkAction decodeAction(byte[] data) throws IOException {
+		Object action = deserialize(data);
+		if (!(action instanceof NetworkAction)) {
+			throw new IOException("Not a network action");
+		}
+		return (NetworkAction) action;
+	}
+
+	@Override
+	public byte[] encodeUpdate(Object update) throws IOException {
+		if (update instanceof StateSnapshot) {
+			// Already a serialized GameState
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+					((StateSnapshot) update).size());
+			((StateSnapshot) update).writeTo(bytes);
+			return bytes.toByteArray();
+		}
+		return serialize(update);
+	}
+
+	@Override
+	public Object decodeUpdate(byte[] data) throws IOException {
+		return deserialize(data);
+	}
+
+	private byte[] serialize(Object o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(o);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private Object deserialize(byte[] data) throws IOException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				data));
+		try {
+			return in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+}
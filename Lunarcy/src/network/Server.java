@@ -1,50 +1,84 @@
 package network;
 
-import game.GameLogic;
 import game.GameState;
-import game.Player;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.awt.Color;
-
-
-
-
-//import network.NewServer.ClientConnection;
-import storage.Storage;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class handles communication between all clients and the gameLogic over a
- * network
+ * This class handles communication between all clients and the games being
+ * played over a network. A single server can host many games at once, each in
+ * its own Room. Clients choose a room when they connect. Every room runs on a
+ * shared work stealing pool sized to the number of cores, with each room owned
+ * by one worker at a time so different rooms tick in parallel.
+ *
+ * All of the sockets are non-blocking and are serviced by this thread. Every
+ * message in either direction is a frame, an int length followed by that many
+ * bytes.
  *
  * @author JTFM
  *
  */
 public class Server extends Thread {
 	// Network related fields
-	private ServerSocket serverSocket;
-	private int maxClients;
+	private ServerSocketChannel serverChannel;
+	private Selector selector;
 	private static final int PORT = 58627;
 	private ArrayList<ClientConnection> clientList = new ArrayList<ClientConnection>();
-	private LinkedBlockingQueue<NetworkAction> actionQueue = new LinkedBlockingQueue<NetworkAction>();
-	private GameLogic gameLogic;
+	private volatile boolean running = true;
+
+	// Rooms which are open or playing, mapped from their name
+	private Map<String, Room> rooms = new LinkedHashMap<String, Room>();
+	private int roomsCreated = 0;
+	private ForkJoinPool workers;
+	private TickClock clock;
+
+	// Settings for rooms created when clients ask for one, no more rooms are
+	// made if the server was started from a saved game
+	private int maxClients;
 	private int updateFreq;
-	private boolean running = true;
-	private boolean fromSavedGame = false;
+	private String map;
+
+	// Where rooms keep the journals their games are recovered from, none are
+	// kept if this is null
+	private volatile File journalDirectory;
+	private volatile int snapshotInterval = Journal.DEFAULT_SNAPSHOT_INTERVAL;
+
+	// Whether rooms send each tick's actions rather than the changes they
+	// made, for clients to tick their own copies of the game
+	private volatile boolean lockstep;
+
+	// Clients which have had updates queued by a room, and need the selector
+	// thread to start writing them
+	private ConcurrentLinkedQueue<ClientConnection> writeRequests = new ConcurrentLinkedQueue<ClientConnection>();
+
+	// Largest frame a client may send, anything bigger is not a valid action
+	public static final int MAX_FRAME_LENGTH = 64 * 1024;
 
 	public static int INVALID_USERNAME = -1;
 	public static int USERNAME_TAKEN = -2;
+	public static int ROOM_FULL = -3;
+	public static int ROOM_JOINED = 0;
 
 	/**
 	 * Create a new server with an existing gamestate
 	 *
-	 * @param maxClients
 	 * @param updateFreq
 	 * @param gameState
 	 * @throws IOException
@@ -52,18 +86,51 @@ public class Server extends Thread {
 	public Server(int updateFreq, GameState gameState) throws IOException {
 		this.maxClients = gameState.getPlayers().length;
 		this.updateFreq = updateFreq;
-		gameLogic = new GameLogic(gameState);
-		serverSocket = new ServerSocket(PORT);
-		fromSavedGame = true;
+		openChannel();
+		addRoom(new Room(nextRoomName(), this, gameState, true, updateFreq,
+				workers, clock));
 	}
 
+	/**
+	 * Create a new server which starts new games on the given map, a room is
+	 * opened straight away and more are opened as clients ask for them
+	 *
+	 * @param maxClients
+	 *            Players in each game
+	 * @param updateFreq
+	 *            Milliseconds between each tick
+	 * @param map
+	 *            Map each game is played on
+	 * @throws IOException
+	 */
 	public Server(int maxClients, int updateFreq, String map)
 			throws IOException {
 		this.maxClients = maxClients;
 		this.updateFreq = updateFreq;
-		GameState gameState = new GameState(maxClients, map);
-		gameLogic = new GameLogic(gameState);
-		serverSocket = new ServerSocket(PORT);
+		this.map = map;
+		openChannel();
+		createRoom(nextRoomName());
+	}
+
+	/**
+	 * Bind the listening socket and register it with the selector, and start
+	 * the workers the rooms run on
+	 *
+	 * @throws IOException
+	 *             If the port is already in use
+	 */
+	private void openChannel() throws IOException {
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(PORT));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		// Rooms are independent tasks, so workers take them in FIFO order
+		workers = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		clock = new TickClock();
+		clock.start();
 	}
 
 	/**
@@ -71,10 +138,7 @@ public class Server extends Thread {
 	 */
 	public void stopServer() {
 		running = false;
-		for (ClientConnection client : clientList) {
-			client.stopClient(); // stop every client connection
-			System.out.println("stopped " + client.username);
-		}
+		selector.wakeup();
 		System.out.println("Stopping server");
 		// stop main server
 		while (clientList.size() > 0) {
@@ -95,149 +159,203 @@ public class Server extends Thread {
 		}
 	}
 
+	/* --------Rooms-------- */
+
 	/**
+	 * Open a new room playing a new game on the server's map
 	 *
-	 * @throws IOException
+	 * @param name
+	 *            Name clients can use to join the room
+	 * @return The room, or null if the server has no map to start games on
 	 */
-	public void listenForClients() {
+	synchronized public Room createRoom(String name) {
+		if (map == null || rooms.containsKey(name)) {
+			return null;
+		}
+		Room room = new Room(name, this, new GameState(maxClients, map),
+				false, updateFreq, workers, clock);
+		addRoom(room);
+		return room;
+	}
 
-		System.out.println("Listeneing for clients");
-		// wait for all clients to connect
-		while (clientList.size() < maxClients) {
-			Socket s;
-			try {
-				s = serverSocket.accept();
-			} catch (IOException e) {
-				continue;
-			}
+	synchronized private void addRoom(Room room) {
+		rooms.put(room.getName(), room);
+		System.out.println("Opened room " + room.getName());
+	}
 
-			// set -1 if from saved game
-			int clientID = (fromSavedGame) ? -1 : clientList.size();
-			ClientConnection client;
+	synchronized private String nextRoomName() {
+		String name;
+		do {
+			name = "room-" + (++roomsCreated);
+		} while (rooms.containsKey(name));
+		return name;
+	}
 
-			try {
-				client = new ClientConnection(s, clientID);
-			} catch (IOException e) {
-				try {
-					s.close();
-				} catch (IOException e1) {
+	/**
+	 * Called by a room once its game is over
+	 *
+	 * @param room
+	 */
+	synchronized void removeRoom(Room room) {
+		rooms.remove(room.getName());
+	}
+
+	/**
+	 * @return Every room which is open or playing
+	 */
+	synchronized public List<Room> getRooms() {
+		return new ArrayList<Room>(rooms.values());
+	}
+
+	/**
+	 * Put a client into the room they asked for. If they didn't name a room
+	 * they are put in the first room with space, and if there is no such room
+	 * a new one is opened for them.
+	 *
+	 * @param name
+	 *            The name of the room, or an empty string for any room
+	 * @param client
+	 *            The client joining
+	 * @return The room joined, or null if the room is full or couldn't be
+	 *         created
+	 */
+	synchronized Room joinRoom(String name, ClientConnection client) {
+		if (name.isEmpty()) {
+			for (Room room : rooms.values()) {
+				if (room.join(client)) {
+					return room;
 				}
-				continue;
 			}
-			clientList.add(client);
-			client.start();
+			name = nextRoomName();
 		}
-
+		Room room = rooms.get(name);
+		if (room == null) {
+			room = createRoom(name);
+		}
+		if (room != null && room.join(client)) {
+			return room;
+		}
+		return null;
 	}
 
 	/**
-	 * Run the client processing client actions and sending gamestates
+	 * Saves the gamestate of every game being played to disc, without
+	 * holding up the games. Each is copied before this returns, so the server
+	 * can be stopped straight away. Rooms still waiting for players have no
+	 * game to save.
+	 *
+	 * If only one game is being played it is saved to the file given,
+	 * otherwise each is saved next to it with its room's name added, so
+	 * game.json.gz becomes game-room-1.json.gz and so on.
+	 *
+	 * @param filename
+	 *            The file to save to
+	 * @param compress
+	 *            Whether to gzip the saves
+	 * @return Whether each game was saved, once it has been written, mapped
+	 *         from the name of its room. A game which couldn't be copied is
+	 *         mapped to null.
 	 */
-	public void run() {
-		try {
-			listenForClients();
-			waitForClients(); // wait for all clients to be ready
-			transmitState(); // transmit initially
-			System.out.println("Server running fully");
-
-			long lastUpdate = System.currentTimeMillis();
-
-			// run server
-			while (running && clientList.size() > 0) {
-				if (System.currentTimeMillis() > lastUpdate + updateFreq) {
-					gameLogic.tickGameState();
-
-					//winning case
-					if(gameLogic.getWinner() != null){
-						transmitState();
-						break;
-					}
-					transmitState();
-					lastUpdate = System.currentTimeMillis();
-				} else {
-					processAction();
-				}
+	public Map<String, Future<Boolean>> saveGamestate(String filename,
+			boolean compress) {
+		List<Room> playing = new ArrayList<Room>();
+		for (Room room : getRooms()) {
+			if (room.isStarted() && !room.isFinished()) {
+				playing.add(room);
 			}
-		} catch (IOException e) {
-		} finally {
-			System.out.println("Server shutting down");
-			for (ClientConnection c : clientList)
-				c.stopClient(); // stop all clients
+		}
+		Map<String, Future<Boolean>> saves = new LinkedHashMap<String, Future<Boolean>>();
+		for (Room room : playing) {
+			String file = playing.size() == 1 ? filename : saveFilename(
+					filename, room.getName());
 			try {
-				serverSocket.close();
+				saves.put(room.getName(), room.saveGamestate(file, compress));
 			} catch (IOException e) {
+				e.printStackTrace();
+				saves.put(room.getName(), null);
 			}
-			System.out.println("Closing down server");
-			//System.exit(1);
 		}
+		return saves;
 	}
 
 	/**
-	 * Wait for all clients to be ready
+	 * @return The file name with the room's name added before its extensions
 	 */
-	private void waitForClients() {
-		while (!allClientsReady()) {
-			sleep(50);
-		}
+	private static String saveFilename(String filename, String room) {
+		File file = new File(filename);
+		String name = file.getName();
+		int dot = name.indexOf('.');
+		name = dot < 0 ? name + "-" + room : name.substring(0, dot) + "-"
+				+ room + name.substring(dot);
+		return new File(file.getParentFile(), name).getPath();
 	}
 
 	/**
-	 * Check that all clients in the client list are ready to begin the game
+	 * Have every game started from now on keep a journal, so it can be
+	 * recovered with Journal.recover if the server crashes. Each game's
+	 * journal is kept in its own directory inside the given one, and deleted
+	 * once the game is over.
 	 *
-	 * @return <tt>true</tt> if all clients ready to begin
+	 * @param directory
+	 *            Where to keep the journals, or null to keep none
+	 * @param snapshotInterval
+	 *            How many ticks there are between snapshots of each game
 	 */
-	private boolean allClientsReady() {
-		ArrayList<ClientConnection> clients = getClientConnectionsClone();
-		for (ClientConnection c : clients) {
-			if (!c.isRunning())
-				return false;
-		}
-		return true;
+	public void setJournal(File directory, int snapshotInterval) {
+		this.journalDirectory = directory;
+		this.snapshotInterval = snapshotInterval;
 	}
 
 	/**
-	 * Send out the current gamestate to all clients
-	 *
-	 * @throws IOException
+	 * @return Where rooms keep their journals, or null if they keep none
 	 */
-	private void transmitState() throws IOException {
-		GameState state = gameLogic.getGameState();
-		for (int i = 0; i < clientList.size(); i++) {
-			ClientConnection client = clientList.get(i);
-			client.writeObject(state);
-		}
+	public File getJournalDirectory() {
+		return journalDirectory;
 	}
 
 	/**
-	 * Process the next client action from the queue
+	 * @return How many ticks there are between snapshots of each game
 	 */
-	private void processAction() {
-		NetworkAction action = actionQueue.poll();
-		if (action != null) {
-			action.applyAction(gameLogic);// interpreter.interpret(action);
-		}
+	public int getSnapshotInterval() {
+		return snapshotInterval;
 	}
+
 	/**
-	 * Add a player to the gamestate given a client
+	 * Have every game started from now on played in lockstep. Rather than
+	 * the changes each tick made, clients are sent the actions applied that
+	 * tick and tick their own copy of the game, so how much is sent depends
+	 * on the players' input rather than the size of the world.
 	 *
-	 * @param c ClientConnection holds details for new player
-	 * @return If from saved game, returns player id else returns the clients id
+	 * @param lockstep
+	 *            Whether games should be played in lockstep
 	 */
-	synchronized private int addPlayerToGame(ClientConnection c) {
-		if (fromSavedGame) {
-			return gameLogic.getGameState().getPlayerID(c.username);
-		} else {
-			gameLogic.getGameState().addPlayer(c.clientId, c.username, c.colour);
-			return c.clientId;
-		}
+	public void setLockstep(boolean lockstep) {
+		this.lockstep = lockstep;
 	}
 
-	// methods for working with clientlist
+	/**
+	 * @return Whether rooms started from now on play in lockstep
+	 */
+	public boolean isLockstep() {
+		return lockstep;
+	}
 
-	synchronized private boolean removeClientConnection(ClientConnection cc) {
+	/**
+	 * @return The number of players in each game
+	 */
+	public int getMaxClients() {
+		return maxClients;
+	}
+
+	/* --------Connections-------- */
+
+	synchronized boolean removeClientConnection(ClientConnection cc) {
 		return this.clientList.remove(cc);
 	}
 
+	synchronized private void addClientConnection(ClientConnection cc) {
+		this.clientList.add(cc);
+	}
 
 	@SuppressWarnings("unchecked")
 	synchronized private ArrayList<ClientConnection> getClientConnectionsClone() {
@@ -245,173 +363,119 @@ public class Server extends Thread {
 	}
 
 	/**
-	 * Saves the current gamestate to disc
+	 * Have the selector thread start writing to clients which have had
+	 * updates queued
+	 *
+	 * @param clients
 	 */
-	public void saveGamestate(String filename) {
-		Storage.saveState(gameLogic.getGameState(), filename);
+	void requestWrites(Collection<ClientConnection> clients) {
+		writeRequests.addAll(clients);
+		selector.wakeup();
 	}
 
-	public int getMaxClients() {
-		return maxClients;
+	/**
+	 * Create a frame containing the given bytes, ready to be written
+	 *
+	 * @param payload
+	 *            The bytes to send
+	 * @param direct
+	 *            Whether to use a direct buffer, which saves a copy on every
+	 *            write when the frame is sent to many clients
+	 * @return The frame
+	 */
+	static ByteBuffer frame(byte[] payload, boolean direct) {
+		ByteBuffer frame = direct ? ByteBuffer.allocateDirect(payload.length + 4)
+				: ByteBuffer.allocate(payload.length + 4);
+		frame.putInt(payload.length);
+		frame.put(payload);
+		frame.flip();
+		return frame;
 	}
 
-	private class ClientConnection extends Thread {
-		private Socket socket;
-		private ObjectInputStream inputFromClient;
-		private ObjectOutputStream outputToClient;
-		private int clientId;
-		private String username;
-		private Color colour;
-		private boolean clientRunning = false;
-		/**
-		 * Handles the connection between server and a single client
-		 *
-		 * @param socket The socket which is connected between client and server
-		 * @param clientId
-		 * @throws IOException
-		 */
-		ClientConnection(Socket socket, int clientId) throws IOException {
-			this.socket = socket;
-			this.clientId = clientId;
-			outputToClient = new ObjectOutputStream(socket.getOutputStream());
-			inputFromClient = new ObjectInputStream(socket.getInputStream());
-		}
-		/**
-		 * Whether the server is running or not
-		 * @return <tt>true</tt> is running
-		 */
-		public boolean isRunning() {
-			return clientRunning;
-		}
+	/**
+	 * Service every socket until the server is stopped, accepting new
+	 * clients, reading their frames and writing out any queued updates
+	 */
+	public void run() {
+		System.out.println("Listeneing for clients");
+		try {
+			while (running) {
+				selector.select();
 
+				// Start writing to clients which were sent updates
+				ClientConnection client;
+				while ((client = writeRequests.poll()) != null) {
+					client.enableWrite();
+				}
 
-		/**
-		 * Negotiate the connection with the client
-		 *
-		 * @throws IOException Socket, input/output stream error
-		 * @throws ClassNotFoundException
-		 */
-		private void negotiateConnection() throws IOException, ClassNotFoundException {
-				String name = "";
-				int tempId = -1;
-				do {
-					name = (String) inputFromClient.readObject();
-					// clientId = addPlayerToGamestate(name);
-					if (fromSavedGame) {
-						// retrieve their previous name
-						this.clientId = getClientIdFromGameState(name);
-						if (this.clientId == -1) {
-							sendInt(INVALID_USERNAME);
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						acceptClient();
+						continue;
+					}
+					client = (ClientConnection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							client.read();
 						}
-					} else {
-						// if name already used
-						if ((tempId = getClientIdFromGameState(name)) != -1) {
-							sendInt(USERNAME_TAKEN);
+						if (key.isValid() && key.isWritable()) {
+							client.write();
 						}
+					} catch (IOException e) {
+						client.close();
 					}
-				} while ((fromSavedGame && this.clientId == -1)
-						|| (!fromSavedGame && tempId != -1));
-				sendInt(this.clientId);
-				System.out.println("sent id to client: " + this.clientId);
-				try {
-					this.colour = Color.decode((String) inputFromClient.readObject());
-				} catch (NumberFormatException e) {
-					this.colour = Color.RED;
-				}
-				this.username = name;
-			addPlayerToGame(this);//gameLogic.getGameState().addPlayer(clientId, username, colour);//addPlayerToGame(this);
-			// Begin listening to this client
-			this.clientRunning = true; // ready to be sent to
-		}
-
-		/**
-		 * Get the id of a given player name from the gamestate
-		 *
-		 * @param name
-		 *            Username of player
-		 * @return id if found, -1 if not present
-		 */
-		private int getClientIdFromGameState(String name) {
-			Player[] players = gameLogic.getGameState().getPlayers();
-			for (Player p : players) {
-				if (p != null) {
-					if (p.getName().equals(name))
-						return p.getId();
 				}
 			}
-			return -1;
-		}
-
-		/**
-		 * Send an int to the client
-		 *
-		 * @param val
-		 * @throws IOException
-		 */
-		private void sendInt(int val) throws IOException {
-			outputToClient.reset();
-			outputToClient.writeInt(val); // send client their ID
-			outputToClient.flush();
-		}
-
-		/**
-		 * Listen to client and add any NetworkActions to the action queue to be
-		 * processed
-		 */
-		public void run() {
-			try{
-			negotiateConnection();
-			while (clientRunning) {
-				NetworkAction action = null;
-				try {
-					action = (NetworkAction) inputFromClient.readObject();
-				} catch (IOException | ClassNotFoundException e) {
-					// just catch
-				}
-				if (action != null)
-					actionQueue.add(action);
+		} catch (IOException e) {
+		} finally {
+			System.out.println("Server shutting down");
+			// The games aren't over, so their journals are kept to recover
+			// them from
+			for (Room room : getRooms()) {
+				room.finish(false);
 			}
-			}catch(IOException | ClassNotFoundException e){}
-			stopClient();
-			close(); // when not running, disconnect
-		}
-
-		/**
-		 * Send a message to the client
-		 *
-		 * @throws IOException
-		 */
-		public void writeObject(Object o) {
+			clock.shutdown();
+			// Let the rooms close their journals before stopping the workers
+			workers.shutdown();
 			try {
-				outputToClient.reset();
-				outputToClient.writeObject(o);
-				outputToClient.flush();
-			} catch (IOException e) {
-				stopClient();
-				close();
+				workers.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			workers.shutdownNow();
+			for (ClientConnection c : getClientConnectionsClone()) {
+				c.flush(); // try to send anything still waiting
+				c.close();
 			}
-		}
-
-		/**
-		 * Remove Client from active client list and attempt to close socket
-		 */
-		private void close() {
-			System.out.println("Client " + clientId + "Disconnected");
-			actionQueue.add(new RemovePlayer(this.clientId));
 			try {
-				inputFromClient.close();
-				outputToClient.close();
-				socket.close();
-			} catch (IOException e){}
-			removeClientConnection(this);
+				selector.close();
+				serverChannel.close();
+			} catch (IOException e) {
+			}
+			System.out.println("Closing down server");
 		}
+	}
 
-		/**
-		 * Gracefully close client connection
-		 */
-		private void stopClient() {
-			this.clientRunning = false;
+	/**
+	 * Accept a waiting client, they choose which room to join once connected
+	 */
+	private void acceptClient() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
 		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		ClientConnection client = new ClientConnection(this, channel, key);
+		key.attach(client);
+		addClientConnection(client);
 	}
-
 }
@@ -0,0 +1,207 @@
+package network;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The client's end of a connection to the Server, which knows how to
+ * negotiate the connection and send and receive frames. It has no UI, so it
+ * is shared by the Client and headless clients such as load generators.
+ *
+ * Negotiation goes room, name, colour and then codec, in that order.
+ *
+ * @author denforjohn
+ *
+ */
+public class ServerConnection {
+	public static final int DEFAULT_PORT = 58627;
+
+	private Socket socket;
+	private DataInputStream inputFromServer;
+	private DataOutputStream outputToServer;
+	private Codec codec;
+	private volatile long bytesReceived;
+
+	/**
+	 * Connect to a server on the default port
+	 *
+	 * @param serverAddr
+	 *            String address of the server
+	 * @throws IOException
+	 *             If the server can't be reached
+	 */
+	public ServerConnection(String serverAddr) throws IOException {
+		this(serverAddr, DEFAULT_PORT);
+	}
+
+	/**
+	 * @param serverAddr
+	 *            String address of the server
+	 * @param port
+	 *            Port the server is listening on
+	 * @throws IOException
+	 *             If the server can't be reached
+	 */
+	public ServerConnection(String serverAddr, int port) throws IOException {
+		socket = new Socket(serverAddr, port);
+		socket.setTcpNoDelay(true);
+		outputToServer = new DataOutputStream(new BufferedOutputStream(
+				socket.getOutputStream()));
+		inputFromServer = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+	}
+
+	/**
+	 * Ask to join a room
+	 *
+	 * @param room
+	 *            Name of the room, an empty string joins any room with space
+	 * @return <tt>true</tt> if the room was joined, <tt>false</tt> if it is
+	 *         full
+	 * @throws IOException
+	 */
+	public boolean joinRoom(String room) throws IOException {
+		writeString(room);
+		return readInt() != Server.ROOM_FULL;
+	}
+
+	/**
+	 * Send the player's name
+	 *
+	 * @param name
+	 * @return The player's ID, or Server.INVALID_USERNAME or
+	 *         Server.USERNAME_TAKEN if the name can't be used
+	 * @throws IOException
+	 */
+	public int sendName(String name) throws IOException {
+		writeString(name);
+		return readInt();
+	}
+
+	/**
+	 * Send the player's colour, as a hex string
+	 *
+	 * @param colour
+	 * @throws IOException
+	 */
+	public void sendColour(Color colour) throws IOException {
+		writeString(String.format("#%02x%02x%02x", colour.getRed(),
+				colour.getGreen(), colour.getBlue()));
+	}
+
+	/**
+	 * Offer the codecs we support, the server chooses which one to use
+	 *
+	 * @return The codec chosen
+	 * @throws IOException
+	 */
+	public Codec negotiateCodec() throws IOException {
+		writeFrame(Codecs.encodeOffer(Codecs.supported()));
+		codec = Codecs.forID(readInt());
+		return codec;
+	}
+
+	/**
+	 * Read an update from the server. Updates are encoded once on the server
+	 * and sent as a length followed by the encoded bytes.
+	 *
+	 * @return The update that was sent, a GameState or StateDelta
+	 * @throws IOException
+	 */
+	public Object readUpdate() throws IOException {
+		return codec.decodeUpdate(readFrame());
+	}
+
+	/**
+	 * Send an action to the server
+	 *
+	 * @param action
+	 *            Action to be applied to the master game logic
+	 * @throws IOException
+	 */
+	public void sendAction(NetworkAction action) throws IOException {
+		writeFrame(codec.encodeAction(action));
+	}
+
+	/**
+	 * @return The number of bytes read from the server, including framing
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * Close the connection
+	 */
+	public void close() {
+		try {
+			inputFromServer.close();
+			outputToServer.close();
+			socket.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Read an integer from the server
+	 *
+	 * @return value from server
+	 * @throws IOException Faied to read value
+	 */
+	private int readInt() throws IOException {
+		byte[] frame = readFrame();
+		if (frame.length != 4) {
+			throw new IOException("Expected an int from the server");
+		}
+		return ByteBuffer.wrap(frame).getInt();
+	}
+
+	/**
+	 * Read the next frame from the server, every message is sent as a length
+	 * followed by that many bytes
+	 *
+	 * @return The bytes of the frame
+	 * @throws IOException
+	 */
+	private byte[] readFrame() throws IOException {
+		int length = inputFromServer.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		byte[] frame = new byte[length];
+		inputFromServer.readFully(frame);
+		bytesReceived += length + 4;
+		return frame;
+	}
+
+	/**
+	 * Send a string to the server as a single frame
+	 *
+	 * @param s
+	 * @throws IOException
+	 */
+	private void writeString(String s) throws IOException {
+		writeFrame(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Send a frame to the server, a length followed by the bytes
+	 *
+	 * @param frame
+	 * @throws IOException
+	 */
+	private void writeFrame(byte[] frame) throws IOException {
+		synchronized (outputToServer) {
+			outputToServer.writeInt(frame.length);
+			outputToServer.write(frame);
+			outputToServer.flush();
+		}
+	}
+}
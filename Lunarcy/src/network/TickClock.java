@@ -0,0 +1,99 @@
+package network;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single thread which runs tasks once they are due, used to start each
+ * room's ticks. The queue of waiting tasks is only ever touched by the clock's
+ * own thread, new tasks are handed over through a lock free queue, so rooms
+ * scheduling their next tick never contend with each other.
+ *
+ * Tasks should be short, normally just handing the real work to a room's
+ * SerialExecutor.
+ *
+ * @author JTFM
+ *
+ */
+public class TickClock extends Thread {
+	private final ConcurrentLinkedQueue<Timer> incoming = new ConcurrentLinkedQueue<Timer>();
+	private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+	private volatile boolean running = true;
+	private long sequence = 0;
+
+	public TickClock() {
+		super("tick-clock");
+		setDaemon(true);
+	}
+
+	/**
+	 * Run a task after the given delay
+	 *
+	 * @param task
+	 *            The task to run, on the clock's thread
+	 * @param delayNanos
+	 *            How long to wait before running it
+	 */
+	public void schedule(Runnable task, long delayNanos) {
+		incoming.add(new Timer(task, System.nanoTime() + delayNanos));
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Stop the clock, any tasks still waiting are dropped
+	 */
+	public void shutdown() {
+		running = false;
+		LockSupport.unpark(this);
+	}
+
+	public void run() {
+		while (running) {
+			Timer timer;
+			while ((timer = incoming.poll()) != null) {
+				timer.sequence = sequence++;
+				timers.add(timer);
+			}
+
+			long now = System.nanoTime();
+			while (!timers.isEmpty() && timers.peek().deadline - now <= 0) {
+				try {
+					timers.poll().task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+
+			if (timers.isEmpty()) {
+				LockSupport.park(this);
+			} else {
+				LockSupport.parkNanos(this, timers.peek().deadline
+						- System.nanoTime());
+			}
+		}
+	}
+
+	/**
+	 * A task waiting to be run, ordered by when it is due and then by when it
+	 * was scheduled
+	 */
+	private static class Timer implements Comparable<Timer> {
+		private final Runnable task;
+		private final long deadline;
+		private long sequence;
+
+		Timer(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		public int compareTo(Timer other) {
+			long diff = deadline - other.deadline;
+			if (diff != 0) {
+				return diff < 0 ? -1 : 1;
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the server ticking at a fixed rate. Tick deadlines are laid out on a
+ * fixed grid measured with System.nanoTime, so time spent running a tick or
+ * waking up late doesn't push every later tick back. If a tick runs past one
+ * or more deadlines those ticks are skipped rather than run back to back, and
+ * counted as overruns.
+ *
+ * The time each tick took, how late ticks started (jitter) and the number of
+ * overruns are recorded so the server's performance can be monitored.
+ *
+ * @author JTFM
+ *
+ */
+public class TickScheduler {
+	private final long period;
+
+	// When the next tick is due, in nanoTime
+	private long nextTick;
+	private long tickStart;
+
+	private volatile long ticks;
+	private volatile long overruns;
+	private volatile long lastTickDuration;
+	private volatile long maxTickDuration;
+	private volatile long totalTickDuration;
+	private volatile long lastJitter;
+	private volatile long maxJitter;
+	private volatile long totalJitter;
+
+	/**
+	 * @param periodMillis
+	 *            Time between the start of each tick in milliseconds
+	 */
+	public TickScheduler(int periodMillis) {
+		this.period = TimeUnit.MILLISECONDS.toNanos(Math.max(1, periodMillis));
+	}
+
+	/**
+	 * Start the schedule, the first tick is due one period from now
+	 */
+	public void start() {
+		nextTick = System.nanoTime() + period;
+	}
+
+	/**
+	 * Block until the next tick is due, without using any CPU while waiting
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitNextTick() throws InterruptedException {
+		long wait;
+		while ((wait = nanosUntilNextTick()) > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+		beginTick();
+	}
+
+	/**
+	 * @return How long until the next tick is due in nanoseconds, for callers
+	 *         which wait for the tick themselves
+	 */
+	public long nanosUntilNextTick() {
+		return nextTick - System.nanoTime();
+	}
+
+	/**
+	 * Record that a tick has started, awaitNextTick does this after waiting
+	 */
+	public void beginTick() {
+		tickStart = System.nanoTime();
+		lastJitter = tickStart - nextTick;
+		maxJitter = Math.max(maxJitter, lastJitter);
+		totalJitter += lastJitter;
+	}
+
+	/**
+	 * Record that the current tick has finished, and work out when the next
+	 * one is due
+	 */
+	public void endTick() {
+		long now = System.nanoTime();
+		lastTickDuration = now - tickStart;
+		maxTickDuration = Math.max(maxTickDuration, lastTickDuration);
+		totalTickDuration += lastTickDuration;
+		ticks++;
+
+		nextTick += period;
+		if (nextTick <= now) {
+			// Skip the ticks we missed, staying on the same grid
+			long missed = (now - nextTick) / period + 1;
+			nextTick += missed * period;
+			overruns += missed;
+		}
+	}
+
+	/**
+	 * @return The number of ticks which have been run
+	 */
+	public long getTickCount() {
+		return ticks;
+	}
+
+	/**
+	 * @return The number of ticks which were skipped because an earlier tick
+	 *         ran too long
+	 */
+	public long getOverrunCount() {
+		return overruns;
+	}
+
+	/**
+	 * @return How long the last tick took, in nanoseconds
+	 */
+	public long getLastTickDuration() {
+		return lastTickDuration;
+	}
+
+	/**
+	 * @return The longest any tick has taken, in nanoseconds
+	 */
+	public long getMaxTickDuration() {
+		return maxTickDuration;
+	}
+
+	/**
+	 * @return The average time a tick takes, in nanoseconds
+	 */
+	public long getAverageTickDuration() {
+		long count = ticks;
+		return count == 0 ? 0 : totalTickDuration / count;
+	}
+
+	/**
+	 * @return How late the last tick started, in nanoseconds
+	 */
+	public long getLastJitter() {
+		return lastJitter;
+	}
+
+	/**
+	 * @return The latest any tick has started, in nanoseconds
+	 */
+	public long getMaxJitter() {
+		return maxJitter;
+	}
+
+	/**
+	 * @return How late ticks start on average, in nanoseconds
+	 */
+	public long getAverageJitter() {
+		long count = ticks;
+		return count == 0 ? 0 : totalJitter / count;
+	}
+
+	/**
+	 * @return A summary of the tick metrics in milliseconds, for logging
+	 */
+	public String toString() {
+		return String.format(
+				"ticks %d, overruns %d, tick avg %.3fms max %.3fms, jitter avg %.3fms max %.3fms",
+				ticks, overruns, getAverageTickDuration() / 1e6,
+				maxTickDuration / 1e6, getAverageJitter() / 1e6,
+				maxJitter / 1e6);
+	}
+}
@@ -0,0 +1,409 @@
+package storage;
+
+import game.BlankSquare;
+import game.Direction;
+import game.Door;
+import game.EmptyWall;
+import game.Furniture;
+import game.Item;
+import game.Location;
+import game.LockedDoor;
+import game.SolidWall;
+import game.Square;
+import game.WalkableSquare;
+import game.Wall;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mapbuilder.GameMap;
+
+/**
+ * A compact binary version of the GameMap saved by Storage.saveGameMap, which
+ * is loaded by memory mapping the file and building the board straight from
+ * it.
+ *
+ * The file is laid out as
+ *
+ * header: magic, version, width, height, entity count
+ *
+ * wall palette: the kinds of wall used, with the key code of locked doors
+ *
+ * object palette: each distinct piece of furniture, item, or square which
+ * doesn't fit in a record, as the JSON Storage saves it in
+ *
+ * squares: a fixed size record for each square, row by row, holding its kind,
+ * whether it is inside, its walls packed four bits to a side as indexes into
+ * the wall palette, and the furniture on each side as indexes into the object
+ * palette
+ *
+ * item table: the items lying on the squares
+ *
+ * tier table: the items to be distributed, and their tiers
+ *
+ * spawn table: where players and rovers spawn
+ *
+ * Squares of any other kind, or with walls which aren't in the palette, are
+ * saved whole in the object palette, so every map can be converted.
+ *
+ * @author Ben
+ *
+ */
+final class BinaryMap {
+	static final int MAGIC = 0x4C4D4150; // "LMAP"
+	static final int VERSION = 1;
+
+	private static final int RECORD_SIZE = 12;
+	private static final int DIRECTIONS = 4;
+	private static final int MAX_WALLS = 15;
+
+	// Square kinds
+	private static final byte BLANK = 0;
+	private static final byte WALKABLE = 1;
+	private static final byte OBJECT = 2;
+
+	private static final byte INSIDE = 1;
+
+	// Wall kinds
+	private static final byte EMPTY_WALL = 0;
+	private static final byte SOLID_WALL = 1;
+	private static final byte DOOR = 2;
+	private static final byte LOCKED_DOOR = 3;
+
+	private BinaryMap() {
+	}
+
+	/* --------Writing-------- */
+
+	static void write(GameMap map, File file) throws IOException {
+		Square[][] squares = map.getSquares();
+		int height = squares.length;
+		int width = height == 0 ? 0 : squares[0].length;
+
+		// Every palette is built before anything is written
+		List<Long> walls = new ArrayList<Long>();
+		Map<String, Integer> objects = new LinkedHashMap<String, Integer>();
+		ByteBuffer records = ByteBuffer.allocate(width * height * RECORD_SIZE);
+		List<int[]> items = new ArrayList<int[]>();
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Square square = squares[y][x];
+				int start = records.position();
+				if (!writeRecord(square, walls, objects, records)) {
+					records.position(start);
+					records.put(OBJECT).put((byte) 0).putShort((short) 0);
+					records.putShort((short) (paletteIndex(objects, square,
+							Square.class) + 1));
+					records.putShort((short) 0).putShort((short) 0)
+							.putShort((short) 0);
+				} else if (square instanceof WalkableSquare) {
+					for (Direction side : Direction.values()) {
+						for (Item item : square.getItems(side)) {
+							items.add(new int[] { y * width + x,
+									side.ordinal(),
+									paletteIndex(objects, item, Item.class) });
+						}
+					}
+				}
+			}
+		}
+
+		List<int[]> tiers = new ArrayList<int[]>();
+		if (map.getTierDictionary() != null) {
+			for (Map.Entry<Item, Integer> tier : map.getTierDictionary()
+					.entrySet()) {
+				tiers.add(new int[] {
+						paletteIndex(objects, tier.getKey(), Item.class),
+						tier.getValue() });
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file, false)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(width);
+			out.writeShort(height);
+			out.writeInt(map.getEntityCount());
+
+			out.writeByte(walls.size());
+			for (long wall : walls) {
+				out.writeByte((int) (wall >> 32));
+				out.writeInt((int) wall);
+			}
+
+			out.writeInt(objects.size());
+			for (String json : objects.keySet()) {
+				byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+			out.write(records.array());
+
+			out.writeInt(items.size());
+			for (int[] item : items) {
+				out.writeInt(item[0]);
+				out.writeByte(item[1]);
+				out.writeInt(item[2]);
+			}
+
+			out.writeInt(tiers.size());
+			for (int[] tier : tiers) {
+				out.writeInt(tier[0]);
+				out.writeInt(tier[1]);
+			}
+
+			writeSpawns(out, map.getPlayerSpawnPoints());
+			writeSpawns(out, map.getRoverSpawnPoints());
+		}
+	}
+
+	/**
+	 * Writes the record for a square which can be described by one
+	 *
+	 * @return False if the square must be saved whole instead
+	 */
+	private static boolean writeRecord(Square square, List<Long> walls,
+			Map<String, Integer> objects, ByteBuffer records) {
+		byte kind;
+		byte flags = 0;
+		if (square == null) {
+			return false;
+		} else if (square.getClass() == BlankSquare.class) {
+			kind = BLANK;
+		} else if (square.getClass() == WalkableSquare.class) {
+			WalkableSquare walkable = (WalkableSquare) square;
+			if (!walkable.getPlayers().isEmpty()) {
+				return false;
+			}
+			kind = WALKABLE;
+			flags = walkable.isInside() ? INSIDE : 0;
+		} else {
+			return false;
+		}
+
+		int packed = 0;
+		for (Direction side : Direction.values()) {
+			Wall wall = square.getWalls().get(side);
+			if (wall == null) {
+				// The walls of a walkable square are never missing once built
+				if (kind == WALKABLE) {
+					return false;
+				}
+				continue;
+			}
+			long entry;
+			if (wall.getClass() == EmptyWall.class) {
+				entry = (long) EMPTY_WALL << 32;
+			} else if (wall.getClass() == SolidWall.class) {
+				entry = (long) SOLID_WALL << 32;
+			} else if (wall.getClass() == Door.class) {
+				entry = (long) DOOR << 32;
+			} else if (wall.getClass() == LockedDoor.class) {
+				entry = (long) LOCKED_DOOR << 32
+						| (((LockedDoor) wall).getKeyCode() & 0xFFFFFFFFL);
+			} else {
+				return false;
+			}
+			int index = walls.indexOf(entry);
+			if (index < 0) {
+				if (walls.size() == MAX_WALLS) {
+					return false;
+				}
+				index = walls.size();
+				walls.add(entry);
+			}
+			packed |= (index + 1) << (side.ordinal() * 4);
+		}
+
+		records.put(kind).put(flags).putShort((short) packed);
+		for (Direction side : Direction.values()) {
+			Furniture furniture = kind == WALKABLE ? square.getFurniture(side)
+					: null;
+			records.putShort((short) (furniture == null ? 0 : paletteIndex(
+					objects, furniture, Furniture.class) + 1));
+		}
+		return true;
+	}
+
+	/**
+	 * @return The index of the object in the object palette, adding it if no
+	 *         equal object has been added yet
+	 */
+	private static int paletteIndex(Map<String, Integer> objects,
+			Object object, Class<?> type) {
+		String json = Storage.GSON.toJson(object, type);
+		Integer index = objects.get(json);
+		if (index == null) {
+			index = objects.size();
+			if (index > Short.MAX_VALUE - 1) {
+				throw new IllegalArgumentException(
+						"Too many different objects for a binary map");
+			}
+			objects.put(json, index);
+		}
+		return index;
+	}
+
+	private static void writeSpawns(DataOutputStream out,
+			List<Location> spawns) throws IOException {
+		if (spawns == null) {
+			out.writeShort(-1);
+			return;
+		}
+		out.writeShort(spawns.size());
+		for (Location spawn : spawns) {
+			out.writeShort(spawn.getX());
+			out.writeShort(spawn.getY());
+		}
+	}
+
+	/* --------Reading-------- */
+
+	static GameMap read(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not a binary map");
+		}
+		int version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException(file + " is binary map version " + version
+					+ ", expected " + VERSION);
+		}
+		int width = buffer.getShort();
+		int height = buffer.getShort();
+		GameMap map = new GameMap();
+		map.setEntityCount(buffer.getInt());
+
+		int[] wallKinds = new int[buffer.get()];
+		int[] keyCodes = new int[wallKinds.length];
+		for (int i = 0; i < wallKinds.length; i++) {
+			wallKinds[i] = buffer.get();
+			keyCodes[i] = buffer.getInt();
+		}
+
+		String[] objects = new String[buffer.getInt()];
+		for (int i = 0; i < objects.length; i++) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			objects[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		Square[][] squares = new Square[height][width];
+		Wall[] sides = new Wall[DIRECTIONS];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				byte kind = buffer.get();
+				byte flags = buffer.get();
+				int packed = buffer.getShort() & 0xFFFF;
+				if (kind == OBJECT) {
+					squares[y][x] = Storage.GSON.fromJson(
+							objects[buffer.getShort() - 1], Square.class);
+					buffer.position(buffer.position() + 6);
+					continue;
+				}
+
+				for (int side = 0; side < DIRECTIONS; side++) {
+					int wall = packed >> (side * 4) & 0xF;
+					sides[side] = wall == 0 ? null : createWall(
+							wallKinds[wall - 1], keyCodes[wall - 1]);
+				}
+
+				if (kind == WALKABLE) {
+					WalkableSquare square = new WalkableSquare(
+							(flags & INSIDE) != 0, sides[0], sides[1],
+							sides[2], sides[3]);
+					for (Direction side : Direction.values()) {
+						int furniture = buffer.getShort();
+						if (furniture != 0) {
+							square.setFurniture(side, Storage.GSON.fromJson(
+									objects[furniture - 1], Furniture.class));
+						}
+					}
+					squares[y][x] = square;
+				} else {
+					Square square = new BlankSquare();
+					for (Direction side : Direction.values()) {
+						if (sides[side.ordinal()] != null) {
+							square.getWalls().put(side, sides[side.ordinal()]);
+						}
+					}
+					buffer.position(buffer.position() + 8);
+					squares[y][x] = square;
+				}
+			}
+		}
+		map.setSquares(squares);
+
+		int itemCount = buffer.getInt();
+		for (int i = 0; i < itemCount; i++) {
+			int cell = buffer.getInt();
+			Direction side = Direction.values()[buffer.get()];
+			Item item = Storage.GSON.fromJson(objects[buffer.getInt()],
+					Item.class);
+			((WalkableSquare) squares[cell / width][cell % width]).addItem(
+					side, item);
+		}
+
+		Map<Item, Integer> tiers = new HashMap<Item, Integer>();
+		int tierCount = buffer.getInt();
+		for (int i = 0; i < tierCount; i++) {
+			Item item = Storage.GSON.fromJson(objects[buffer.getInt()],
+					Item.class);
+			tiers.put(item, buffer.getInt());
+		}
+		map.setTierDictionary(tiers);
+
+		map.setPlayerSpawnPoints(readSpawns(buffer));
+		map.setRoverSpawnPoints(readSpawns(buffer));
+		return map;
+	}
+
+	private static Wall createWall(int kind, int keyCode) throws IOException {
+		switch (kind) {
+		case EMPTY_WALL:
+			return new EmptyWall();
+		case SOLID_WALL:
+			return new SolidWall();
+		case DOOR:
+			return new Door();
+		case LOCKED_DOOR:
+			return new LockedDoor(keyCode);
+		default:
+			throw new IOException("Unknown wall kind " + kind);
+		}
+	}
+
+	private static List<Location> readSpawns(ByteBuffer buffer) {
+		int count = buffer.getShort();
+		if (count < 0) {
+			return null;
+		}
+		List<Location> spawns = new ArrayList<Location>(count);
+		for (int i = 0; i < count; i++) {
+			spawns.add(new Location(buffer.getShort(), buffer.getShort()));
+		}
+		return spawns;
+	}
+}
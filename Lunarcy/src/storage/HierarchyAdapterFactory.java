@@ -0,0 +1,176 @@
+package storage;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Saves interfaces and abstract classes such as Square and Wall along with the
+ * name of their concrete class, so they can be loaded again, in the form
+ *
+ * {"type": "WalkableSquare", "properties": {...}}
+ *
+ * Values are read and written straight from the stream, without building a
+ * tree of JsonElements for each one. The classes for each name are resolved
+ * once, either up front when the hierarchy is registered or the first time
+ * they are seen, and their adapters are kept, so a Gson using this factory
+ * can be created once and shared between threads.
+ *
+ * @author Ben
+ *
+ */
+public class HierarchyAdapterFactory implements TypeAdapterFactory {
+	private final Map<Class<?>, Hierarchy> hierarchies = new HashMap<Class<?>, Hierarchy>();
+
+	/**
+	 * Saves a type along with the name of its concrete class. Must be called
+	 * before the factory is used.
+	 *
+	 * @param base
+	 *            The declared type of the fields to save this way
+	 * @param thepackage
+	 *            The package to look for classes which haven't been
+	 *            registered in, e.g. "game."
+	 * @param known
+	 *            Classes to resolve up front
+	 */
+	public void register(Class<?> base, String thepackage, Class<?>... known) {
+		Hierarchy hierarchy = new Hierarchy(base, thepackage);
+		for (Class<?> type : known) {
+			hierarchy.types.put(type.getSimpleName(), type);
+		}
+		hierarchies.put(base, hierarchy);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Hierarchy hierarchy = hierarchies.get(type.getRawType());
+		if (hierarchy == null) {
+			return null;
+		}
+		return (TypeAdapter<T>) new HierarchyAdapter(gson, hierarchy);
+	}
+
+	/**
+	 * The classes which may be saved in place of a type, by name
+	 */
+	private static class Hierarchy {
+		private final Class<?> base;
+		private final String thepackage;
+		private final Map<String, Class<?>> types = new ConcurrentHashMap<String, Class<?>>();
+
+		public Hierarchy(Class<?> base, String thepackage) {
+			this.base = base;
+			this.thepackage = thepackage;
+		}
+
+		public Class<?> resolve(String type) {
+			Class<?> resolved = types.get(type);
+			if (resolved == null) {
+				try {
+					resolved = Class.forName(thepackage + type);
+				} catch (ClassNotFoundException cnfe) {
+					throw new JsonParseException("Unknown element type: "
+							+ type, cnfe);
+				}
+				if (!base.isAssignableFrom(resolved)) {
+					throw new JsonParseException("Unknown element type: "
+							+ type);
+				}
+				types.put(type, resolved);
+			}
+			return resolved;
+		}
+	}
+
+	private class HierarchyAdapter extends TypeAdapter<Object> {
+		private final Gson gson;
+		private final Hierarchy hierarchy;
+
+		// The adapter for the properties of each concrete class
+		private final Map<Class<?>, TypeAdapter<Object>> delegates = new ConcurrentHashMap<Class<?>, TypeAdapter<Object>>();
+
+		public HierarchyAdapter(Gson gson, Hierarchy hierarchy) {
+			this.gson = gson;
+			this.hierarchy = hierarchy;
+		}
+
+		@Override
+		public void write(JsonWriter out, Object value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("type").value(value.getClass().getSimpleName());
+			out.name("properties");
+			getDelegate(value.getClass()).write(out, value);
+			out.endObject();
+		}
+
+		@Override
+		public Object read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			String type = null;
+			Object value = null;
+			// Only kept if the properties come before the type
+			JsonElement properties = null;
+
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("type")) {
+					type = in.nextString();
+					if (properties != null) {
+						value = getDelegate(hierarchy.resolve(type))
+								.fromJsonTree(properties);
+					}
+				} else if (name.equals("properties")) {
+					if (type != null) {
+						value = getDelegate(hierarchy.resolve(type)).read(in);
+					} else {
+						properties = gson.getAdapter(JsonElement.class)
+								.read(in);
+					}
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+
+			if (type == null) {
+				throw new JsonParseException("Missing element type for "
+						+ hierarchy.base.getSimpleName());
+			}
+			return value;
+		}
+
+		@SuppressWarnings("unchecked")
+		private TypeAdapter<Object> getDelegate(Class<?> type) {
+			TypeAdapter<Object> delegate = delegates.get(type);
+			if (delegate == null) {
+				// Skips this factory, so the class's own fields are saved
+				delegate = (TypeAdapter<Object>) gson.getDelegateAdapter(
+						HierarchyAdapterFactory.this, TypeToken.get(type));
+				delegates.put(type, delegate);
+			}
+			return delegate;
+		}
+	}
+}
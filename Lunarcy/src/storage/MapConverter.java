@@ -0,0 +1,51 @@
+package storage;
+
+import java.io.File;
+
+import mapbuilder.GameMap;
+
+/**
+ * Converts maps saved as JSON by the MapBuilder into the binary map format,
+ * which the server loads much faster.
+ *
+ * Usage: MapConverter map.json [map.lmap]
+ *
+ * The binary map is saved next to the JSON map with the binary map extension
+ * if no other file is given.
+ *
+ * @author Ben
+ *
+ */
+public class MapConverter {
+
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: MapConverter map.json [map"
+					+ Storage.BINARY_MAP_EXTENSION + "]");
+			System.exit(1);
+		}
+		File input = new File(args[0]);
+		File output;
+		if (args.length == 2) {
+			output = new File(args[1]);
+		} else {
+			String name = input.getPath();
+			if (name.endsWith(".json")) {
+				name = name.substring(0, name.length() - ".json".length());
+			}
+			output = new File(name + Storage.BINARY_MAP_EXTENSION);
+		}
+
+		GameMap map = Storage.loadGameMap(input);
+		if (map == null) {
+			System.out.println("Could not load " + input);
+			System.exit(1);
+		}
+		if (!Storage.saveBinaryMap(map, output)) {
+			System.out.println("Could not convert " + input + " to " + output);
+			System.exit(1);
+		}
+		System.out.println("Converted " + input + " (" + input.length()
+				+ " bytes) to " + output + " (" + output.length() + " bytes)");
+	}
+}
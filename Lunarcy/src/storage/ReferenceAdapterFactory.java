@@ -0,0 +1,192 @@
+package storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Saves objects which are referenced from several places, such as a Player
+ * who is in both the GameState's players and the square they stand on, only
+ * once. Within each saved scope, such as a GameState, the first time an object
+ * is saved it is given a number, in the form
+ *
+ * {"@id": 0, "value": {...}}
+ *
+ * and every other time it is saved as a reference to that number, in the form
+ *
+ * {"@ref": 0}
+ *
+ * so loading it gives back one object referenced from every place, rather
+ * than a copy for each. Objects saved before references were used, without an
+ * id, are still loaded, as copies.
+ *
+ * @author Ben
+ *
+ */
+public class ReferenceAdapterFactory implements TypeAdapterFactory {
+	private final Class<?> scope;
+	private final Set<Class<?>> shared;
+
+	// The references of the scope being saved or loaded on each thread
+	private final ThreadLocal<References> references = new ThreadLocal<References>();
+
+	/**
+	 * @param scope
+	 *            The type of the values references are numbered within
+	 * @param shared
+	 *            The types which are saved once per scope
+	 */
+	public ReferenceAdapterFactory(Class<?> scope, Class<?>... shared) {
+		this.scope = scope;
+		this.shared = new HashSet<Class<?>>(Arrays.asList(shared));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (type.getRawType() == scope) {
+			return (TypeAdapter<T>) new ScopeAdapter(
+					(TypeAdapter<Object>) gson.getDelegateAdapter(this, type));
+		}
+		if (shared.contains(type.getRawType())) {
+			return (TypeAdapter<T>) new ReferenceAdapter(gson,
+					(TypeAdapter<Object>) gson.getDelegateAdapter(this, type));
+		}
+		return null;
+	}
+
+	/**
+	 * The objects saved or loaded so far within one scope, numbered in the
+	 * order they were first seen
+	 */
+	private static class References {
+		private final Map<Object, Integer> written = new IdentityHashMap<Object, Integer>();
+		private final List<Object> read = new ArrayList<Object>();
+	}
+
+	/**
+	 * Starts a new set of references for each value of the scope
+	 */
+	private class ScopeAdapter extends TypeAdapter<Object> {
+		private final TypeAdapter<Object> delegate;
+
+		public ScopeAdapter(TypeAdapter<Object> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(JsonWriter out, Object value) throws IOException {
+			References outer = references.get();
+			references.set(new References());
+			try {
+				delegate.write(out, value);
+			} finally {
+				references.set(outer);
+			}
+		}
+
+		@Override
+		public Object read(JsonReader in) throws IOException {
+			References outer = references.get();
+			references.set(new References());
+			try {
+				return delegate.read(in);
+			} finally {
+				references.set(outer);
+			}
+		}
+	}
+
+	private class ReferenceAdapter extends TypeAdapter<Object> {
+		private final Gson gson;
+		private final TypeAdapter<Object> delegate;
+
+		public ReferenceAdapter(Gson gson, TypeAdapter<Object> delegate) {
+			this.gson = gson;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(JsonWriter out, Object value) throws IOException {
+			References scope = references.get();
+			if (value == null || scope == null) {
+				// Saved on its own, so there is nothing to refer to
+				delegate.write(out, value);
+				return;
+			}
+			Integer id = scope.written.get(value);
+			out.beginObject();
+			if (id != null) {
+				out.name("@ref").value(id);
+			} else {
+				id = scope.written.size();
+				scope.written.put(value, id);
+				out.name("@id").value(id);
+				out.name("value");
+				delegate.write(out, value);
+			}
+			out.endObject();
+		}
+
+		@Override
+		public Object read(JsonReader in) throws IOException {
+			References scope = references.get();
+			if (scope == null || in.peek() != JsonToken.BEGIN_OBJECT) {
+				return delegate.read(in);
+			}
+
+			in.beginObject();
+			if (!in.hasNext()) {
+				in.endObject();
+				return delegate.fromJsonTree(new JsonObject());
+			}
+			Object value;
+			String name = in.nextName();
+			if (name.equals("@ref")) {
+				int id = in.nextInt();
+				if (id < 0 || id >= scope.read.size()) {
+					throw new JsonParseException("Reference to " + id
+							+ " before it was saved");
+				}
+				value = scope.read.get(id);
+			} else if (name.equals("@id")) {
+				int id = in.nextInt();
+				if (id != scope.read.size() || !in.nextName().equals("value")) {
+					throw new JsonParseException("Shared object " + id
+							+ " is out of order");
+				}
+				value = delegate.read(in);
+				scope.read.add(value);
+			} else {
+				// Saved in full without an id, before references were used
+				JsonObject object = new JsonObject();
+				TypeAdapter<JsonElement> elements = gson
+						.getAdapter(JsonElement.class);
+				object.add(name, elements.read(in));
+				while (in.hasNext()) {
+					String next = in.nextName();
+					object.add(next, elements.read(in));
+				}
+				value = delegate.fromJsonTree(object);
+			}
+			in.endObject();
+			return value;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package storage;
+
+import game.GameState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * A copy of a GameState at a single point in time, so it can be saved or
+ * written to disc by another thread while the game carries on ticking.
+ *
+ * Capturing only serializes the state into memory, which is much quicker
+ * than saving it, and must be done between ticks by whoever owns the game.
+ * The copy can then be restored as a GameState of its own on any thread.
+ *
+ * @author Ben
+ *
+ */
+public class StateSnapshot {
+	private final byte[] data;
+	private final int tick;
+
+	private StateSnapshot(byte[] data, int tick) {
+		this.data = data;
+		this.tick = tick;
+	}
+
+	/**
+	 * Copies a game, which must not be ticked while it is being copied
+	 *
+	 * @param state
+	 *            The game to copy
+	 * @return The copy
+	 * @throws IOException
+	 *             If the state can't be serialized
+	 */
+	public static StateSnapshot capture(GameState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(state);
+		}
+		return new StateSnapshot(bytes.toByteArray(), state.getTickCount());
+	}
+
+	/**
+	 * @return A new GameState as the game was when it was captured
+	 * @throws IOException
+	 *             If the copy can't be read back
+	 */
+	public GameState restore() throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(data))) {
+			return (GameState) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Not a snapshot of a game", e);
+		}
+	}
+
+	/**
+	 * Writes the serialized copy, which can be read back with an
+	 * ObjectInputStream
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(data);
+	}
+
+	/**
+	 * @return The tick the game was on when it was captured
+	 */
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return The size of the serialized copy in bytes
+	 */
+	public int size() {
+		return data.length;
+	}
+}
@@ -1,86 +1,243 @@
 package storage;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-
+import java.io.BufferedWriter;
+
+import game.Armour;
+import game.Bag;
+import game.BlankSquare;
+import game.Chest;
+import game.CloakingGadget;
+import game.Door;
+import game.EmptyWall;
 import game.Furniture;
 import game.Item;
+import game.Key;
+import game.LockedChest;
+import game.LockedDoor;
+import game.Monitor;
+import game.Player;
+import game.Rock;
+import game.Ship;
+import game.ShipPart;
+import game.SolidContainer;
+import game.SolidWall;
 import game.Square;
+import game.WalkableSquare;
 import game.Wall;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import mapbuilder.GameMap;
+import bots.FlowFieldMovement;
+import bots.IncrementalTrackMovement;
+import bots.LongRangeTrackMovement;
 import bots.MoveStrategy;
+import bots.RoamMovement;
+import bots.TrackMovement;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
 import game.GameState;
 
 public class Storage {
 
+	// The extension of maps saved in the binary format
+	public static final String BINARY_MAP_EXTENSION = ".lmap";
+
+	// Gson is thread safe, so one is shared by every load and save rather
+	// than working out how to save every class again each time
+	static final Gson GSON = new GsonBuilder()
+			.registerTypeAdapterFactory(createHierarchies())
+			.registerTypeAdapterFactory(
+					new ReferenceAdapterFactory(GameState.class, Player.class))
+			.enableComplexMapKeySerialization().setPrettyPrinting().create();
+
+	// Size of the buffer games are saved and loaded through
+	private static final int SAVE_BUFFER = 1 << 16;
+
+	// Writes the saves given to saveStateInBackground one at a time, in
+	// order. The thread isn't a daemon, so a save still being written when
+	// the server stops is finished, and it goes away once it is idle.
+	private static final ExecutorService SAVER = createSaver();
+
+	private static ExecutorService createSaver() {
+		ThreadPoolExecutor saver = new ThreadPoolExecutor(1, 1, 1,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						return new Thread(r, "game saver");
+					}
+				});
+		saver.allowCoreThreadTimeOut(true);
+		return saver;
+	}
+
+	/**
+	 * The classes which are saved along with the name of their concrete
+	 * class, with every one which currently exists resolved up front
+	 */
+	private static HierarchyAdapterFactory createHierarchies() {
+		HierarchyAdapterFactory factory = new HierarchyAdapterFactory();
+		factory.register(Square.class, "game.", BlankSquare.class,
+				WalkableSquare.class, Ship.class);
+		factory.register(Wall.class, "game.", EmptyWall.class,
+				SolidWall.class, Door.class, LockedDoor.class);
+		factory.register(Furniture.class, "game.", Rock.class, Monitor.class,
+				SolidContainer.class, Chest.class, LockedChest.class);
+		factory.register(Item.class, "game.", Armour.class, Bag.class,
+				CloakingGadget.class, Key.class, ShipPart.class);
+		factory.register(MoveStrategy.class, "bots.", RoamMovement.class,
+				TrackMovement.class, IncrementalTrackMovement.class,
+				LongRangeTrackMovement.class, FlowFieldMovement.class);
+		return factory;
+	}
+
+	/**
+	 * Loads a game saved by saveState, whether or not it was compressed
+	 */
 	public static final GameState loadState(String fileName){
-		try {
-			BufferedReader file = new BufferedReader(new FileReader(fileName));
-			GsonBuilder gson = new GsonBuilder();
-			gson.registerTypeAdapter(Square.class, new SquareAdapter());
-			gson.registerTypeAdapter(Wall.class, new WallAdapter());
-			gson.registerTypeAdapter(Furniture.class, new FurnitureAdapter());
-			gson.registerTypeAdapter(Item.class, new ItemAdapter());
-			gson.registerTypeAdapter(MoveStrategy.class, new MoveStrategyAdapter());
-			GameState state = gson.setPrettyPrinting().create().fromJson(file, GameState.class);
-			return state;
-		} catch (FileNotFoundException e) {
+		try (BufferedReader file = new BufferedReader(new InputStreamReader(
+				openSave(fileName)))) {
+			return GSON.fromJson(file, GameState.class);
+		} catch (IOException e) {
 
 		}
 		return null;
 	}
 
+	/**
+	 * Opens a saved game, decompressing it if it was saved compressed
+	 */
+	private static InputStream openSave(String fileName) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(fileName));
+		in.mark(2);
+		int magic = in.read() | (in.read() << 8);
+		in.reset();
+		if (magic == GZIPInputStream.GZIP_MAGIC) {
+			return new GZIPInputStream(in, SAVE_BUFFER);
+		}
+		return in;
+	}
+
 	public static final void saveState(GameState state, String fileName){
-		try {
-			FileOutputStream file = new FileOutputStream(fileName, false);
-			GsonBuilder gson = new GsonBuilder();
-			gson.registerTypeAdapter(Square.class, new SquareAdapter());
-			gson.registerTypeAdapter(Wall.class, new WallAdapter());
-			gson.registerTypeAdapter(Furniture.class, new FurnitureAdapter());
-			gson.registerTypeAdapter(Item.class, new ItemAdapter());
-			gson.registerTypeAdapter(MoveStrategy.class, new MoveStrategyAdapter());
-			file.write( gson.enableComplexMapKeySerialization().setPrettyPrinting().create().toJson(state).getBytes());
-			file.close();
-		} catch (IOException e) {
+		saveState(state, fileName, false);
+	}
+
+	/**
+	 * Saves a game, which must not be ticked while it is being saved
+	 *
+	 * @param compress
+	 *            Whether to gzip the save, which loadState will notice
+	 * @return <tt>true</tt> if the game was saved
+	 */
+	public static final boolean saveState(GameState state, String fileName,
+			boolean compress){
+		try (Writer file = new BufferedWriter(new OutputStreamWriter(
+				openSave(fileName, compress)), SAVE_BUFFER)) {
+			GSON.toJson(state, file);
+			return true;
+		} catch (IOException | JsonParseException e) {
 			System.out.println("FILE WRITE ERROR.");
 		}
+		return false;
+	}
+
+	private static OutputStream openSave(String fileName, boolean compress)
+			throws IOException {
+		OutputStream out = new FileOutputStream(fileName, false);
+		if (compress) {
+			return new GZIPOutputStream(out, SAVE_BUFFER);
+		}
+		return out;
+	}
+
+	/**
+	 * Saves a copy of a game on the storage thread, so the game can carry on
+	 * while it is written. Saves are written one at a time in the order they
+	 * were asked for.
+	 *
+	 * @param snapshot
+	 *            The game as it should be saved
+	 * @param compress
+	 *            Whether to gzip the save
+	 * @return Whether the game was saved, once it has been written
+	 */
+	public static final Future<Boolean> saveStateInBackground(
+			final StateSnapshot snapshot, final String fileName,
+			final boolean compress){
+		return SAVER.submit(new Callable<Boolean>() {
+			public Boolean call() {
+				try {
+					return saveState(snapshot.restore(), fileName, compress);
+				} catch (IOException e) {
+					System.out.println("FILE WRITE ERROR.");
+				}
+				return false;
+			}
+		});
 	}
 
 	public static final void saveGameMap(GameMap map, File fileToWrite){
-		try {
-			FileOutputStream file = new FileOutputStream(fileToWrite, false);
-			GsonBuilder gson = new GsonBuilder();
-			gson.registerTypeAdapter(Square.class, new SquareAdapter());
-			gson.registerTypeAdapter(Wall.class, new WallAdapter());
-			gson.registerTypeAdapter(Furniture.class, new FurnitureAdapter());
-			gson.registerTypeAdapter(Item.class, new ItemAdapter());
-			file.write( gson.enableComplexMapKeySerialization().setPrettyPrinting().create().toJson(map).getBytes());
-			file.close();
-		} catch (IOException e) {
+		try (Writer file = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(fileToWrite, false)))) {
+			GSON.toJson(map, file);
+		} catch (IOException | JsonParseException e) {
 
 		}
 	}
 
-	public static final GameMap loadGameMap(File fileName){
+	/**
+	 * Saves a map in the compact binary format, which loads much faster
+	 *
+	 * @return <tt>true</tt> if the map was saved
+	 */
+	public static final boolean saveBinaryMap(GameMap map, File fileToWrite){
 		try {
-			BufferedReader file = new BufferedReader(new FileReader(fileName));
-			GsonBuilder gson = new GsonBuilder();
-			gson.registerTypeAdapter(Square.class, new SquareAdapter());
-			gson.registerTypeAdapter(Wall.class, new WallAdapter());
-			gson.registerTypeAdapter(Furniture.class, new FurnitureAdapter());
-			gson.registerTypeAdapter(Item.class, new ItemAdapter());
-			GameMap gameMap = gson.setPrettyPrinting().create().fromJson(file, GameMap.class);
-			return gameMap;
-		} catch (FileNotFoundException e) {
+			BinaryMap.write(map, fileToWrite);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("FILE WRITE ERROR: " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Loads a map saved by saveGameMap, or by saveBinaryMap if the file has
+	 * the binary map extension
+	 */
+	public static final GameMap loadGameMap(File fileName){
+		if (fileName.getName().endsWith(BINARY_MAP_EXTENSION)) {
+			try {
+				return BinaryMap.read(fileName);
+			} catch (IOException | RuntimeException e) {
+				return null;
+			}
+		}
+		try (BufferedReader file = new BufferedReader(new FileReader(fileName))) {
+			return GSON.fromJson(file, GameMap.class);
+		} catch (IOException e) {
 
 		}
 		return null;
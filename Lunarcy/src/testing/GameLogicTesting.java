@@ -12,9 +12,14 @@ import game.SolidContainer;
 
 import java.awt.Color;
 import java.lang.reflect.Method;
+import java.util.Random;
 
 import org.junit.Test;
 
+import bots.AIScheduler;
+import bots.PursuitMode;
+import bots.Rover;
+
 import static org.junit.Assert.*;
 
 /**
@@ -373,6 +378,55 @@ public class GameLogicTesting {
 		assertEquals(new Location(0,1), state.getPlayer(0).getLocation());
 	}
 
+	/**
+	 * Rovers deciding their moves in parallel should end up exactly where they
+	 * would deciding one at a time, for the same seed and player moves
+	 */
+	@Test
+	public void parallelRoversMatchSerial(){
+		for (PursuitMode mode : PursuitMode.values()) {
+			GameLogic serial = RoverFixtures.createChase(1, 100, mode);
+			serial.setParallelRovers(Integer.MAX_VALUE);
+			GameLogic parallel = RoverFixtures.createChase(1, 100, mode);
+			parallel.setParallelRovers(1);
+
+			Random random = new Random(1);
+			for (int tick = 0; tick < 200; tick++) {
+				Direction direction = Direction.values()[random.nextInt(4)];
+				serial.movePlayer(0, direction);
+				parallel.movePlayer(0, direction);
+				serial.tickGameState();
+				parallel.tickGameState();
+			}
+
+			assertEquals(100, serial.getGameState().getRovers().size());
+			RoverFixtures.assertRoversMatch(mode.toString(),
+					serial.getGameState(), parallel.getGameState());
+		}
+	}
+
+	@Test
+	public void aiBudgetTakesTurns(){
+		GameLogic logic = RoverFixtures.createChase(1, 100,
+				PursuitMode.TRACK);
+		AIScheduler ai = logic.getAIScheduler();
+		// Too small for more than a rover or two to think each tick
+		ai.setBudget(1);
+
+		// The rovers tick every fourth tick, so each gets a turn at least
+		// once in 100 rover ticks
+		for (int tick = 0; tick < 400; tick++) {
+			logic.tickGameState();
+		}
+
+		assertEquals(100, ai.getTickCount());
+		assertTrue(ai.getDeferredCount() > 0);
+		assertEquals(100 * 100, ai.getThoughtCount() + ai.getDeferredCount());
+		for (Rover rover : logic.getGameState().getRovers()) {
+			assertTrue(rover.getThinkNanos() > 0);
+			assertTrue(logic.getGameState().isOutside(rover.getLocation()));
+		}
+	}
 
 	private GameLogic createNewGameLogic(int numPlayers) {
 		GameState state = new GameState(numPlayers, "assets/maps/testmap.json");
@@ -3,12 +3,28 @@ package testing;
 import static org.junit.Assert.*;
 
 import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import game.*;
 
 import org.junit.Test;
 
+import bots.FlowField;
+import bots.FlowFieldMovement;
+import bots.FlowFields;
+import bots.HierarchicalPathfinder;
+import bots.IncrementalPlanner;
+import bots.IncrementalTrackMovement;
+import bots.LongRangeTrackMovement;
+import bots.PathEngine;
+import bots.PursuitMode;
 import bots.Rover;
+import bots.TrackMovement;
 
 /**
  * This class should contain all the methods necessary to test Gamestate/Game
@@ -144,6 +160,7 @@ public class GameStateTesting {
 		Player player = gameState.getPlayers()[0];
 
 		player.setLocation(rover.getLocation());
+		gameState.updateLocation(player);
 
 		assertNotNull("Rover should have caught a player", gameState.caughtPlayer(rover));
 	}
@@ -176,6 +193,7 @@ public class GameStateTesting {
 		Player player = gameState.getPlayers()[0];
 
 		player.setLocation(rover.getLocation().getAdjacent(Direction.NORTH));
+		gameState.updateLocation(player);
 
 		assertNull("Rover should not have caught a player", gameState.caughtPlayer(rover));
 	}
@@ -433,4 +451,409 @@ public class GameStateTesting {
 	}
 	
 	
+	/*---------Replication Checks--------- */
+
+	/**
+	 * A delta should move a player on a copy of the state which was in sync
+	 */
+	@Test
+	public void testDeltaMovesPlayer(){
+		GameState server = new GameState(1, "assets/maps/testmap.json");
+		GameState client = new GameState(1, "assets/maps/testmap.json");
+		server.addPlayer(0, "Player", Color.black);
+		client.addPlayer(0, "Player", Color.black);
+		client.getPlayer(0).setLocation(server.getPlayer(0).getLocation());
+		server.resetReplication();
+
+		GameLogic logic = new GameLogic(server);
+		logic.movePlayer(0, Direction.SOUTH);
+		logic.tickGameState();
+
+		assertTrue(client.applyDelta(server.createDelta()));
+		assertEquals(server.getPlayer(0).getLocation(), client.getPlayer(0).getLocation());
+		assertEquals(server.getTickCount(), client.getTickCount());
+	}
+
+	/**
+	 * A delta created against a different tick should not be applied
+	 */
+	@Test
+	public void testDeltaWrongTick(){
+		GameState server = new GameState(1, "assets/maps/testmap.json");
+		GameState client = new GameState(1, "assets/maps/testmap.json");
+		server.tick();
+		server.resetReplication();
+		server.tick();
+		assertFalse(client.applyDelta(server.createDelta()));
+	}
+
+	/**
+	 * Only the squares which changed should be in a delta
+	 */
+	@Test
+	public void testDeltaOnlyDirtySquares(){
+		GameState state = new GameState(1, "assets/maps/testmap.json");
+		state.resetReplication();
+		state.markDirty(new Location(1, 1));
+		StateDelta delta = state.createDelta();
+		assertEquals(1, delta.getSquares().size());
+		assertTrue(state.createDelta().getSquares().isEmpty());
+	}
+
+	/* --------- Spatial index tests ---------*/
+
+	/**
+	 * The nearest item found through the index should be as close as the
+	 * nearest found by checking every item
+	 */
+	@Test
+	public void testSpatialIndexNearest(){
+		SpatialIndex<Integer> index = new SpatialIndex<Integer>(50, 40);
+		Random random = new Random(1);
+		Location[] locations = new Location[30];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = new Location(random.nextInt(50), random.nextInt(40));
+			index.put(i, locations[i]);
+		}
+		for (int i = 0; i < 200; i++) {
+			Location from = new Location(random.nextInt(50), random.nextInt(40));
+			int closest = Integer.MAX_VALUE;
+			for (Location location : locations) {
+				closest = Math.min(closest, distance(from, location));
+			}
+			Integer found = index.nearest(from, null);
+			assertEquals(closest, distance(from, locations[found]));
+		}
+	}
+
+	/**
+	 * Moving or removing an item should move it in the index
+	 */
+	@Test
+	public void testSpatialIndexMove(){
+		SpatialIndex<String> index = new SpatialIndex<String>(20, 20);
+		index.put("a", new Location(1, 1));
+		index.put("a", new Location(15, 15));
+		assertTrue(index.getAt(new Location(1, 1)).isEmpty());
+		assertEquals("a", index.getAt(new Location(15, 15)).get(0));
+		assertTrue(index.remove("a"));
+		assertNull(index.nearest(new Location(15, 15), null));
+	}
+
+	/**
+	 * Rovers should only see players who are outside
+	 */
+	@Test
+	public void testNearestVisiblePlayer(){
+		GameState gameState = new GameState(1, "assets/maps/map.json");
+		gameState.addPlayer(0, "Ben", Color.RED);
+		Player player = gameState.getPlayer(0);
+		Location outside = gameState.getRoverSpawnPoints().get(0);
+
+		player.setLocation(outside);
+		gameState.updateLocation(player);
+		assertEquals(player, gameState.nearestVisiblePlayer(outside));
+
+		Location inside = null;
+		Square[][] board = gameState.getBoard();
+		for (int y = 0; y < board.length && inside == null; y++) {
+			for (int x = 0; x < board[y].length && inside == null; x++) {
+				if (board[y][x] instanceof WalkableSquare
+						&& ((WalkableSquare) board[y][x]).isInside()) {
+					inside = new Location(x, y);
+				}
+			}
+		}
+		player.setLocation(inside);
+		gameState.updateLocation(player);
+		assertNull(gameState.nearestVisiblePlayer(outside));
+	}
+
+	/* --------- Navigation tests ---------*/
+
+	/**
+	 * The navigation grid should allow exactly the moves the squares allow,
+	 * for rovers, players and players carrying every key and ship part
+	 */
+	@Test
+	public void testNavigationMatchesSquares(){
+		for (String map : new String[] { "assets/maps/map.json",
+				"assets/maps/jacksmap.json", "assets/maps/testmap.json" }) {
+			GameState gameState = new GameState(1, map);
+			NavigationGrid grid = gameState.getNavigationGrid();
+			game.Character[] characters = { new Rover(new Location(0, 0)),
+					new Player(0, "Ben", Color.RED, null, null),
+					new Player(1, "god", Color.RED, null, null) };
+			Square[][] board = gameState.getBoard();
+			for (int y = 0; y < board.length; y++) {
+				for (int x = 0; x < board[y].length; x++) {
+					Location location = new Location(x, y);
+					for (Direction direction : Direction.values()) {
+						Square dest = gameState.getSquare(location
+								.getAdjacent(direction));
+						for (game.Character character : characters) {
+							boolean expected = dest != null
+									&& board[y][x].canExit(character, direction)
+									&& dest.canEnter(character,
+											direction.opposite());
+							assertEquals(map + " " + location + " " + direction,
+									expected, grid.canMove(character,
+											location, direction));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Changing a wall should change the moves through it once the navigation
+	 * is updated
+	 */
+	@Test
+	public void testNavigationUpdate(){
+		GameState gameState = new GameState(1, "assets/maps/testmap.json");
+		Player player = new Player(0, "Ben", Color.RED, null, null);
+		Square[][] board = gameState.getBoard();
+		for (int y = 0; y < board.length; y++) {
+			for (int x = 0; x < board[y].length; x++) {
+				Location location = new Location(x, y);
+				if (gameState.getNavigationGrid().canMove(player, location,
+						Direction.EAST)) {
+					board[y][x].addWall(Direction.EAST);
+					gameState.updateNavigation(location);
+					assertFalse(gameState.getNavigationGrid().canMove(player,
+							location, Direction.EAST));
+					return;
+				}
+			}
+		}
+		fail("No square to move east from");
+	}
+
+	/**
+	 * The path engine should find a shortest path whenever one exists, made
+	 * only of moves a rover can make
+	 */
+	@Test
+	public void testPathEngineShortest(){
+		GameState gameState = new GameState(1, "assets/maps/jacksmap.json");
+		NavigationGrid grid = gameState.getNavigationGrid();
+		PathEngine engine = new PathEngine(grid, Integer.MAX_VALUE);
+		Rover rover = new Rover(new Location(0, 0));
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			Location start = new Location(random.nextInt(grid.getWidth()),
+					random.nextInt(grid.getHeight()));
+			Location end = new Location(random.nextInt(grid.getWidth()),
+					random.nextInt(grid.getHeight()));
+			int expected = breadthFirstDistance(grid, start, end);
+			List<Location> path = engine.findPath(start, end);
+			if (expected < 0) {
+				assertNull(path);
+				continue;
+			}
+			assertEquals(expected, path.size());
+			Location current = start;
+			for (Location step : path) {
+				assertTrue(grid.canMove(rover, current, current.getDirection(step)));
+				current = step;
+			}
+			assertEquals(end, current);
+		}
+	}
+
+	/**
+	 * Following a flow field should take as many steps as the shortest path
+	 * over outside squares, and the field should only be searched again when
+	 * the target moves
+	 */
+	@Test
+	public void testFlowFieldShortest(){
+		GameState gameState = new GameState(1, "assets/maps/jacksmap.json");
+		gameState.addPlayer(0, "Ben", Color.RED);
+		Player player = gameState.getPlayer(0);
+		NavigationGrid grid = gameState.getNavigationGrid();
+		List<Location> outside = gameState.getRoverSpawnPoints();
+		player.setLocation(outside.get(0));
+
+		FlowFields flowFields = gameState.getFlowFields();
+		FlowField field = flowFields.getField(player);
+		assertSame(field, flowFields.getField(player));
+		assertEquals(1, flowFields.getSearches());
+
+		for (int y = 0; y < grid.getHeight(); y++) {
+			for (int x = 0; x < grid.getWidth(); x++) {
+				int cell = grid.getCell(x, y);
+				if (field.getDistance(cell) < 0) {
+					continue;
+				}
+				int steps = 0;
+				while (field.getDistance(cell) > 0) {
+					int next = field.nextCell(cell);
+					assertTrue(grid.isOutside(next));
+					cell = next;
+					steps++;
+				}
+				assertEquals(field.getDistance(grid.getCell(x, y)), steps);
+				assertTrue(breadthFirstDistance(grid, new Location(x, y),
+						player.getLocation()) <= steps);
+			}
+		}
+
+		player.setLocation(outside.get(outside.size() - 1));
+		flowFields.getField(player);
+		assertEquals(2, flowFields.getSearches());
+	}
+
+	/**
+	 * The incremental planner should keep finding shortest paths as the rover
+	 * and its target move, and as walls come and go
+	 */
+	@Test
+	public void testIncrementalPlannerShortest(){
+		GameState gameState = new GameState(1, "assets/maps/jacksmap.json");
+		NavigationGrid grid = gameState.getNavigationGrid();
+		Square[][] board = gameState.getBoard();
+		IncrementalPlanner planner = new IncrementalPlanner(grid,
+				Integer.MAX_VALUE);
+		Random random = new Random(1);
+		int width = grid.getWidth();
+		int start = grid.getCell(0, 0);
+		int goal = grid.getCell(width - 1, grid.getHeight() - 1);
+		for (int i = 0; i < 500; i++) {
+			if (i % 10 == 0) {
+				int x = random.nextInt(width);
+				int y = random.nextInt(grid.getHeight());
+				Direction direction = Direction.values()[random.nextInt(4)];
+				if (board[y][x].getWalls().get(direction) instanceof SolidWall) {
+					board[y][x].removeWall(direction);
+				} else {
+					board[y][x].addWall(direction);
+				}
+				gameState.updateNavigation(new Location(x, y));
+			}
+			int d = random.nextInt(4);
+			if (grid.canRoverMove(goal, d)) {
+				goal += grid.getCellOffset(d);
+			}
+
+			int next = planner.nextCell(start, goal);
+			int expected = breadthFirstDistance(grid, new Location(start
+					% width, start / width), new Location(goal % width, goal
+					/ width));
+			if (expected < 0) {
+				assertEquals(-1, next);
+				continue;
+			}
+			assertEquals(expected, planner.getDistance());
+			if (i % 2 == 0) {
+				start = next;
+			}
+		}
+	}
+
+	/**
+	 * The hierarchical pathfinder should find a path made only of moves a
+	 * rover can make whenever one exists, and give the same paths after walls
+	 * change as one built from scratch
+	 */
+	@Test
+	public void testHierarchicalPathfinder(){
+		GameState gameState = new GameState(1, "assets/maps/jacksmap.json");
+		NavigationGrid grid = gameState.getNavigationGrid();
+		Square[][] board = gameState.getBoard();
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(grid, 8);
+		Rover rover = new Rover(new Location(0, 0));
+		Random random = new Random(1);
+		for (int i = 0; i < 200; i++) {
+			if (i % 10 == 0) {
+				int x = random.nextInt(grid.getWidth());
+				int y = random.nextInt(grid.getHeight());
+				Direction direction = Direction.values()[random.nextInt(4)];
+				if (board[y][x].getWalls().get(direction) instanceof SolidWall) {
+					board[y][x].removeWall(direction);
+				} else {
+					board[y][x].addWall(direction);
+				}
+				gameState.updateNavigation(new Location(x, y));
+			}
+			Location start = new Location(random.nextInt(grid.getWidth()),
+					random.nextInt(grid.getHeight()));
+			Location end = new Location(random.nextInt(grid.getWidth()),
+					random.nextInt(grid.getHeight()));
+			int shortest = breadthFirstDistance(grid, start, end);
+			List<Location> path = pathfinder.findPath(start, end);
+			List<Location> rebuilt = new HierarchicalPathfinder(grid, 8)
+					.findPath(start, end);
+			if (shortest < 0) {
+				assertNull(path);
+				assertNull(rebuilt);
+				continue;
+			}
+			assertNotNull(path);
+			assertEquals(rebuilt, path);
+			assertTrue(path.size() >= shortest);
+			Location current = start;
+			for (Location step : path) {
+				assertEquals(1, distance(current, step));
+				assertTrue(grid.canMove(rover, current, current.getDirection(step)));
+				current = step;
+			}
+			assertEquals(end, current);
+		}
+	}
+
+	/**
+	 * A rover which spots a player should chase them as the pursuit mode says
+	 */
+	@Test
+	public void testPursuitMode(){
+		GameState gameState = new GameState(1, "assets/maps/map.json");
+		Rover rover = new Rover(new Location(0, 0));
+		gameState.addPlayer(0, "Ben", Color.RED);
+		Player player = gameState.getPlayer(0);
+		assertTrue(gameState.getPursuitMode().createStrategy(rover, gameState,
+				player) instanceof FlowFieldMovement);
+		gameState.setPursuitMode(PursuitMode.INCREMENTAL);
+		assertTrue(gameState.getPursuitMode().createStrategy(rover, gameState,
+				player) instanceof IncrementalTrackMovement);
+		gameState.setPursuitMode(PursuitMode.HIERARCHICAL);
+		assertTrue(gameState.getPursuitMode().createStrategy(rover, gameState,
+				player) instanceof LongRangeTrackMovement);
+		gameState.setPursuitMode(PursuitMode.TRACK);
+		assertTrue(gameState.getPursuitMode().createStrategy(rover, gameState,
+				player) instanceof TrackMovement);
+	}
+
+	/**
+	 * Moves needed for a rover to get from start to end, -1 if it can't
+	 */
+	private int breadthFirstDistance(NavigationGrid grid, Location start, Location end) {
+		Map<Location, Integer> distances = new HashMap<Location, Integer>();
+		Deque<Location> queue = new ArrayDeque<Location>();
+		Rover rover = new Rover(new Location(0, 0));
+		distances.put(start, 0);
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			Location current = queue.poll();
+			if (current.equals(end)) {
+				return distances.get(current);
+			}
+			for (Direction direction : Direction.values()) {
+				Location next = current.getAdjacent(direction);
+				if (grid.canMove(rover, current, direction)
+						&& !distances.containsKey(next)) {
+					distances.put(next, distances.get(current) + 1);
+					queue.add(next);
+				}
+			}
+		}
+		return -1;
+	}
+
+	private int distance(Location a, Location b) {
+		return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+	}
+
 }
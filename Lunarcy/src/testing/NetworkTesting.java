@@ -0,0 +1,728 @@
+package testing;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import game.Bag;
+import game.Direction;
+import game.GameLogic;
+import game.GameState;
+import game.Key;
+import game.Location;
+import game.Player;
+import bots.AIScheduler;
+import bots.PursuitMode;
+import bots.Rover;
+import game.ShipPart;
+import game.StateDelta;
+import game.WalkableSquare;
+import network.BinaryCodec;
+import network.CloseAction;
+import network.Codec;
+import network.Codecs;
+import network.DropAction;
+import network.InputPrediction;
+import network.Journal;
+import network.LockstepSimulation;
+import network.LockstepTick;
+import network.MoveAction;
+import network.NetworkAction;
+import network.OpenAction;
+import network.OrientAction;
+import network.PickupAction;
+import network.PutAction;
+import network.SerializationCodec;
+import network.TickScheduler;
+
+import org.junit.Test;
+
+import processing.core.PVector;
+import storage.StateSnapshot;
+import ui.renderer.SnapshotBuffer;
+
+/**
+ * Test cases for the codecs used to send actions and updates over the network
+ *
+ * @author denforjohn
+ *
+ */
+public class NetworkTesting {
+
+	private final Codec binary = new BinaryCodec();
+	private final Codec serialization = new SerializationCodec();
+
+	/*---------Action Round Trips--------- */
+
+	@Test
+	public void testMoveActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			MoveAction action = (MoveAction) roundTrip(codec, new MoveAction(3,
+					Direction.WEST, 7));
+			assertEquals(3, action.getPlayerID());
+			assertEquals(Direction.WEST, action.getDirection());
+			assertEquals(7, action.getSequence());
+		}
+	}
+
+	@Test
+	public void testOrientActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			OrientAction action = (OrientAction) roundTrip(codec,
+					new OrientAction(2, true, 8));
+			assertEquals(2, action.getPlayerID());
+			assertTrue(action.isTurnLeft());
+			assertEquals(8, action.getSequence());
+		}
+	}
+
+	@Test
+	public void testPickupActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			PickupAction action = (PickupAction) roundTrip(codec,
+					new PickupAction(1, 105));
+			assertEquals(1, action.getPlayerID());
+			assertEquals(105, action.getItemID());
+		}
+	}
+
+	@Test
+	public void testDropActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			DropAction action = (DropAction) roundTrip(codec, new DropAction(4,
+					2001));
+			assertEquals(4, action.getPlayerID());
+			assertEquals(2001, action.getItemID());
+		}
+	}
+
+	@Test
+	public void testPutActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			PutAction action = (PutAction) roundTrip(codec, new PutAction(0,
+					120, 130));
+			assertEquals(0, action.getPlayerID());
+			assertEquals(120, action.getContainerID());
+			assertEquals(130, action.getItemID());
+		}
+	}
+
+	@Test
+	public void testOpenActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			OpenAction action = (OpenAction) roundTrip(codec, new OpenAction(1));
+			assertEquals(1, action.getPlayerID());
+		}
+	}
+
+	@Test
+	public void testCloseActionRoundTrip() throws Exception {
+		for (Codec codec : codecs()) {
+			CloseAction action = (CloseAction) roundTrip(codec,
+					new CloseAction(1));
+			assertEquals(1, action.getPlayerID());
+		}
+	}
+
+	/**
+	 * Garbage should be rejected rather than decoded as an action
+	 */
+	@Test(expected = java.io.IOException.class)
+	public void testInvalidAction() throws Exception {
+		binary.decodeAction(new byte[] { 99, 0, 0, 0, 1 });
+	}
+
+	/*---------Update Round Trips--------- */
+
+	/**
+	 * A decoded gamestate should match the original, and encode to the same
+	 * size again (rovers are unordered so the bytes may be shuffled)
+	 */
+	@Test
+	public void testGameStateRoundTrip() throws Exception {
+		GameState state = createGameState();
+		byte[] encoded = binary.encodeUpdate(state);
+		GameState decoded = (GameState) binary.decodeUpdate(encoded);
+
+		assertEquals(state.getTickCount(), decoded.getTickCount());
+		assertEquals(state.getBoard().length, decoded.getBoard().length);
+		for (int i = 0; i < state.getPlayers().length; i++) {
+			Player original = state.getPlayer(i);
+			Player copy = decoded.getPlayer(i);
+			assertEquals(original.getName(), copy.getName());
+			assertEquals(original.getLocation(), copy.getLocation());
+			assertEquals(original.getOrientation(), copy.getOrientation());
+			assertEquals(original.getOxygen(), copy.getOxygen());
+			assertEquals(original.getInventory().size(), copy.getInventory()
+					.size());
+		}
+		assertEquals(state.getRovers().size(), decoded.getRovers().size());
+		assertEquals(roverIDs(state), roverIDs(decoded));
+		assertEquals(encoded.length, binary.encodeUpdate(decoded).length);
+	}
+
+	/**
+	 * More items than fit in a byte should all be sent, and everything after
+	 * them read back in the right place
+	 */
+	@Test
+	public void testManyItemsRoundTrip() throws Exception {
+		GameState state = createGameState();
+		Location location = state.getPlayer(0).getLocation();
+		WalkableSquare square = (WalkableSquare) state.getSquare(location);
+		for (int i = 0; i < 300; i++) {
+			assertTrue(square.addItem(Direction.NORTH, new Key(1000 + i, 1)));
+		}
+
+		GameState decoded = (GameState) binary.decodeUpdate(binary
+				.encodeUpdate(state));
+		assertEquals(square.getItems(Direction.NORTH).size(),
+				((WalkableSquare) decoded.getSquare(location)).getItems(
+						Direction.NORTH).size());
+		assertEquals(state.getRovers().size(), decoded.getRovers().size());
+		assertEquals(state.getPlayer(0).getLocation(), decoded.getPlayer(0)
+				.getLocation());
+	}
+
+	/**
+	 * A decoded delta should apply onto a decoded keyframe
+	 */
+	@Test
+	public void testDeltaRoundTrip() throws Exception {
+		GameState state = createGameState();
+		GameLogic logic = new GameLogic(state);
+		GameState copy = (GameState) binary.decodeUpdate(binary
+				.encodeUpdate(state));
+		state.resetReplication();
+
+		logic.movePlayer(0, Direction.SOUTH);
+		logic.tickGameState();
+		StateDelta delta = (StateDelta) binary.decodeUpdate(binary
+				.encodeUpdate(state.createDelta()));
+
+		assertTrue(copy.applyDelta(delta));
+		assertEquals(state.getPlayer(0).getLocation(), copy.getPlayer(0)
+				.getLocation());
+	}
+
+	/**
+	 * The binary codec should be preferred when both sides support it
+	 */
+	@Test
+	public void testCodecNegotiation() {
+		assertEquals(BinaryCodec.ID, Codecs.choose(Codecs.supported()));
+		assertEquals(SerializationCodec.ID,
+				Codecs.choose(new int[] { SerializationCodec.ID }));
+		assertEquals(SerializationCodec.ID, Codecs.choose(new int[] { 42 }));
+		assertEquals(BinaryCodec.ID, Codecs.choose(Codecs.decodeOffer(Codecs
+				.encodeOffer(Codecs.supported()))));
+	}
+
+	/**
+	 * The binary codec should produce much smaller updates, CodecBenchmark
+	 * measures how much smaller and how fast
+	 */
+	@Test
+	public void testCodecComparison() throws Exception {
+		GameState state = createGameState();
+		GameLogic logic = new GameLogic(state);
+		state.resetReplication();
+		logic.movePlayer(0, Direction.SOUTH);
+		logic.tickGameState();
+		StateDelta delta = state.createDelta();
+		NetworkAction action = new MoveAction(0, Direction.NORTH);
+
+		int binaryKeyframe = binary.encodeUpdate(state).length;
+		int serialKeyframe = serialization.encodeUpdate(state).length;
+		int binaryDelta = binary.encodeUpdate(delta).length;
+		int serialDelta = serialization.encodeUpdate(delta).length;
+		int binaryAction = binary.encodeAction(action).length;
+		int serialAction = serialization.encodeAction(action).length;
+
+		assertTrue(binaryKeyframe < serialKeyframe);
+		assertTrue(binaryDelta < serialDelta);
+		assertTrue(binaryAction < serialAction);
+	}
+
+	/*---------Tick Scheduling--------- */
+
+	/**
+	 * Ticks should stay on a fixed grid, the time spent in each tick shouldn't
+	 * push later ticks back
+	 */
+	@Test
+	public void testSchedulerFixedRate() throws Exception {
+		long period = TimeUnit.MILLISECONDS.toNanos(20);
+		TickScheduler scheduler = new TickScheduler(20);
+		long start = System.nanoTime();
+		scheduler.start();
+		long deadline = nextDeadline(scheduler);
+		for (int i = 0; i < 10; i++) {
+			scheduler.awaitNextTick();
+			Thread.sleep(5);
+			scheduler.endTick();
+			// One period after the last deadline, not after the tick ended
+			long next = nextDeadline(scheduler);
+			assertEquals(period, next - deadline,
+					TimeUnit.MILLISECONDS.toNanos(1));
+			deadline = next;
+		}
+		assertEquals(10, scheduler.getTickCount());
+		assertEquals(0, scheduler.getOverrunCount());
+		// The tenth tick can't have started before it was due
+		assertTrue(System.nanoTime() - start >= 10 * period);
+	}
+
+	/**
+	 * A tick which runs past the next deadline should be counted as an
+	 * overrun, and the missed tick skipped
+	 */
+	@Test
+	public void testSchedulerOverrun() throws Exception {
+		TickScheduler scheduler = new TickScheduler(10);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		Thread.sleep(25);
+		scheduler.endTick();
+		assertTrue(scheduler.getOverrunCount() >= 2);
+		assertTrue(scheduler.getLastTickDuration() >= 25000000);
+	}
+
+	/*---------Journal--------- */
+
+	@Test
+	public void testJournalRecovery() throws Exception {
+		GameState state = new GameState(2, "assets/maps/map.json", 40, 1);
+		state.addPlayer(0, "Player0", Color.black);
+		state.addPlayer(1, "Player1", Color.red);
+		GameLogic logic = new GameLogic(state);
+		// Which rovers think depends on timing, so must come from the journal
+		logic.getAIScheduler().setBudget(1);
+
+		File directory = Files.createTempDirectory("journal").toFile();
+		Journal journal = new Journal(directory, 100);
+		journal.snapshot(state);
+		Random random = new Random(1);
+		for (int tick = 0; tick < 230; tick++) {
+			// Players wander without armour, so are caught and respawn
+			for (int id = 0; id < 2; id++) {
+				NetworkAction action = random.nextBoolean() ? new MoveAction(
+						id, Direction.values()[random.nextInt(4)])
+						: new OrientAction(id, random.nextBoolean());
+				journal.logAction(action);
+				action.applyAction(logic);
+			}
+			logic.tickGameState();
+			journal.logTick(logic);
+		}
+		journal.close();
+		assertEquals(3, journal.getSnapshotCount());
+
+		// A crash part way through writing a record
+		File segment = new File(directory, "journal-200");
+		assertTrue(segment.exists());
+		try (FileOutputStream out = new FileOutputStream(segment, true)) {
+			out.write(new byte[] { 1, 0, 0 });
+		}
+
+		GameState recovered = Journal.recover(directory);
+		assertEquals(state.getTickCount(), recovered.getTickCount());
+		for (int id = 0; id < 2; id++) {
+			Player expected = state.getPlayer(id);
+			Player actual = recovered.getPlayer(id);
+			assertEquals(expected.getLocation(), actual.getLocation());
+			assertEquals(expected.getOrientation(), actual.getOrientation());
+			assertEquals(expected.getOxygen(), actual.getOxygen());
+		}
+		assertEquals(40, recovered.getRovers().size());
+		RoverFixtures.assertRoversMatch("recovered", state, recovered);
+
+		journal.delete();
+		assertFalse(directory.exists());
+	}
+
+	/**
+	 * Recovering a game where rovers take turns to think, as with a realistic
+	 * budget, so the snapshot recovered from has rovers part way through
+	 * following their plans
+	 */
+	@Test
+	public void testJournalRecoveryMidChase() throws Exception {
+		for (PursuitMode mode : PursuitMode.values()) {
+			GameLogic logic = RoverFixtures.createChase(2, 200, mode);
+			GameState state = logic.getGameState();
+
+			File directory = Files.createTempDirectory("journal").toFile();
+			Journal journal = new Journal(directory, 100);
+			journal.snapshot(state);
+			Random random = new Random(1);
+			for (int tick = 0; tick < 260; tick++) {
+				for (int id = 0; id < 2; id++) {
+					NetworkAction action = new MoveAction(id,
+							Direction.values()[random.nextInt(4)]);
+					journal.logAction(action);
+					action.applyAction(logic);
+				}
+				thinkInTurns(logic);
+				logic.tickGameState();
+				journal.logTick(logic);
+			}
+			journal.close();
+			assertTrue(logic.getAIScheduler().getDeferredCount() > 0);
+
+			GameState recovered = Journal.recover(directory);
+			assertEquals(state.getTickCount(), recovered.getTickCount());
+			for (int id = 0; id < 2; id++) {
+				assertEquals(state.getPlayer(id).getLocation(), recovered
+						.getPlayer(id).getLocation());
+			}
+			RoverFixtures.assertRoversMatch(mode.toString(), state, recovered);
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void testLockstep() throws Exception {
+		GameState state = new GameState(2, "assets/maps/map.json", 40, 1);
+		state.addPlayer(0, "Player0", Color.black);
+		state.addPlayer(1, "Player1", Color.red);
+		GameLogic logic = new GameLogic(state);
+		logic.getAIScheduler().setBudget(1);
+
+		LockstepSimulation[] clients = new LockstepSimulation[2];
+		for (int i = 0; i < clients.length; i++) {
+			Codec codec = codecs()[i];
+			clients[i] = new LockstepSimulation((GameState) codec.decodeUpdate(
+					codec.encodeUpdate(StateSnapshot.capture(state))));
+		}
+		Random random = new Random(1);
+		for (int tick = 0; tick < 200; tick++) {
+			NetworkAction[] actions = new NetworkAction[2];
+			for (int id = 0; id < 2; id++) {
+				actions[id] = random.nextBoolean() ? new MoveAction(id,
+						Direction.values()[random.nextInt(4)])
+						: new OrientAction(id, random.nextBoolean());
+				actions[id].applyAction(logic);
+			}
+			logic.tickGameState();
+			LockstepTick played = LockstepTick.record(logic, actions);
+			for (int i = 0; i < clients.length; i++) {
+				Codec codec = codecs()[i];
+				assertTrue(clients[i].apply((LockstepTick) codec
+						.decodeUpdate(codec.encodeUpdate(played))));
+			}
+		}
+
+		for (LockstepSimulation client : clients) {
+			GameState copy = client.getGameState();
+			assertEquals(state.getTickCount(), copy.getTickCount());
+			for (int id = 0; id < 2; id++) {
+				assertEquals(state.getPlayer(id).getLocation(), copy
+						.getPlayer(id).getLocation());
+				assertEquals(state.getPlayer(id).getOxygen(), copy
+						.getPlayer(id).getOxygen());
+			}
+			assertEquals(40, copy.getRovers().size());
+			RoverFixtures.assertRoversMatch("client", state, copy);
+		}
+
+		// A client whose copy has gone wrong finds out
+		logic.tickGameState();
+		assertFalse(clients[0].apply(new LockstepTick(state.getTickCount(),
+				new NetworkAction[0], logic.getAIScheduler().getLastStart(),
+				logic.getAIScheduler().getLastCount(), state.checksum() + 1)));
+	}
+
+	/**
+	 * A client joining part way through a chase, when most rovers are
+	 * following plans they made before the snapshot, plays on exactly as the
+	 * server does, however the rovers chase
+	 */
+	@Test
+	public void testLockstepFromMidChase() throws Exception {
+		for (PursuitMode mode : PursuitMode.values()) {
+			GameLogic logic = RoverFixtures.createChase(2, 200, mode);
+			GameState state = logic.getGameState();
+
+			Random random = new Random(1);
+			LockstepSimulation client = null;
+			for (int tick = 0; tick < 400; tick++) {
+				if (tick == 200) {
+					assertTrue(logic.getAIScheduler().getDeferredCount() > 0);
+					client = new LockstepSimulation((GameState) binary
+							.decodeUpdate(binary.encodeUpdate(StateSnapshot
+									.capture(state))));
+				}
+				NetworkAction[] actions = new NetworkAction[2];
+				for (int id = 0; id < 2; id++) {
+					actions[id] = new MoveAction(id,
+							Direction.values()[random.nextInt(4)]);
+					actions[id].applyAction(logic);
+				}
+				thinkInTurns(logic);
+				logic.tickGameState();
+				LockstepTick played = LockstepTick.record(logic, actions);
+				if (client != null) {
+					assertTrue(mode + " at tick " + tick, client
+							.apply((LockstepTick) binary.decodeUpdate(binary
+									.encodeUpdate(played))));
+				}
+			}
+
+			RoverFixtures.assertRoversMatch(mode.toString(), state,
+					client.getGameState());
+		}
+	}
+
+	/**
+	 * Copies holding different items should have different checksums, even
+	 * when everyone carries as many
+	 */
+	@Test
+	public void testChecksumCoversItems() throws Exception {
+		GameState state = createGameState();
+		GameState copy = StateSnapshot.capture(state).restore();
+		assertEquals(state.checksum(), copy.checksum());
+
+		state.getPlayer(0).giveItem(new Key(950, 1));
+		copy.getPlayer(0).giveItem(new Key(951, 1));
+		assertTrue(state.checksum() != copy.checksum());
+		copy.getPlayer(0).removeItem(951);
+		copy.getPlayer(0).giveItem(new Key(950, 1));
+		assertEquals(state.checksum(), copy.checksum());
+
+		// Only the squares changed since the last delta are checked
+		Location location = state.getPlayer(0).getLocation();
+		((WalkableSquare) state.getSquare(location)).addItem(Direction.NORTH,
+				new Key(960, 1));
+		assertEquals(state.checksum(), copy.checksum());
+		state.markDirty(location);
+		copy.markDirty(location);
+		assertTrue(state.checksum() != copy.checksum());
+	}
+
+	@Test
+	public void testPrediction() throws Exception {
+		GameState state = createGameState();
+		GameLogic logic = new GameLogic(state);
+		GameState copy = (GameState) binary.decodeUpdate(binary
+				.encodeUpdate(state));
+		state.resetReplication();
+		InputPrediction prediction = new InputPrediction(0, copy);
+
+		Location start = state.getPlayer(0).getLocation();
+		Direction direction = null;
+		for (Direction d : Direction.values()) {
+			if (logic.validMove(state.getPlayer(0), d)) {
+				direction = d;
+			}
+		}
+		assertNotNull(direction);
+		Location moved = start.getAdjacent(direction);
+
+		// Shown straight away, but only one move a tick as on the server
+		MoveAction move = new MoveAction(0, direction, prediction.nextSequence());
+		assertTrue(prediction.predict(copy, move));
+		assertEquals(moved, copy.getPlayer(0).getLocation());
+		assertFalse(prediction.predict(copy, new MoveAction(0, direction,
+				prediction.nextSequence())));
+		OrientAction turn = new OrientAction(0, true, prediction.nextSequence());
+		assertTrue(prediction.predict(copy, turn));
+		Direction turned = copy.getPlayer(0).getOrientation();
+		assertEquals(state.getPlayer(0).getOrientation().left(), turned);
+
+		// The server has only applied the move, so only the turn is replayed
+		roundTrip(binary, move).applyAction(logic);
+		logic.tickGameState();
+		assertTrue(copy.applyDelta(createDelta(state)));
+		prediction.reconcile(copy);
+		assertEquals(moved, copy.getPlayer(0).getLocation());
+		assertEquals(turned, copy.getPlayer(0).getOrientation());
+		assertEquals(1, prediction.getPendingCount());
+
+		roundTrip(binary, turn).applyAction(logic);
+		logic.tickGameState();
+		assertTrue(copy.applyDelta(createDelta(state)));
+		prediction.reconcile(copy);
+		assertEquals(turned, state.getPlayer(0).getOrientation());
+		assertEquals(turned, copy.getPlayer(0).getOrientation());
+		assertEquals(0, prediction.getPendingCount());
+
+		// A move the server didn't make is undone
+		MoveAction back = new MoveAction(0, direction.opposite(),
+				prediction.nextSequence());
+		assertTrue(prediction.predict(copy, back));
+		assertEquals(start, copy.getPlayer(0).getLocation());
+		logic.acknowledgeInput(0, back.getSequence());
+		logic.tickGameState();
+		assertTrue(copy.applyDelta(createDelta(state)));
+		prediction.reconcile(copy);
+		assertEquals(moved, copy.getPlayer(0).getLocation());
+		assertEquals(0, prediction.getPendingCount());
+	}
+
+	/**
+	 * Inputs predicted on the copy being drawn shouldn't reach the copy
+	 * ticked in lockstep, which is taken as the keyframe arrives
+	 */
+	@Test
+	public void testPredictionInLockstep() throws Exception {
+		GameState state = createGameState();
+		GameLogic logic = new GameLogic(state);
+		GameState view = (GameState) binary.decodeUpdate(binary
+				.encodeUpdate(StateSnapshot.capture(state)));
+		LockstepSimulation simulation = new LockstepSimulation(view);
+		InputPrediction prediction = new InputPrediction(0, view);
+
+		Direction direction = null;
+		for (Direction d : Direction.values()) {
+			if (logic.validMove(state.getPlayer(0), d)) {
+				direction = d;
+			}
+		}
+		MoveAction move = new MoveAction(0, direction, prediction.nextSequence());
+		assertTrue(prediction.predict(view, move));
+
+		move.applyAction(logic);
+		logic.tickGameState();
+		LockstepTick tick = LockstepTick.record(logic,
+				new NetworkAction[] { move });
+		assertTrue(simulation.apply(tick));
+		prediction.reconcile(view);
+		assertEquals(state.getPlayer(0).getLocation(), view.getPlayer(0)
+				.getLocation());
+		assertEquals(0, prediction.getPendingCount());
+	}
+
+	/**
+	 * Other characters should be drawn part way between the states either
+	 * side of the moment being drawn
+	 */
+	@Test
+	public void testSnapshotInterpolation() throws Exception {
+		GameState state = new GameState(2, "assets/maps/map.json", 1, 1);
+		state.addPlayer(0, "Player0", Color.black);
+		state.addPlayer(1, "Player1", Color.red);
+		state.addRover();
+		GameLogic logic = new GameLogic(state);
+		GameState copy = (GameState) binary.decodeUpdate(binary
+				.encodeUpdate(state));
+		state.resetReplication();
+
+		SnapshotBuffer snapshots = new SnapshotBuffer();
+		long interval = TimeUnit.MILLISECONDS.toNanos(100);
+		snapshots.record(copy, interval);
+		Player player = copy.getPlayer(1);
+		Rover rover = copy.getRovers().iterator().next();
+		Location playerFrom = player.getLocation();
+		Location roverFrom = rover.getLocation();
+
+		Direction direction = null;
+		for (Direction d : Direction.values()) {
+			if (logic.validMove(state.getPlayer(1), d)) {
+				direction = d;
+			}
+		}
+		logic.movePlayer(1, direction);
+		logic.tickGameState();
+		assertTrue(copy.applyDelta(createDelta(state)));
+		snapshots.record(copy, interval * 2);
+		player = copy.getPlayer(1);
+		rover = copy.getRovers().iterator().next();
+		Location playerTo = player.getLocation();
+		Location roverTo = rover.getLocation();
+		assertEquals(playerFrom.getAdjacent(direction), playerTo);
+
+		// Twice the time between updates behind, unless set
+		assertEquals(200, snapshots.getDelay());
+		snapshots.setDelay(100);
+
+		SnapshotBuffer.Interpolation halfway = snapshots.at(interval * 2
+				+ interval / 2);
+		PVector at = halfway.getPosition(player);
+		assertEquals((playerFrom.getX() + playerTo.getX()) / 2f, at.x, 0.001);
+		assertEquals((playerFrom.getY() + playerTo.getY()) / 2f, at.y, 0.001);
+		at = halfway.getPosition(rover);
+		assertEquals((roverFrom.getX() + roverTo.getX()) / 2f, at.x, 0.001);
+		assertEquals((roverFrom.getY() + roverTo.getY()) / 2f, at.y, 0.001);
+
+		// Past the latest state they stay where they are
+		at = snapshots.at(interval * 10).getPosition(player);
+		assertEquals(playerTo.getX(), at.x, 0);
+		assertEquals(playerTo.getY(), at.y, 0);
+
+		// And without a delay they're drawn where they are
+		snapshots.setDelay(0);
+		at = snapshots.at(interval * 2).getPosition(player);
+		assertEquals(playerTo.getX(), at.x, 0);
+		assertEquals(playerTo.getY(), at.y, 0);
+
+		// A state from before the others replaces them
+		GameState earlier = (GameState) binary.decodeUpdate(binary
+				.encodeUpdate(new GameState(2, "assets/maps/map.json", 1, 1)));
+		snapshots.setDelay(SnapshotBuffer.AUTOMATIC);
+		snapshots.record(earlier, interval * 3);
+		assertEquals(0, snapshots.getDelay());
+	}
+
+	private Set<Integer> roverIDs(GameState state) {
+		Set<Integer> ids = new HashSet<Integer>();
+		for (Rover rover : state.getRovers()) {
+			ids.add(rover.getId());
+		}
+		return ids;
+	}
+
+	private StateDelta createDelta(GameState state) throws Exception {
+		return (StateDelta) binary.decodeUpdate(binary.encodeUpdate(state
+				.createDelta()));
+	}
+
+	/**
+	 * Lets a quarter of the rovers think each time rovers tick, taking turns,
+	 * as a 300 microsecond thinking budget would on a busy server. Left to
+	 * the budget, an idle machine has time for every rover to think and
+	 * nothing is deferred.
+	 */
+	private void thinkInTurns(GameLogic logic) {
+		AIScheduler ai = logic.getAIScheduler();
+		ai.replay((ai.getLastStart() + ai.getLastCount()) % 200, 50);
+	}
+
+	/**
+	 * @return When the scheduler's next tick is due, in nanoTime
+	 */
+	private long nextDeadline(TickScheduler scheduler) {
+		return System.nanoTime() + scheduler.nanosUntilNextTick();
+	}
+
+	private Codec[] codecs() {
+		return new Codec[] { binary, serialization };
+	}
+
+	private NetworkAction roundTrip(Codec codec, NetworkAction action)
+			throws Exception {
+		NetworkAction decoded = codec.decodeAction(codec.encodeAction(action));
+		assertEquals(action.getClass(), decoded.getClass());
+		return decoded;
+	}
+
+	private GameState createGameState() {
+		GameState state = new GameState(2, "assets/maps/map.json");
+		state.addPlayer(0, "Player0", Color.black);
+		state.addPlayer(1, "Player1", Color.red);
+
+		Bag bag = new Bag(900);
+		bag.addItem(new ShipPart(901, 2));
+		state.getPlayer(1).giveItem(bag);
+		state.getPlayer(1).giveItem(new Key(902, 3));
+		return state;
+	}
+}
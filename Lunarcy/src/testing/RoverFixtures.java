@@ -0,0 +1,75 @@
+package testing;
+
+import static org.junit.Assert.*;
+
+import game.Armour;
+import game.GameLogic;
+import game.GameState;
+import game.Player;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+
+import bots.PursuitMode;
+import bots.Rover;
+
+/**
+ * Games full of rovers chasing players, shared by the tests of rover
+ * movement, and a check that two copies of a game have their rovers in the
+ * same places.
+ *
+ * @author evansben1
+ *
+ */
+public class RoverFixtures {
+
+	/**
+	 * @param players
+	 *            How many players there are
+	 * @param rovers
+	 *            How many rovers the game has
+	 * @param mode
+	 *            How the rovers chase players
+	 * @return A game on map.json with seed 1, where each player starts on a
+	 *         rover spawn point wearing armour, so they are chased but never
+	 *         caught and respawned somewhere random
+	 */
+	public static GameLogic createChase(int players, int rovers,
+			PursuitMode mode) {
+		GameState state = new GameState(players, "assets/maps/map.json",
+				rovers, 1);
+		state.setPursuitMode(mode);
+		for (int id = 0; id < players; id++) {
+			state.addPlayer(id, "Player" + id, Color.black);
+			Player player = state.getPlayer(id);
+			player.giveItem(new Armour(1000));
+			player.setLocation(state.getRoverSpawnPoints().get(id));
+			state.updateLocation(player);
+		}
+		return new GameLogic(state);
+	}
+
+	/**
+	 * Check that a copy of a game has the same rovers as the original, each
+	 * where the rover with the same ID is and facing the same way
+	 *
+	 * @param message
+	 *            Says which game failed
+	 */
+	public static void assertRoversMatch(String message, GameState expected,
+			GameState actual) {
+		Map<Integer, Rover> rovers = new HashMap<Integer, Rover>();
+		for (Rover rover : expected.getRovers()) {
+			rovers.put(rover.getId(), rover);
+		}
+		assertEquals(message, rovers.size(), actual.getRovers().size());
+		for (Rover rover : actual.getRovers()) {
+			Rover other = rovers.get(rover.getId());
+			assertNotNull(message, other);
+			assertEquals(message, other.getLocation(), rover.getLocation());
+			assertEquals(message, other.getOrientation(),
+					rover.getOrientation());
+		}
+	}
+}
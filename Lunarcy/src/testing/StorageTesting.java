@@ -2,24 +2,45 @@ package testing;
 
 import static org.junit.Assert.*;
 
+import java.awt.Color;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import game.BlankSquare;
+import game.EmptyWall;
 import game.GameState;
 import game.Location;
+import game.Player;
+import game.SolidWall;
 import game.Square;
 import game.WalkableSquare;
+import game.Wall;
 import mapbuilder.GameMap;
 import mapbuilder.MapBuilder;
 
 import org.junit.Test;
 
+import bots.Rover;
+
+import storage.HierarchyAdapterFactory;
+import storage.StateSnapshot;
 import storage.Storage;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
 /**
  * This class should contain all the methods necessary to test the Storage and
  * map builder.
@@ -92,6 +113,121 @@ public class StorageTesting {
 	}
 
 
+	@Test
+	public void testBinaryMapLoadAndSave() throws IOException {
+		GameMap jsonMap = Storage.loadGameMap(new File("assets/maps/map.json"));
+		File binaryFile = File.createTempFile("testmapsave", Storage.BINARY_MAP_EXTENSION);
+		File jsonFile = File.createTempFile("testmapsave", ".json");
+		File binaryJsonFile = File.createTempFile("testmapsave", ".json");
+		try {
+			assertTrue(Storage.saveBinaryMap(jsonMap, binaryFile));
+			assertTrue(binaryFile.length() < new File("assets/maps/map.json").length() / 10);
+			GameMap binaryMap = Storage.loadGameMap(binaryFile);
+			assertNotNull(binaryMap);
+
+			// Both maps should save the same, apart from the order of the
+			// tier dictionary, which is a HashMap
+			Storage.saveGameMap(jsonMap, jsonFile);
+			Storage.saveGameMap(binaryMap, binaryJsonFile);
+			JsonObject expected = new JsonParser().parse(new FileReader(jsonFile)).getAsJsonObject();
+			JsonObject actual = new JsonParser().parse(new FileReader(binaryJsonFile)).getAsJsonObject();
+			assertEquals(expected.remove("tierDictionary").getAsJsonArray().size(),
+					actual.remove("tierDictionary").getAsJsonArray().size());
+			assertEquals(expected, actual);
+		} finally {
+			binaryFile.delete();
+			jsonFile.delete();
+			binaryJsonFile.delete();
+		}
+	}
+
+	@Test
+	public void testBackgroundSaveIsPointInTime() throws Exception {
+		GameState gameState = new GameState(1, "assets/maps/map.json");
+		gameState.addPlayer(0, "Kelly", Color.RED);
+		File saved = File.createTempFile("teststatesave", ".json.gz");
+		try {
+			StateSnapshot snapshot = StateSnapshot.capture(gameState);
+			// The game carries on after it has been copied
+			gameState.getPlayer(0).modifyOxygen(-10);
+			gameState.tick();
+
+			assertTrue(Storage.saveStateInBackground(snapshot, saved.getPath(), true).get());
+			try (InputStream in = new GZIPInputStream(new FileInputStream(saved))) {
+				assertTrue(in.read() >= 0);
+			}
+			GameState loadedState = Storage.loadState(saved.getPath());
+			assertEquals(snapshot.getTick(), loadedState.getTickCount());
+			assertEquals(gameState.getPlayer(0).getMaxOxygen(),
+					loadedState.getPlayer(0).getOxygen());
+			assertEquals(gameState.getPlayer(0).getLocation(),
+					loadedState.getPlayer(0).getLocation());
+		} finally {
+			saved.delete();
+		}
+	}
+
+	@Test
+	public void testPlayersSavedOnce() throws IOException {
+		GameState gameState = new GameState(1, "assets/maps/map.json", 1, 1);
+		gameState.addPlayer(0, "Kelly", Color.RED);
+		gameState.addRover();
+		Rover rover = gameState.getRovers().iterator().next();
+		Player player = gameState.getPlayer(0);
+
+		// Stand the player outside near the rover, so it chases them
+		search: for (int dx = -3; dx <= 3; dx++) {
+			for (int dy = -3; dy <= 3; dy++) {
+				Location near = new Location(rover.getLocation().getX() + dx,
+						rover.getLocation().getY() + dy);
+				if (Math.abs(dx) + Math.abs(dy) >= 2
+						&& gameState.getSquare(near) instanceof WalkableSquare
+						&& gameState.isOutside(near)) {
+					player.setLocation(near);
+					break search;
+				}
+			}
+		}
+		gameState.updateLocation(player);
+		rover.tick(gameState);
+
+		File firstFileSaved = File.createTempFile("teststatesave", ".json");
+		File secondFileSaved = File.createTempFile("teststatesave", ".json");
+		try {
+			Storage.saveState(gameState, firstFileSaved.getPath());
+			String saved = new String(Files.readAllBytes(firstFileSaved.toPath()));
+			assertEquals(1, saved.split("\"@id\"").length - 1);
+			assertTrue(saved.contains("\"@ref\""));
+
+			// Loaded as one player, so saving it again still refers to them
+			// rather than saving a copy
+			Storage.saveState(Storage.loadState(firstFileSaved.getPath()), secondFileSaved.getPath());
+			assertEquals(saved, new String(Files.readAllBytes(secondFileSaved.toPath())));
+		} finally {
+			firstFileSaved.delete();
+			secondFileSaved.delete();
+		}
+	}
+
+	@Test
+	public void testHierarchyAdapterFactory(){
+		HierarchyAdapterFactory factory = new HierarchyAdapterFactory();
+		factory.register(Wall.class, "game.", EmptyWall.class);
+		Gson gson = new GsonBuilder().registerTypeAdapterFactory(factory).create();
+
+		// Registered up front, found by package, and out of order
+		assertTrue(gson.fromJson("{\"type\": \"EmptyWall\", \"properties\": {}}", Wall.class) instanceof EmptyWall);
+		assertTrue(gson.fromJson("{\"type\": \"SolidWall\", \"properties\": {}}", Wall.class) instanceof SolidWall);
+		assertTrue(gson.fromJson("{\"properties\": {}, \"type\": \"SolidWall\"}", Wall.class) instanceof SolidWall);
+		assertEquals("{\"type\":\"SolidWall\",\"properties\":{}}", gson.toJson(new SolidWall(), Wall.class));
+
+		try {
+			gson.fromJson("{\"type\": \"Rock\", \"properties\": {}}", Wall.class);
+			fail("A Rock is not a Wall");
+		} catch (JsonParseException e) {
+		}
+	}
+
 	@Test
 	public void testMapBuilderOne(){
 		//No squares in the 2D array should be null.
@@ -60,6 +60,7 @@ class ClientMain extends JFrame {
 	// All need to be accessed when start button is pushed
 	private JComboBox<String> renderMode;
 	private JComboBox<String> resolutionMode;
+	private JComboBox<String> smoothingMode;
 	private JTextField nameTextbox;
 	private JTextField serverTextbox;
 	private JPanel colorPalette;
@@ -68,7 +69,7 @@ class ClientMain extends JFrame {
 		super("Join Game");
 
 		setLayout(new GridBagLayout());
-		setPreferredSize(new Dimension(370, 480));
+		setPreferredSize(new Dimension(370, 530));
 
 		// Pre load our spacesuit image
 		loadImage();
@@ -365,6 +366,26 @@ class ClientMain extends JFrame {
 
 		add(resolutionMode, c);
 
+		JLabel smoothingTitle = new JLabel("Select your movement smoothing:");
+		// Smoothing dropdown, how far behind other characters are drawn
+		String[] smoothingOptions = new String[] { "Automatic", "None",
+				"50ms", "100ms", "200ms", "400ms" };
+		smoothingMode = new JComboBox<>(smoothingOptions);
+
+		// Smoothing title is at 0,12 with a width of 2 cells
+		c.gridx = 0;
+		c.gridy = 12;
+		c.insets = new Insets(5, 0, 0, 0);
+
+		add(smoothingTitle, c);
+
+		// Smoothing Option dropdown at 0,13 with a width of 2 cells
+		c.gridx = 0;
+		c.gridy = 13;
+		c.insets = new Insets(0, 0, 5, 0);
+
+		add(smoothingMode, c);
+
 	}
 
 	private void addStart() {
@@ -417,6 +438,15 @@ class ClientMain extends JFrame {
 					return;
 				}
 
+				// set how far behind other characters are drawn
+				String smoothing = (String) smoothingMode.getSelectedItem();
+				if (smoothing.equals("None")) {
+					client.setInterpolationDelay(0);
+				} else if (!smoothing.equals("Automatic")) {
+					client.setInterpolationDelay(Long.valueOf(smoothing
+							.replace("ms", "")));
+				}
+
 				// Hide this window
 				setVisible(false);
 
@@ -470,9 +500,9 @@ class ClientMain extends JFrame {
 			}
 		});
 
-		// Start button at 0,12 with a width of 2 cells
+		// Start button at 0,14 with a width of 2 cells
 		c.gridx = 0;
-		c.gridy = 12;
+		c.gridy = 14;
 		c.gridwidth = 2;
 		add(start, c);
 	}
@@ -14,8 +14,12 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -24,6 +28,8 @@ import javax.swing.JSlider;
 import javax.swing.JTextArea;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import game.GameState;
+import network.Journal;
 import network.Server;
 import storage.Storage;
 
@@ -52,15 +58,21 @@ public class ServerMain extends JFrame {
 	private JButton startGame;
 	private JButton stopGame;
 
+	// Whether games are played in lockstep
+	private JCheckBox lockstep;
+
+	// Where games are journaled so they can be recovered after a crash
+	private static final File JOURNAL_DIRECTORY = new File("journal");
+
 	// The default map, can be changed by pressing load button
-	private String selectedMap = "assets/maps/jacksmap.json";
+	private String selectedMap = "assets/maps/jacksmap.lmap";
 
 	public ServerMain() {
 		super("Start Game");
 
 		setLayout(new GridBagLayout());
 
-		setPreferredSize(new Dimension(300, 620));
+		setPreferredSize(new Dimension(300, 650));
 
 		// Display a message at the top
 		addTitle();
@@ -77,6 +89,9 @@ public class ServerMain extends JFrame {
 		// Add buttons for saving/loading the whole game state
 		addSaveLoadButtons();
 
+		// Add a check box for playing in lockstep
+		addLockstepChooser();
+
 		// Add a label for the servers IP Adress
 		addServerIP();
 
@@ -212,6 +227,9 @@ public class ServerMain extends JFrame {
 					//And close the program
 					System.exit(1);
 				}
+				server.setJournal(JOURNAL_DIRECTORY,
+						Journal.DEFAULT_SNAPSHOT_INTERVAL);
+				server.setLockstep(lockstep.isSelected());
 				server.start();
 			}
 		});
@@ -253,8 +271,13 @@ public class ServerMain extends JFrame {
 						String filename = chooser.getSelectedFile()
 								.getAbsolutePath();
 
-						// Tell server to save the game
-						server.saveGamestate(filename);
+						// Tell server to save every game, gzipped if they
+						// asked for a .gz, and tell them which were saved
+						Map<String, Future<Boolean>> saves = server
+								.saveGamestate(filename,
+										filename.endsWith(".gz"));
+						JOptionPane.showMessageDialog(null,
+								saveReport(saves));
 					}
 				}
 
@@ -274,6 +297,33 @@ public class ServerMain extends JFrame {
 		add(stopGame, c);
 	}
 
+	/**
+	 * Waits for each game to be written, and says which rooms were saved
+	 *
+	 * @param saves
+	 *            Whether each game was saved, mapped from its room's name
+	 * @return A message for the operator
+	 */
+	private String saveReport(Map<String, Future<Boolean>> saves) {
+		if (saves.isEmpty()) {
+			return "No games were being played, so nothing was saved";
+		}
+		StringBuilder report = new StringBuilder();
+		for (Map.Entry<String, Future<Boolean>> save : saves.entrySet()) {
+			boolean saved = false;
+			try {
+				saved = save.getValue() != null && save.getValue().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+			report.append(save.getKey()).append(
+					saved ? ": saved\n" : ": could not be saved\n");
+		}
+		return report.toString();
+	}
+
 	/**
 	 * Add buttons for saving/loading
 	 **/
@@ -293,9 +343,9 @@ public class ServerMain extends JFrame {
 				chooser.setCurrentDirectory(new File(System
 						.getProperty("user.dir") + "/assets/maps"));
 
-				// Only show .XML files, as this is our map type
+				// Only show our map types, JSON and binary maps
 				FileNameExtensionFilter jsonfilter = new FileNameExtensionFilter(
-						"json files (*.json)", "json");
+						"map files (*.json, *.lmap)", "json", "lmap");
 				chooser.setFileFilter(jsonfilter);
 
 				// Display the chooser
@@ -333,10 +383,12 @@ public class ServerMain extends JFrame {
 				// Can only stop
 				stopGame.setEnabled(true);
 
-				// Retrieve the file to load
+				// Retrieve the file to load, either a saved game or the
+				// journal of a game to recover
 				JFileChooser chooser = new JFileChooser();
 				chooser.setCurrentDirectory(new File(System
 						.getProperty("user.dir") + "/savedgames"));
+				chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 				chooser.showOpenDialog(null);
 
 				// Don't do anything if they cancel the chooser
@@ -344,16 +396,30 @@ public class ServerMain extends JFrame {
 					return;
 				}
 
-				String filename = chooser.getSelectedFile().getAbsolutePath();
+				File selected = chooser.getSelectedFile();
+				GameState state;
+				if (selected.isDirectory()) {
+					try {
+						state = Journal.recover(selected);
+					} catch (IOException e1) {
+						JOptionPane.showMessageDialog(null,
+								"Could not recover game: " + e1.getMessage());
+						return;
+					}
+				} else {
+					state = Storage.loadState(selected.getAbsolutePath());
+				}
 
 				// Make a new server with the specified info
 				try {
-					server = new Server(refreshRate.getValue(), Storage
-							.loadState(filename));
+					server = new Server(refreshRate.getValue(), state);
 				} catch (IOException e1) {
 					JOptionPane.showMessageDialog(null, "Port Already In Use");
 					System.exit(1);
 				}
+				server.setJournal(JOURNAL_DIRECTORY,
+						Journal.DEFAULT_SNAPSHOT_INTERVAL);
+				server.setLockstep(lockstep.isSelected());
 				server.start();
 			}
 
@@ -366,6 +432,24 @@ public class ServerMain extends JFrame {
 
 	}
 
+	/**
+	 * Adds a check box for playing in lockstep, where clients are only sent
+	 * the players' input and tick the game themselves
+	 */
+	private void addLockstepChooser() {
+		GridBagConstraints c = new GridBagConstraints();
+
+		lockstep = new JCheckBox("Lockstep (send input only)");
+
+		// Check box is at 0,7 with a width of 2
+		c.gridx = 0;
+		c.gridy = 7;
+		c.gridwidth = 2;
+		c.insets = new Insets(10, 0, 0, 0);
+
+		add(lockstep, c);
+	}
+
 	/**
 	 * Adds a label for displaying the servers IP
 	 */
@@ -384,9 +468,9 @@ public class ServerMain extends JFrame {
 			ipLabel = new JLabel("IP Address: ERROR UNKNOWN HOST");
 		}
 
-		// IP address is at 0,7
+		// IP address is at 0,8
 		c.gridx = 0;
-		c.gridy = 7;
+		c.gridy = 8;
 		c.gridwidth = 2;
 		c.insets = new Insets(10, 0, 0, 0);
 
@@ -411,9 +495,9 @@ public class ServerMain extends JFrame {
 		console.setEditable(false);
 		console.setPreferredSize(new Dimension(getWidth(), 250));
 
-		// Console is at 0, 8
+		// Console is at 0, 9
 		c.gridx = 0;
-		c.gridy = 8;
+		c.gridy = 9;
 		c.gridwidth = 2;
 		c.insets = new Insets(15, 0, 10, 0);
 
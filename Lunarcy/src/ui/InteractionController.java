@@ -1,6 +1,7 @@
 package ui;
 
 import game.Bag;
+import game.Direction;
 import game.Entity;
 import game.GameState;
 import game.Item;
@@ -106,6 +107,17 @@ public class InteractionController implements KeyListener, MouseListener,
 		client.sendAction(new CloseAction(player.getId()));
 	}
 
+	// Moves and turns are shown straight away, before the server applies them
+	private void move(Direction direction) {
+		client.sendInput(new MoveAction(player.getId(), direction, client
+				.nextInputSequence()));
+	}
+
+	private void turn(boolean turnLeft) {
+		client.sendInput(new OrientAction(player.getId(), turnLeft, client
+				.nextInputSequence()));
+	}
+
 	/*--------- User input Listening methods ---------*/
 
 	@Override
@@ -116,36 +128,32 @@ public class InteractionController implements KeyListener, MouseListener,
 
 		// move forward
 		case KeyEvent.VK_W:
-			client.sendAction(new MoveAction(player.getId(), player
-					.getOrientation()));
+			move(player.getOrientation());
 			break;
 
 		// strafe left
 		case KeyEvent.VK_A:
-			client.sendAction(new MoveAction(player.getId(), player
-					.getOrientation().left()));
+			move(player.getOrientation().left());
 			break;
 
 		// move back
 		case KeyEvent.VK_S:
-			client.sendAction(new MoveAction(player.getId(), player
-					.getOrientation().opposite()));
+			move(player.getOrientation().opposite());
 			break;
 
 		// strafe right
 		case KeyEvent.VK_D:
-			client.sendAction(new MoveAction(player.getId(), player
-					.getOrientation().right()));
+			move(player.getOrientation().right());
 			break;
 
 		// turn left
 		case KeyEvent.VK_Q:
-			client.sendAction(new OrientAction(player.getId(), true));
+			turn(true);
 			break;
 
 		// turn right
 		case KeyEvent.VK_E:
-			client.sendAction(new OrientAction(player.getId(), false));
+			turn(false);
 			break;
 
 		// Show a popup of the current squares info
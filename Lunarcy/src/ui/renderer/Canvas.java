@@ -58,6 +58,9 @@ public class Canvas extends PApplet implements KeyListener, MouseListener {
 	private boolean gameWon;
 	private Player winner;
 
+	// where other characters were in recent states, to draw them moving
+	private final SnapshotBuffer snapshots = new SnapshotBuffer();
+
 	// drawing components
 	private InteractionController interactionControl;
 	private DrawingComponent perspective;
@@ -181,6 +184,14 @@ public class Canvas extends PApplet implements KeyListener, MouseListener {
 		stateUpdated = true;
 	}
 
+	/**
+	 * @return Where other characters were in recent states sent by the server,
+	 *         with when each state arrived.
+	 */
+	public SnapshotBuffer getSnapshots() {
+		return snapshots;
+	}
+
 	/**
 	 * Update the separate drawing components if the game state has been
 	 * updated.
@@ -130,6 +130,10 @@ public class Perspective3D extends DrawingComponent {
 		// get the rovers from the current game state
 		Set<Rover> rovers = gameState.getRovers();
 
+		// get where the other characters are between recent states
+		SnapshotBuffer.Interpolation moment = p.getSnapshots().at(
+				System.nanoTime());
+
 		// position the camera to the player position and orientation
 		setCamera(thisPlayer.getLocation(), thisPlayer.getOrientation(), delta);
 
@@ -154,10 +158,10 @@ public class Perspective3D extends DrawingComponent {
 		drawEntites(thisPlayer, gameState.getBoard());
 
 		// draw the players
-		drawPlayers(thisPlayer, players);
+		drawPlayers(thisPlayer, players, moment);
 
 		// draw the rovers
-		drawRovers(thisPlayer, rovers);
+		drawRovers(thisPlayer, rovers, moment);
 
 		// pop matrix and style information from the stack
 		p.popStyle();
@@ -172,8 +176,11 @@ public class Perspective3D extends DrawingComponent {
 	 *            The player this perspective is relative too.
 	 * @param players
 	 *            List of players in the game.
+	 * @param moment
+	 *            Where the players are between recent states.
 	 */
-	private void drawPlayers(Player thisPlayer, Player[] players) {
+	private void drawPlayers(Player thisPlayer, Player[] players,
+			SnapshotBuffer.Interpolation moment) {
 		// for each player
 		for (int i = 0; i < players.length; i++) {
 
@@ -193,10 +200,10 @@ public class Perspective3D extends DrawingComponent {
 				p.tint(currentPlayer.getColour().getRGB());
 
 				// get the current player position in 3D space
-				PVector position = new PVector(currentPlayer.getLocation()
-						.getX() * SQUARE_SIZE + SQUARE_SIZE / 2,
-						CHARACTER_Y_OFFSET, currentPlayer.getLocation().getY()
-								* SQUARE_SIZE + SQUARE_SIZE / 2);
+				PVector square = moment.getPosition(currentPlayer);
+				PVector position = new PVector(square.x * SQUARE_SIZE
+						+ SQUARE_SIZE / 2, CHARACTER_Y_OFFSET, square.y
+						* SQUARE_SIZE + SQUARE_SIZE / 2);
 
 				// translate to the current player location
 				p.translate(position.x, position.y, position.z);
@@ -225,8 +232,11 @@ public class Perspective3D extends DrawingComponent {
 	 *
 	 * @param rovers
 	 *            List of rovers in the game.
+	 * @param moment
+	 *            Where the rovers are between recent states.
 	 */
-	private void drawRovers(Player thisPlayer, Set<Rover> rovers) {
+	private void drawRovers(Player thisPlayer, Set<Rover> rovers,
+			SnapshotBuffer.Interpolation moment) {
 		for (Rover currentRover : rovers) {
 
 			// if the rover is not in this player's location
@@ -235,10 +245,10 @@ public class Perspective3D extends DrawingComponent {
 				p.pushStyle();
 
 				// get the rover position in 3D space
-				PVector position = new PVector(currentRover.getLocation()
-						.getX() * SQUARE_SIZE + SQUARE_SIZE / 2,
-						CHARACTER_Y_OFFSET, currentRover.getLocation().getY()
-								* SQUARE_SIZE + SQUARE_SIZE / 2);
+				PVector square = moment.getPosition(currentRover);
+				PVector position = new PVector(square.x * SQUARE_SIZE
+						+ SQUARE_SIZE / 2, CHARACTER_Y_OFFSET, square.y
+						* SQUARE_SIZE + SQUARE_SIZE / 2);
 
 				// translate to the rover location
 				p.translate(position.x, position.y, position.z);
@@ -0,0 +1,209 @@
+package ui.renderer;
+
+import game.GameState;
+import game.Location;
+import game.Player;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import processing.core.PVector;
+import bots.Rover;
+
+/**
+ * Keeps where every player and rover was in the last few states sent by the
+ * server, with the time each one arrived, so other characters can be drawn
+ * moving smoothly between squares instead of jumping a whole square each
+ * update.
+ *
+ * Characters are drawn a short delay behind the latest state, between the two
+ * states either side of that moment. The delay should be longer than the time
+ * between updates, otherwise characters wait on the latest state until the
+ * next one arrives. By default it is twice the average time between updates,
+ * leaving room for one late update.
+ *
+ * @author Jack
+ *
+ */
+public class SnapshotBuffer {
+	// The delay used unless one is set, twice the time between updates
+	public static final long AUTOMATIC = -1;
+
+	// How many states are kept
+	private static final int CAPACITY = 16;
+
+	// The longest an automatic delay may be, in milliseconds
+	private static final long MAX_AUTOMATIC_DELAY = 1000;
+
+	private final ArrayDeque<Snapshot> snapshots = new ArrayDeque<Snapshot>();
+	private long delay = AUTOMATIC;
+
+	/**
+	 * Record where everyone is in a state which has just arrived from the
+	 * server. A state at the same tick as the last one is ignored, and one
+	 * from before it, such as a game which was loaded again, starts the
+	 * buffer afresh.
+	 *
+	 * @param state
+	 *            The state which arrived
+	 * @param now
+	 *            When it arrived, from System.nanoTime
+	 */
+	public synchronized void record(GameState state, long now) {
+		Snapshot last = snapshots.peekLast();
+		if (last != null && last.tick == state.getTickCount()) {
+			return;
+		}
+		if (last != null && last.tick > state.getTickCount()) {
+			snapshots.clear();
+		}
+		if (snapshots.size() == CAPACITY) {
+			snapshots.removeFirst();
+		}
+		snapshots.addLast(new Snapshot(state, now));
+	}
+
+	/**
+	 * @param delay
+	 *            Milliseconds other characters are drawn behind the latest
+	 *            state, 0 to draw them where they are, or AUTOMATIC
+	 */
+	public synchronized void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * @return Milliseconds other characters are drawn behind the latest state
+	 */
+	public synchronized long getDelay() {
+		if (delay != AUTOMATIC) {
+			return delay;
+		}
+		if (snapshots.size() < 2) {
+			return 0;
+		}
+		long interval = (snapshots.getLast().time - snapshots.getFirst().time)
+				/ (snapshots.size() - 1);
+		return Math.min(MAX_AUTOMATIC_DELAY,
+				TimeUnit.NANOSECONDS.toMillis(interval * 2));
+	}
+
+	/**
+	 * Find the two states either side of the moment to draw
+	 *
+	 * @param now
+	 *            The time of the frame being drawn, from System.nanoTime
+	 * @return Where characters are at that moment
+	 */
+	public synchronized Interpolation at(long now) {
+		long time = now - TimeUnit.MILLISECONDS.toNanos(getDelay());
+		Snapshot from = null;
+		Snapshot to = null;
+		Iterator<Snapshot> it = snapshots.iterator();
+		while (it.hasNext()) {
+			to = it.next();
+			if (to.time > time) {
+				break;
+			}
+			from = to;
+		}
+		if (from == null || from == to) {
+			// Before the oldest state or after the latest, there is nothing
+			// to draw them between
+			return new Interpolation(to, to, 0);
+		}
+		return new Interpolation(from, to, (float) (time - from.time)
+				/ (to.time - from.time));
+	}
+
+	/**
+	 * Where each character was in a single state
+	 */
+	private static class Snapshot {
+		private final int tick;
+		private final long time;
+		private final Map<Integer, Location> players = new HashMap<Integer, Location>();
+		private final Map<Integer, Location> rovers = new HashMap<Integer, Location>();
+
+		private Snapshot(GameState state, long time) {
+			this.tick = state.getTickCount();
+			this.time = time;
+			for (Player player : state.getPlayers()) {
+				if (player != null) {
+					players.put(player.getId(), player.getLocation());
+				}
+			}
+			// Rovers from old saves may share an ID, those can't be told
+			// apart so are drawn where they are
+			Set<Integer> shared = new HashSet<Integer>();
+			for (Rover rover : state.getRovers()) {
+				if (rovers.put(rover.getId(), rover.getLocation()) != null) {
+					shared.add(rover.getId());
+				}
+			}
+			rovers.keySet().removeAll(shared);
+		}
+	}
+
+	/**
+	 * Where characters are at a moment between two states, in squares
+	 */
+	public static class Interpolation {
+		private final Snapshot from;
+		private final Snapshot to;
+		private final float amount;
+
+		private Interpolation(Snapshot from, Snapshot to, float amount) {
+			this.from = from;
+			this.to = to;
+			this.amount = amount;
+		}
+
+		/**
+		 * @return The x and y of the player, in squares
+		 */
+		public PVector getPosition(Player player) {
+			if (from == null) {
+				return position(player.getLocation(), player.getLocation());
+			}
+			return position(from.players.get(player.getId()),
+					to.players.get(player.getId()), player.getLocation());
+		}
+
+		/**
+		 * @return The x and y of the rover, in squares
+		 */
+		public PVector getPosition(Rover rover) {
+			if (from == null) {
+				return position(rover.getLocation(), rover.getLocation());
+			}
+			return position(from.rovers.get(rover.getId()),
+					to.rovers.get(rover.getId()), rover.getLocation());
+		}
+
+		private PVector position(Location a, Location b, Location latest) {
+			// Characters which have just appeared or gone are drawn where
+			// they are now
+			if (a == null || b == null) {
+				return position(latest, latest);
+			}
+			return position(a, b);
+		}
+
+		private PVector position(Location a, Location b) {
+			int dx = b.getX() - a.getX();
+			int dy = b.getY() - a.getY();
+			// Jumping more than a square means they respawned, so they
+			// aren't drawn crossing the map
+			if (Math.abs(dx) + Math.abs(dy) > 1) {
+				return new PVector(b.getX(), b.getY());
+			}
+			return new PVector(a.getX() + dx * amount, a.getY() + dy * amount);
+		}
+	}
+}